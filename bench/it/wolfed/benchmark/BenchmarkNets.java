@@ -0,0 +1,37 @@
+package it.wolfed.benchmark;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.operation.WorkFlowGenerator;
+
+/**
+ * Nets of a given size for the benchmarks.
+ */
+public class BenchmarkNets
+{
+    /**
+     * Net sizes (places and transitions) of the benchmarks.
+     */
+    public static final String SIZE_10 = "10";
+    public static final String SIZE_100 = "100";
+    public static final String SIZE_1K = "1000";
+    public static final String SIZE_10K = "10000";
+    public static final String SIZE_100K = "100000";
+
+    /**
+     * Seed of the generated nets: the same nets on each run.
+     */
+    private static final long SEED = 1;
+
+    /**
+     * Builds a random sound workflow net of n places and transitions (see
+     * {@link WorkFlowGenerator}).
+     *
+     * @param id
+     * @param nodes
+     * @return PetriNetGraph
+     */
+    public static PetriNetGraph workflow(String id, int nodes)
+    {
+        return new WorkFlowGenerator(SEED + id.hashCode()).generate(nodes).toGraph(id);
+    }
+}
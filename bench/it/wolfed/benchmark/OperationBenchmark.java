@@ -0,0 +1,73 @@
+package it.wolfed.benchmark;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.operation.Operation;
+import it.wolfed.util.Constants;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Operations of it.wolfed.operation, on two workflow nets of the same
+ * size (the unary operations use the first).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OperationBenchmark
+{
+    @Param({
+        Constants.OPERATION_ALTERNATION,
+        Constants.OPERATION_CLONEGRAPH,
+        Constants.OPERATION_DEFFEREDCHOICE,
+        Constants.OPERATION_EXPLICITCHOICE,
+        Constants.OPERATION_FULLMERGE,
+        Constants.OPERATION_ITERATIONONEORMORE,
+        Constants.OPERATION_ITERATIONONESERVEPERTIME,
+        Constants.OPERATION_ITERATIONZEROORMORE,
+        Constants.OPERATION_MUTUALEXCLUSION,
+        Constants.OPERATION_PARALLELISM,
+        Constants.OPERATION_SEQUENCING,
+        Constants.OPERATION_WRAP
+    })
+    public String operation;
+
+    @Param({
+        BenchmarkNets.SIZE_10,
+        BenchmarkNets.SIZE_100,
+        BenchmarkNets.SIZE_1K,
+        BenchmarkNets.SIZE_10K,
+        BenchmarkNets.SIZE_100K
+    })
+    public int size;
+
+    private List<PetriNetGraph> inputGraphs;
+
+    @Setup
+    public void setUp()
+    {
+        inputGraphs = Arrays.asList(
+            BenchmarkNets.workflow("first", size),
+            BenchmarkNets.workflow("second", size));
+    }
+
+    @Benchmark
+    public PetriNetGraph execute() throws Exception
+    {
+        return Operation.factory(operation, new PetriNetGraph("bench"), inputGraphs).getOperationGraph();
+    }
+}
@@ -0,0 +1,68 @@
+package it.wolfed.benchmark;
+
+import it.wolfed.model.PetriNetGraph;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.stream.XMLStreamException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pnml import and export, dot export.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PnmlBenchmark
+{
+    @Param({
+        BenchmarkNets.SIZE_10,
+        BenchmarkNets.SIZE_100,
+        BenchmarkNets.SIZE_1K,
+        BenchmarkNets.SIZE_10K,
+        BenchmarkNets.SIZE_100K
+    })
+    public int size;
+
+    private PetriNetGraph graph;
+    private byte[] pnml;
+
+    @Setup
+    public void setUp() throws XMLStreamException
+    {
+        graph = BenchmarkNets.workflow("bench", size);
+        pnml = graph.exportPNML().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<PetriNetGraph> importPnml() throws XMLStreamException
+    {
+        return PetriNetGraph.factory(new ByteArrayInputStream(pnml), "bench");
+    }
+
+    @Benchmark
+    public String exportPnml() throws XMLStreamException
+    {
+        return graph.exportPNML();
+    }
+
+    @Benchmark
+    public String exportDot()
+    {
+        return graph.exportDOT();
+    }
+}
@@ -0,0 +1,75 @@
+package it.wolfed.benchmark;
+
+import com.mxgraph.model.mxGraphModel;
+import com.mxgraph.util.mxEvent;
+import com.mxgraph.util.mxEventObject;
+import com.mxgraph.util.mxUndoableEdit;
+import it.wolfed.model.PetriNetGraph;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link PetriNetGraph#isWorkFlow()} check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WorkFlowBenchmark
+{
+    @Param({
+        BenchmarkNets.SIZE_10,
+        BenchmarkNets.SIZE_100,
+        BenchmarkNets.SIZE_1K,
+        BenchmarkNets.SIZE_10K,
+        BenchmarkNets.SIZE_100K
+    })
+    public int size;
+
+    private PetriNetGraph graph;
+
+    @Setup
+    public void setUp()
+    {
+        graph = BenchmarkNets.workflow("bench", size);
+    }
+
+    /**
+     * The graph keeps the visits until the next change: a change event
+     * with an empty edit (and without the list of changes) drops them, so
+     * each call visits the net.
+     *
+     * @return boolean
+     */
+    @Benchmark
+    public boolean isWorkFlow()
+    {
+        mxGraphModel model = (mxGraphModel) graph.getModel();
+        model.fireEvent(new mxEventObject(mxEvent.CHANGE, "edit", new mxUndoableEdit(model)));
+
+        return graph.isWorkFlow();
+    }
+
+    /**
+     * Same check, cached.
+     *
+     * @return boolean
+     */
+    @Benchmark
+    public boolean isWorkFlowCached()
+    {
+        return graph.isWorkFlow();
+    }
+}
@@ -0,0 +1,862 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PetriNetKernel;
+import it.wolfed.util.IntList;
+import java.util.Arrays;
+
+/**
+ * Karp-Miller coverability tree of a net.
+ *
+ * Depth first exploration from the initial marking. When a new marking
+ * strictly covers an ancestor on its branch, the places that grew are
+ * accelerated to omega (unbounded). The exploration always terminates,
+ * also on unbounded nets where {@link ReachabilityGraph} never does.
+ *
+ * Pruning:
+ *
+ *  - a marking already in the tree is not expanded again (hash set)
+ *  - a marking covered by an expanded one is not expanded (subsumption):
+ *    its successors are covered by the successors of the bigger one
+ *
+ * The markings are stored sparse: the marked places and their tokens, in
+ * flat int lists. A node is covered by a marking m only if it is marked
+ * in no place where m is empty, so the checks go through per place
+ * indexes instead of walking all the nodes:
+ *
+ *  - covered by m (ancestors to accelerate, maximal nodes replaced by m):
+ *    the nodes are bucketed by their first marked place, only the buckets
+ *    of the places marked in m are read. The branch buckets are kept with
+ *    the depth first stack (push and pop in O(1)).
+ *  - covering m (subsumption): the maximal nodes are also listed under
+ *    each place they mark. A node covering m is in the list of each place
+ *    marked in m: only the shortest of them is read.
+ *
+ * The nodes read from the indexes are first filtered by a support
+ * signature (bit p % 64 set if p is marked): one test on a long rejects
+ * most of them without decoding their marking.
+ *
+ * Omega is {@link CoverabilityGraph#OMEGA}. The number of stored nodes is
+ * capped.
+ */
+public class CoverabilityGraph
+{
+    /**
+     * Omega (unbounded) tokens: enables any transition and never changes.
+     */
+    public static final int OMEGA = Integer.MAX_VALUE;
+
+    /**
+     * Net snapshot.
+     */
+    private final PetriNetKernel kernel;
+
+    /**
+     * Max number of stored nodes.
+     */
+    private final int maxNodes;
+
+    /**
+     * Places per marking.
+     */
+    private final int places;
+
+    /**
+     * Node markings (sparse, by place): node n marks markingPlace[i] with
+     * markingTokens[i] tokens, i in markingStart[n] .. markingStart[n + 1] - 1.
+     */
+    private IntList markingStart;
+    private IntList markingPlace;
+    private IntList markingTokens;
+
+    /**
+     * Support signature per node: bit (p % 64) set if p is marked.
+     */
+    private long[] signatures;
+
+    /**
+     * Hash table of node numbers + 1 (0 is empty), linear probing.
+     */
+    private int[] table;
+
+    /**
+     * Maximal nodes (antichain) for the subsumption: flag per node, nodes
+     * per marked place and per first marked place (including the no
+     * longer maximal ones, removed when they are the most), the node with
+     * no token if maximal.
+     */
+    private boolean[] maximal;
+    private IntList[] placeMaximal;
+    private IntList[] firstMaximal;
+    private int emptyMaximal;
+    private long maximalEntries;
+    private long staleEntries;
+
+    /**
+     * Current branch: node and next transition to try per depth, depths
+     * per first marked place, depth of the node with no token (-1 if
+     * none).
+     */
+    private IntList branchNodes;
+    private IntList branchNextTransition;
+    private IntList[] firstBranch;
+    private int emptyDepth;
+
+    /**
+     * Nodes count.
+     */
+    private int nodesCount;
+
+    /**
+     * Pruned successors (duplicated or covered).
+     */
+    private long prunedCount;
+
+    /**
+     * Max tokens per place over all nodes (OMEGA if unbounded).
+     */
+    private int[] bounds;
+
+    /**
+     * Exploration state.
+     */
+    private boolean complete;
+
+    /**
+     * {@link CoverabilityGraph} Constructor.
+     *
+     * @param graph
+     * @param maxNodes
+     */
+    public CoverabilityGraph(PetriNetGraph graph, int maxNodes)
+    {
+        this(new PetriNetKernel(graph), maxNodes);
+    }
+
+    /**
+     * {@link CoverabilityGraph} Constructor.
+     *
+     * @param kernel
+     * @param maxNodes
+     */
+    public CoverabilityGraph(PetriNetKernel kernel, int maxNodes)
+    {
+        this.kernel = kernel;
+        this.maxNodes = maxNodes;
+        this.places = kernel.getPlacesCount();
+    }
+
+    /**
+     * Builds the tree.
+     *
+     * @return true if complete, false if stopped on the nodes limit
+     */
+    public boolean explore()
+    {
+        markingStart = new IntList();
+        markingPlace = new IntList();
+        markingTokens = new IntList();
+        markingStart.add(0);
+        signatures = new long[64];
+        table = new int[128];
+        maximal = new boolean[64];
+        placeMaximal = new IntList[places];
+        firstMaximal = new IntList[places];
+        emptyMaximal = -1;
+        maximalEntries = 0;
+        staleEntries = 0;
+        branchNodes = new IntList();
+        branchNextTransition = new IntList();
+        firstBranch = new IntList[places];
+        emptyDepth = -1;
+        nodesCount = 0;
+        prunedCount = 0;
+        bounds = new int[places];
+        complete = false;
+
+        int[] marking = new int[places];
+        int[] successor = new int[places];
+        IntList support = new IntList();
+        IntList covered = new IntList();
+
+        push(addNode(kernel.getInitialMarking(), getSupport(kernel.getInitialMarking(), support)));
+
+        while(branchNodes.isEmpty() == false)
+        {
+            int depth = branchNodes.size() - 1;
+            int node = branchNodes.get(depth);
+            int t = branchNextTransition.get(depth);
+
+            getNode(node, marking);
+
+            while(t < kernel.getTransitionsCount() && kernel.isEnabled(t, marking) == false)
+            {
+                t++;
+            }
+
+            if(t == kernel.getTransitionsCount())
+            {
+                pop();
+                continue;
+            }
+
+            branchNextTransition.set(depth, t + 1);
+
+            System.arraycopy(marking, 0, successor, 0, places);
+            fire(t, successor);
+            getSupport(successor, support);
+            accelerate(successor, support, covered);
+
+            if(indexOf(successor, support) >= 0 || isSubsumed(successor, support))
+            {
+                prunedCount++;
+                continue;
+            }
+
+            if(nodesCount >= maxNodes)
+            {
+                return false;
+            }
+
+            push(addNode(successor, support));
+        }
+
+        complete = true;
+        return true;
+    }
+
+    /**
+     * Fires a transition keeping the omega places.
+     *
+     * @param t
+     * @param marking
+     */
+    private void fire(int t, int[] marking)
+    {
+        for (int i = kernel.transitionPresetStart(t); i < kernel.transitionPresetEnd(t); i++)
+        {
+            int p = kernel.transitionPresetPlace(i);
+
+            if(marking[p] != OMEGA)
+            {
+                marking[p] -= kernel.transitionPresetWeight(i);
+            }
+        }
+
+        for (int i = kernel.transitionPostsetStart(t); i < kernel.transitionPostsetEnd(t); i++)
+        {
+            int p = kernel.transitionPostsetPlace(i);
+
+            if(marking[p] != OMEGA)
+            {
+                long tokens = (long) marking[p] + kernel.transitionPostsetWeight(i);
+                marking[p] = (int) Math.min(OMEGA, tokens);
+            }
+        }
+    }
+
+    /**
+     * Returns the marked places of a marking, sorted.
+     *
+     * @param marking
+     * @param support   destination
+     * @return support
+     */
+    private IntList getSupport(int[] marking, IntList support)
+    {
+        support.clear();
+
+        for (int p = 0; p < places; p++)
+        {
+            if(marking[p] != 0)
+            {
+                support.add(p);
+            }
+        }
+
+        return support;
+    }
+
+    /**
+     * Sets to omega the places grown from an ancestor strictly covered,
+     * until nothing changes.
+     *
+     * The omega places were already marked: the support, and so the
+     * ancestors found in the branch index, do not change.
+     *
+     * @param marking
+     * @param support   marked places of marking
+     * @param covered   work list
+     */
+    private void accelerate(int[] marking, IntList support, IntList covered)
+    {
+        // Ancestors marked first where marking is, the others are not covered
+        long signature = signatureOf(support);
+        covered.clear();
+
+        if(emptyDepth >= 0)
+        {
+            covered.add(emptyDepth);
+        }
+
+        for (int i = 0; i < support.size(); i++)
+        {
+            IntList depths = firstBranch[support.get(i)];
+
+            for (int j = 0; depths != null && j < depths.size(); j++)
+            {
+                if((signatures[branchNodes.get(depths.get(j))] & ~signature) == 0)
+                {
+                    covered.add(depths.get(j));
+                }
+            }
+        }
+
+        boolean changed = true;
+
+        while(changed)
+        {
+            changed = false;
+
+            for (int i = 0; i < covered.size(); i++)
+            {
+                int ancestor = branchNodes.get(covered.get(i));
+
+                if(isCovered(ancestor, marking) == false)
+                {
+                    continue;
+                }
+
+                // Grown places: the ones of the marking over the ancestor
+                int start = markingStart.get(ancestor);
+                int end = markingStart.get(ancestor + 1);
+                int j = start;
+
+                for (int k = 0; k < support.size(); k++)
+                {
+                    int p = support.get(k);
+
+                    while(j < end && markingPlace.get(j) < p)
+                    {
+                        j++;
+                    }
+
+                    int tokens = (j < end && markingPlace.get(j) == p) ? markingTokens.get(j) : 0;
+
+                    if(tokens < marking[p] && marking[p] != OMEGA)
+                    {
+                        marking[p] = OMEGA;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns if a marking is covered by a maximal expanded node.
+     *
+     * @param marking
+     * @param support   marked places of marking
+     * @return boolean
+     */
+    private boolean isSubsumed(int[] marking, IntList support)
+    {
+        if(support.isEmpty())
+        {
+            // Covered by any node
+            return nodesCount > 0;
+        }
+
+        // A node covering marking is in the index of each of its places
+        IntList shortest = null;
+
+        for (int i = 0; i < support.size(); i++)
+        {
+            IntList nodes = placeMaximal[support.get(i)];
+
+            if(nodes == null)
+            {
+                return false;
+            }
+
+            if(shortest == null || nodes.size() < shortest.size())
+            {
+                shortest = nodes;
+            }
+        }
+
+        long signature = signatureOf(support);
+
+        for (int i = 0; i < shortest.size(); i++)
+        {
+            int node = shortest.get(i);
+
+            if(maximal[node] && (signature & ~signatures[node]) == 0 && covers(node, marking, support))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns if a node is greater or equal than a marking in each place.
+     *
+     * @param node
+     * @param marking
+     * @param support   marked places of marking
+     * @return boolean
+     */
+    private boolean covers(int node, int[] marking, IntList support)
+    {
+        int j = markingStart.get(node);
+        int end = markingStart.get(node + 1);
+
+        for (int k = 0; k < support.size(); k++)
+        {
+            int p = support.get(k);
+
+            while(j < end && markingPlace.get(j) < p)
+            {
+                j++;
+            }
+
+            if(j == end || markingPlace.get(j) != p || markingTokens.get(j) < marking[p])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns if a node is less or equal than a marking in each place.
+     *
+     * @param node
+     * @param marking
+     * @return boolean
+     */
+    private boolean isCovered(int node, int[] marking)
+    {
+        for (int i = markingStart.get(node); i < markingStart.get(node + 1); i++)
+        {
+            if(markingTokens.get(i) > marking[markingPlace.get(i)])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Stores a new node, updating bounds and maximal nodes.
+     *
+     * @param marking
+     * @param support   marked places of marking
+     * @return node
+     */
+    private int addNode(int[] marking, IntList support)
+    {
+        int node = nodesCount++;
+
+        for (int i = 0; i < support.size(); i++)
+        {
+            int p = support.get(i);
+
+            markingPlace.add(p);
+            markingTokens.add(marking[p]);
+            bounds[p] = Math.max(bounds[p], marking[p]);
+        }
+
+        markingStart.add(markingPlace.size());
+
+        if(node == maximal.length)
+        {
+            maximal = Arrays.copyOf(maximal, node * 2);
+            signatures = Arrays.copyOf(signatures, node * 2);
+        }
+
+        signatures[node] = signatureOf(support);
+
+        // The new node replaces the maximal nodes it covers, marked first where it is
+        if(emptyMaximal >= 0)
+        {
+            removeMaximal(emptyMaximal);
+            emptyMaximal = -1;
+        }
+
+        for (int i = 0; i < support.size(); i++)
+        {
+            IntList nodes = firstMaximal[support.get(i)];
+
+            for (int j = 0; nodes != null && j < nodes.size(); j++)
+            {
+                int other = nodes.get(j);
+
+                if(maximal[other] && (signatures[other] & ~signatures[node]) == 0 && isCovered(other, marking))
+                {
+                    removeMaximal(other);
+                }
+            }
+        }
+
+        maximal[node] = true;
+
+        if(support.isEmpty())
+        {
+            emptyMaximal = node;
+        }
+        else
+        {
+            addTo(firstMaximal, support.get(0), node);
+        }
+
+        for (int i = 0; i < support.size(); i++)
+        {
+            addTo(placeMaximal, support.get(i), node);
+        }
+
+        maximalEntries += support.size() + 1;
+
+        if(staleEntries * 2 > maximalEntries)
+        {
+            compactMaximal();
+        }
+
+        if(nodesCount * 2 > table.length)
+        {
+            rehash(table.length * 2);
+        }
+
+        insert(node);
+
+        return node;
+    }
+
+    private void removeMaximal(int node)
+    {
+        maximal[node] = false;
+        staleEntries += getSupportSize(node) + 1;
+    }
+
+    /**
+     * Removes the no longer maximal nodes from the places index.
+     */
+    private void compactMaximal()
+    {
+        compact(placeMaximal);
+        compact(firstMaximal);
+
+        maximalEntries -= staleEntries;
+        staleEntries = 0;
+    }
+
+    private void compact(IntList[] index)
+    {
+        for (IntList nodes : index)
+        {
+            if(nodes == null)
+            {
+                continue;
+            }
+
+            int kept = 0;
+
+            for (int i = 0; i < nodes.size(); i++)
+            {
+                if(maximal[nodes.get(i)])
+                {
+                    nodes.set(kept++, nodes.get(i));
+                }
+            }
+
+            while(nodes.size() > kept)
+            {
+                nodes.removeLast();
+            }
+        }
+    }
+
+    /**
+     * Pushes a node on the current branch.
+     *
+     * @param node
+     */
+    private void push(int node)
+    {
+        int depth = branchNodes.size();
+
+        branchNodes.add(node);
+        branchNextTransition.add(0);
+
+        if(getSupportSize(node) == 0)
+        {
+            emptyDepth = depth;
+        }
+        else
+        {
+            addTo(firstBranch, markingPlace.get(markingStart.get(node)), depth);
+        }
+    }
+
+    /**
+     * Pops the last node of the current branch.
+     */
+    private void pop()
+    {
+        int depth = branchNodes.size() - 1;
+        int node = branchNodes.removeLast();
+        branchNextTransition.removeLast();
+
+        if(emptyDepth == depth)
+        {
+            emptyDepth = -1;
+        }
+        else
+        {
+            // The deepest entry of its first place
+            firstBranch[markingPlace.get(markingStart.get(node))].removeLast();
+        }
+    }
+
+    private static void addTo(IntList[] index, int p, int value)
+    {
+        if(index[p] == null)
+        {
+            index[p] = new IntList();
+        }
+
+        index[p].add(value);
+    }
+
+    /**
+     * Support signature: bit (p % 64) set if p is marked.
+     *
+     * @param support   marked places
+     * @return long
+     */
+    private static long signatureOf(IntList support)
+    {
+        long signature = 0;
+
+        for (int i = 0; i < support.size(); i++)
+        {
+            signature |= 1L << (support.get(i) & 63);
+        }
+
+        return signature;
+    }
+
+    private int getSupportSize(int node)
+    {
+        return markingStart.get(node + 1) - markingStart.get(node);
+    }
+
+    /**
+     * Hash of a sparse marking.
+     *
+     * @param places    marked places
+     * @param tokens    tokens of the marked places
+     * @param start
+     * @param end
+     * @return int
+     */
+    private static int hash(IntList places, IntList tokens, int start, int end)
+    {
+        int h = 1;
+
+        for (int i = start; i < end; i++)
+        {
+            h = 31 * (31 * h + places.get(i)) + tokens.get(i);
+        }
+
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the node with a marking, -1 if none.
+     *
+     * @param marking
+     * @param support   marked places of marking
+     * @return int
+     */
+    private int indexOf(int[] marking, IntList support)
+    {
+        int h = 1;
+
+        for (int i = 0; i < support.size(); i++)
+        {
+            h = 31 * (31 * h + support.get(i)) + marking[support.get(i)];
+        }
+
+        int mask = table.length - 1;
+        int slot = (h ^ (h >>> 16)) & mask;
+
+        while(table[slot] != 0)
+        {
+            int node = table[slot] - 1;
+            int start = markingStart.get(node);
+            boolean equal = getSupportSize(node) == support.size();
+
+            for (int i = 0; i < support.size() && equal; i++)
+            {
+                equal = markingPlace.get(start + i) == support.get(i)
+                    && markingTokens.get(start + i) == marking[support.get(i)];
+            }
+
+            if(equal)
+            {
+                return node;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Inserts a stored node in the hash table.
+     *
+     * @param node
+     */
+    private void insert(int node)
+    {
+        int mask = table.length - 1;
+        int slot = hash(markingPlace, markingTokens, markingStart.get(node), markingStart.get(node + 1)) & mask;
+
+        while(table[slot] != 0)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        table[slot] = node + 1;
+    }
+
+    /**
+     * Rebuilds the hash table with a new capacity.
+     *
+     * @param capacity power of two
+     */
+    private void rehash(int capacity)
+    {
+        table = new int[capacity];
+
+        for (int node = 0; node < nodesCount - 1; node++)
+        {
+            insert(node);
+        }
+    }
+
+    /**
+     * Copies the marking of a node.
+     *
+     * @param node
+     * @param marking   destination
+     */
+    public void getNode(int node, int[] marking)
+    {
+        Arrays.fill(marking, 0, places, 0);
+
+        for (int i = markingStart.get(node); i < markingStart.get(node + 1); i++)
+        {
+            marking[markingPlace.get(i)] = markingTokens.get(i);
+        }
+    }
+
+    /**
+     * Returns the net snapshot.
+     *
+     * @return PetriNetKernel
+     */
+    public PetriNetKernel getKernel()
+    {
+        return kernel;
+    }
+
+    /**
+     * Returns the number of stored nodes.
+     *
+     * @return int
+     */
+    public int getNodesCount()
+    {
+        return nodesCount;
+    }
+
+    /**
+     * Returns the number of pruned successors.
+     *
+     * @return long
+     */
+    public long getPrunedCount()
+    {
+        return prunedCount;
+    }
+
+    /**
+     * Returns if the tree is complete.
+     *
+     * @return boolean
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * Returns if a place is bounded (meaningful on a complete tree).
+     *
+     * @param p
+     * @return boolean
+     */
+    public boolean isBounded(int p)
+    {
+        return bounds[p] != OMEGA;
+    }
+
+    /**
+     * Returns if all the places are bounded (meaningful on a complete tree).
+     *
+     * @return boolean
+     */
+    public boolean isBounded()
+    {
+        for (int p = 0; p < places; p++)
+        {
+            if(bounds[p] == OMEGA)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the max tokens of a place, {@link CoverabilityGraph#OMEGA}
+     * if unbounded.
+     *
+     * @param p
+     * @return int
+     */
+    public int getBound(int p)
+    {
+        return bounds[p];
+    }
+
+    /**
+     * Returns the approximate memory used in bytes.
+     *
+     * @return long
+     */
+    public long getMemoryUsage()
+    {
+        return 4L * (markingStart.size() + markingPlace.size() + markingTokens.size() + table.length)
+            + 4L * (maximalEntries + branchNodes.size() * 3L) + maximal.length * 9L;
+    }
+}
@@ -0,0 +1,922 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PetriNetKernel;
+import it.wolfed.util.IntList;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Minimal semi-positive place (P) or transition (T) invariants of a net.
+ *
+ * A P-invariant y >= 0 has y.C = 0 (the weighted tokens never change), a
+ * T-invariant x >= 0 has C.x = 0 (firing x reproduces the marking), where
+ * C is the incidence matrix (places x transitions).
+ *
+ * Farkas algorithm on sparse rows: each row is a part of C (the columns
+ * still to eliminate) and the combination of places (or transitions) it
+ * comes from. Each step eliminates a column, choosing the one adding the
+ * fewest rows: the rows with a zero stay, each pair of opposite rows is
+ * combined (and divided by the gcd), then the rows with a non zero go.
+ * A pair is skipped if another row has a support included in theirs, or
+ * if their support is over the eliminated columns + 1 (a minimal support
+ * is at most the rank + 1): the result would not be minimal. The rows
+ * left at the end are the invariants of minimal support.
+ *
+ * The coefficients are longs, a row overflowing a long is recomputed with
+ * BigIntegers (and goes back to longs when it fits after the gcd).
+ *
+ * The number of minimal invariants can grow exponentially with the net:
+ * the computation stops over a number of rows, and when the thread is
+ * interrupted.
+ */
+public class Invariants
+{
+    /**
+     * Net snapshot.
+     */
+    private final PetriNetKernel kernel;
+
+    /**
+     * P-invariants (true) or T-invariants (false).
+     */
+    private final boolean places;
+
+    /**
+     * Max number of rows during the computation.
+     */
+    private final int maxRows;
+
+    private List<Invariant> invariants;
+    private boolean complete;
+
+    /**
+     * {@link Invariants} Constructor.
+     *
+     * @param graph
+     * @param places    P-invariants (true) or T-invariants (false)
+     * @param maxRows
+     */
+    public Invariants(PetriNetGraph graph, boolean places, int maxRows)
+    {
+        this(new PetriNetKernel(graph), places, maxRows);
+    }
+
+    /**
+     * {@link Invariants} Constructor.
+     *
+     * @param kernel
+     * @param places    P-invariants (true) or T-invariants (false)
+     * @param maxRows   max number of rows during the computation
+     */
+    public Invariants(PetriNetKernel kernel, boolean places, int maxRows)
+    {
+        this.kernel = kernel;
+        this.places = places;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Computes the invariants.
+     *
+     * @return true if complete, false if stopped on the rows limit
+     */
+    public boolean compute()
+    {
+        invariants = new ArrayList<>();
+        complete = false;
+
+        int rowsCount = places ? kernel.getPlacesCount() : kernel.getTransitionsCount();
+        int columnsCount = places ? kernel.getTransitionsCount() : kernel.getPlacesCount();
+        List<Row> rows = getIncidenceRows(rowsCount, columnsCount);
+        boolean[] eliminated = new boolean[columnsCount];
+
+        for (int step = 0; step < columnsCount; step++)
+        {
+            if(Thread.currentThread().isInterrupted())
+            {
+                return false;
+            }
+
+            int column = getNextColumn(rows, eliminated);
+
+            if(column < 0)
+            {
+                break;
+            }
+
+            eliminated[column] = true;
+            rows = eliminate(rows, column, step + 1);
+
+            if(rows == null)
+            {
+                return false;
+            }
+        }
+
+        for (Row row : rows)
+        {
+            invariants.add(row.toInvariant());
+        }
+
+        Collections.sort(invariants);
+        complete = true;
+
+        return true;
+    }
+
+    /**
+     * Builds a row per place (or transition): its incidence and itself.
+     *
+     * @param rowsCount
+     * @param columnsCount
+     * @return rows
+     */
+    private List<Row> getIncidenceRows(int rowsCount, int columnsCount)
+    {
+        long[] incidence = new long[columnsCount];
+        IntList touched = new IntList();
+        List<Row> rows = new ArrayList<>(rowsCount);
+
+        for (int r = 0; r < rowsCount; r++)
+        {
+            touched.clear();
+
+            if(places)
+            {
+                // Producers add, consumers remove tokens
+                for (int i = kernel.placePresetStart(r); i < kernel.placePresetEnd(r); i++)
+                {
+                    touch(incidence, touched, kernel.placePresetTransition(i), kernel.placePresetWeight(i));
+                }
+
+                for (int i = kernel.placePostsetStart(r); i < kernel.placePostsetEnd(r); i++)
+                {
+                    touch(incidence, touched, kernel.placePostsetTransition(i), -kernel.placePostsetWeight(i));
+                }
+            }
+            else
+            {
+                for (int i = kernel.transitionPostsetStart(r); i < kernel.transitionPostsetEnd(r); i++)
+                {
+                    touch(incidence, touched, kernel.transitionPostsetPlace(i), kernel.transitionPostsetWeight(i));
+                }
+
+                for (int i = kernel.transitionPresetStart(r); i < kernel.transitionPresetEnd(r); i++)
+                {
+                    touch(incidence, touched, kernel.transitionPresetPlace(i), -kernel.transitionPresetWeight(i));
+                }
+            }
+
+            int[] columns = touched.toArray();
+            Arrays.sort(columns);
+            IntList nonZero = new IntList(columns.length);
+
+            for (int i = 0; i < columns.length; i++)
+            {
+                // A column back to zero is touched again
+                if(incidence[columns[i]] != 0 && (i == 0 || columns[i - 1] != columns[i]))
+                {
+                    nonZero.add(columns[i]);
+                }
+            }
+
+            Row row = new Row(rowsCount);
+            row.columns = nonZero.toArray();
+            row.values = new long[row.columns.length];
+
+            for (int i = 0; i < row.columns.length; i++)
+            {
+                row.values[i] = incidence[row.columns[i]];
+            }
+
+            for (int c : columns)
+            {
+                incidence[c] = 0;
+            }
+
+            row.support = new int[] {r};
+            row.weights = new long[] {1};
+            row.bits[r >> 6] |= 1L << r;
+            rows.add(row);
+        }
+
+        return rows;
+    }
+
+    private static void touch(long[] incidence, IntList touched, int column, int weight)
+    {
+        if(incidence[column] == 0)
+        {
+            touched.add(column);
+        }
+
+        incidence[column] += weight;
+    }
+
+    /**
+     * Returns the column adding the fewest rows (positive x negative rows,
+     * minus the removed ones), -1 if all the rows are zero.
+     *
+     * @param rows
+     * @param eliminated
+     * @return column
+     */
+    private int getNextColumn(List<Row> rows, boolean[] eliminated)
+    {
+        int[] positive = new int[eliminated.length];
+        int[] negative = new int[eliminated.length];
+        boolean any = false;
+
+        for (Row row : rows)
+        {
+            for (int i = 0; i < row.columns.length; i++)
+            {
+                if(row.signum(i) > 0)
+                {
+                    positive[row.columns[i]]++;
+                }
+                else
+                {
+                    negative[row.columns[i]]++;
+                }
+
+                any = true;
+            }
+        }
+
+        if(any == false)
+        {
+            return -1;
+        }
+
+        int best = -1;
+        long bestGrowth = Long.MAX_VALUE;
+
+        for (int c = 0; c < eliminated.length; c++)
+        {
+            if(eliminated[c] || positive[c] + negative[c] == 0)
+            {
+                continue;
+            }
+
+            long growth = (long) positive[c] * negative[c] - positive[c] - negative[c];
+
+            if(growth < bestGrowth)
+            {
+                best = c;
+                bestGrowth = growth;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Eliminates a column.
+     *
+     * @param rows
+     * @param column
+     * @param eliminatedCount   eliminated columns, this one included
+     * @return the new rows, null if over the rows limit
+     */
+    private List<Row> eliminate(List<Row> rows, int column, int eliminatedCount)
+    {
+        List<Row> result = new ArrayList<>();
+        List<Row> positive = new ArrayList<>();
+        List<Row> negative = new ArrayList<>();
+
+        for (Row row : rows)
+        {
+            int i = row.indexOf(column);
+
+            if(i < 0)
+            {
+                result.add(row);
+            }
+            else if(row.signum(i) > 0)
+            {
+                positive.add(row);
+            }
+            else
+            {
+                negative.add(row);
+            }
+        }
+
+        if(positive.isEmpty() || negative.isEmpty())
+        {
+            return result;
+        }
+
+        // Rows by first element of their support (CSR)
+        int size = rows.get(0).bits.length * 64;
+        int[] firstStart = new int[size + 1];
+        Row[] byFirst = new Row[rows.size()];
+
+        for (Row row : rows)
+        {
+            firstStart[row.support[0] + 1]++;
+        }
+
+        for (int i = 0; i < size; i++)
+        {
+            firstStart[i + 1] += firstStart[i];
+        }
+
+        int[] next = Arrays.copyOf(firstStart, size);
+
+        for (Row row : rows)
+        {
+            byFirst[next[row.support[0]]++] = row;
+        }
+
+        long[] union = new long[size / 64];
+
+        for (Row a : positive)
+        {
+            for (Row b : negative)
+            {
+                if(Thread.currentThread().isInterrupted())
+                {
+                    return null;
+                }
+
+                int supportSize = 0;
+
+                for (int w = 0; w < union.length; w++)
+                {
+                    union[w] = a.bits[w] | b.bits[w];
+                    supportSize += Long.bitCount(union[w]);
+                }
+
+                // A minimal support is at most the rank + 1
+                if(supportSize > eliminatedCount + 1)
+                {
+                    continue;
+                }
+
+                if(isMinimal(firstStart, byFirst, a, b, union))
+                {
+                    result.add(combine(a, b, column));
+
+                    if(result.size() > maxRows)
+                    {
+                        return null;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns true if no row but a and b has its support in union.
+     *
+     * @param firstStart    rows of first element e: byFirst[firstStart[e] .. firstStart[e + 1] - 1]
+     * @param byFirst
+     * @param a
+     * @param b
+     * @param union
+     * @return boolean
+     */
+    private static boolean isMinimal(int[] firstStart, Row[] byFirst, Row a, Row b, long[] union)
+    {
+        for (int w = 0; w < union.length; w++)
+        {
+            for (long bits = union[w]; bits != 0; bits &= bits - 1)
+            {
+                int e = (w << 6) + Long.numberOfTrailingZeros(bits);
+
+                for (int i = firstStart[e]; i < firstStart[e + 1]; i++)
+                {
+                    Row row = byFirst[i];
+
+                    if(row == a || row == b)
+                    {
+                        continue;
+                    }
+
+                    boolean included = true;
+
+                    for (int v = 0; v < union.length && included; v++)
+                    {
+                        included = (row.bits[v] & ~union[v]) == 0;
+                    }
+
+                    if(included)
+                    {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Combination of a (positive in column) and b (negative) with a zero
+     * in column, divided by the gcd.
+     *
+     * @param a
+     * @param b
+     * @param column
+     * @return Row
+     */
+    private Row combine(Row a, Row b, int column)
+    {
+        BigInteger va = a.get(a.indexOf(column));
+        BigInteger vb = b.get(b.indexOf(column)).negate();
+        Row row = new Row(a.bits.length * 64);
+
+        for (int w = 0; w < a.bits.length; w++)
+        {
+            row.bits[w] = a.bits[w] | b.bits[w];
+        }
+
+        if(a.bigValues == null && b.bigValues == null && va.bitLength() < 63 && vb.bitLength() < 63
+            && combineLong(a, b, vb.longValue(), va.longValue(), column, row))
+        {
+            return row;
+        }
+
+        combineBig(a, b, vb, va, column, row);
+
+        return row;
+    }
+
+    /**
+     * Long combination ka * a + kb * b.
+     *
+     * @return false on overflow
+     */
+    private static boolean combineLong(Row a, Row b, long ka, long kb, int column, Row row)
+    {
+        // Incidence part (without column)
+        IntList columns = new IntList(a.columns.length + b.columns.length);
+        long[] values = new long[a.columns.length + b.columns.length];
+        int i = 0;
+        int j = 0;
+
+        while(i < a.columns.length || j < b.columns.length)
+        {
+            int ca = (i < a.columns.length) ? a.columns[i] : Integer.MAX_VALUE;
+            int cb = (j < b.columns.length) ? b.columns[j] : Integer.MAX_VALUE;
+            int c = Math.min(ca, cb);
+            long value = 0;
+
+            if(ca == c)
+            {
+                value = multiply(ka, a.values[i++]);
+            }
+
+            if(cb == c)
+            {
+                long product = multiply(kb, b.values[j++]);
+                long sum = value + product;
+
+                if(product == Long.MIN_VALUE || value == Long.MIN_VALUE || ((value ^ sum) & (product ^ sum)) < 0)
+                {
+                    return false;
+                }
+
+                value = sum;
+            }
+
+            if(value == Long.MIN_VALUE)
+            {
+                return false;
+            }
+
+            if(c != column && value != 0)
+            {
+                values[columns.size()] = value;
+                columns.add(c);
+            }
+        }
+
+        // Combination part (positive, never cancels)
+        IntList support = new IntList(a.support.length + b.support.length);
+        long[] weights = new long[a.support.length + b.support.length];
+        i = 0;
+        j = 0;
+
+        while(i < a.support.length || j < b.support.length)
+        {
+            int sa = (i < a.support.length) ? a.support[i] : Integer.MAX_VALUE;
+            int sb = (j < b.support.length) ? b.support[j] : Integer.MAX_VALUE;
+            int s = Math.min(sa, sb);
+            long value = 0;
+
+            if(sa == s)
+            {
+                value = multiply(ka, a.weights[i++]);
+            }
+
+            if(sb == s)
+            {
+                long product = multiply(kb, b.weights[j++]);
+
+                if(product == Long.MIN_VALUE || value == Long.MIN_VALUE || value + product < 0)
+                {
+                    return false;
+                }
+
+                value += product;
+            }
+
+            if(value == Long.MIN_VALUE)
+            {
+                return false;
+            }
+
+            weights[support.size()] = value;
+            support.add(s);
+        }
+
+        row.columns = columns.toArray();
+        row.values = Arrays.copyOf(values, row.columns.length);
+        row.support = support.toArray();
+        row.weights = Arrays.copyOf(weights, row.support.length);
+
+        // Divide by the gcd
+        long gcd = 0;
+
+        for (long value : row.values)
+        {
+            gcd = gcd(gcd, Math.abs(value));
+        }
+
+        for (long weight : row.weights)
+        {
+            gcd = gcd(gcd, weight);
+        }
+
+        if(gcd > 1)
+        {
+            for (int k = 0; k < row.values.length; k++)
+            {
+                row.values[k] /= gcd;
+            }
+
+            for (int k = 0; k < row.weights.length; k++)
+            {
+                row.weights[k] /= gcd;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * BigInteger combination ka * a + kb * b (back to longs if it fits).
+     */
+    private static void combineBig(Row a, Row b, BigInteger ka, BigInteger kb, int column, Row row)
+    {
+        IntList columns = new IntList();
+        List<BigInteger> values = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+
+        while(i < a.columns.length || j < b.columns.length)
+        {
+            int ca = (i < a.columns.length) ? a.columns[i] : Integer.MAX_VALUE;
+            int cb = (j < b.columns.length) ? b.columns[j] : Integer.MAX_VALUE;
+            int c = Math.min(ca, cb);
+            BigInteger value = BigInteger.ZERO;
+
+            if(ca == c)
+            {
+                value = ka.multiply(a.get(i++));
+            }
+
+            if(cb == c)
+            {
+                value = value.add(kb.multiply(b.get(j++)));
+            }
+
+            if(c != column && value.signum() != 0)
+            {
+                values.add(value);
+                columns.add(c);
+            }
+        }
+
+        IntList support = new IntList();
+        List<BigInteger> weights = new ArrayList<>();
+        i = 0;
+        j = 0;
+
+        while(i < a.support.length || j < b.support.length)
+        {
+            int sa = (i < a.support.length) ? a.support[i] : Integer.MAX_VALUE;
+            int sb = (j < b.support.length) ? b.support[j] : Integer.MAX_VALUE;
+            int s = Math.min(sa, sb);
+            BigInteger value = BigInteger.ZERO;
+
+            if(sa == s)
+            {
+                value = ka.multiply(a.getWeight(i++));
+            }
+
+            if(sb == s)
+            {
+                value = value.add(kb.multiply(b.getWeight(j++)));
+            }
+
+            weights.add(value);
+            support.add(s);
+        }
+
+        BigInteger gcd = BigInteger.ZERO;
+        boolean fits = true;
+
+        for (BigInteger value : values)
+        {
+            gcd = gcd.gcd(value);
+        }
+
+        for (BigInteger weight : weights)
+        {
+            gcd = gcd.gcd(weight);
+        }
+
+        for (int k = 0; k < values.size(); k++)
+        {
+            values.set(k, values.get(k).divide(gcd));
+            fits &= values.get(k).bitLength() < 63;
+        }
+
+        for (int k = 0; k < weights.size(); k++)
+        {
+            weights.set(k, weights.get(k).divide(gcd));
+            fits &= weights.get(k).bitLength() < 63;
+        }
+
+        row.columns = columns.toArray();
+        row.support = support.toArray();
+
+        if(fits)
+        {
+            row.values = new long[values.size()];
+            row.weights = new long[weights.size()];
+
+            for (int k = 0; k < values.size(); k++)
+            {
+                row.values[k] = values.get(k).longValue();
+            }
+
+            for (int k = 0; k < weights.size(); k++)
+            {
+                row.weights[k] = weights.get(k).longValue();
+            }
+        }
+        else
+        {
+            row.bigValues = values.toArray(new BigInteger[values.size()]);
+            row.bigWeights = weights.toArray(new BigInteger[weights.size()]);
+        }
+    }
+
+    /**
+     * Long product, Long.MIN_VALUE on overflow.
+     */
+    private static long multiply(long a, long b)
+    {
+        long product = a * b;
+
+        if(a != 0 && (product / a != b || (a == -1 && b == Long.MIN_VALUE)))
+        {
+            return Long.MIN_VALUE;
+        }
+
+        return product;
+    }
+
+    private static long gcd(long a, long b)
+    {
+        while(b != 0)
+        {
+            long r = a % b;
+            a = b;
+            b = r;
+        }
+
+        return a;
+    }
+
+    /**
+     * Returns the net snapshot.
+     *
+     * @return PetriNetKernel
+     */
+    public PetriNetKernel getKernel()
+    {
+        return kernel;
+    }
+
+    /**
+     * Returns true for P-invariants, false for T-invariants.
+     *
+     * @return boolean
+     */
+    public boolean isPlaces()
+    {
+        return places;
+    }
+
+    /**
+     * Returns if the computation is complete.
+     *
+     * @return boolean
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * Returns the minimal invariants (empty if not complete).
+     *
+     * @return List<Invariant>
+     */
+    public List<Invariant> getInvariants()
+    {
+        return invariants;
+    }
+
+    /**
+     * Returns the places (or transitions) in no invariant.
+     *
+     * @return indexes
+     */
+    public int[] getUncovered()
+    {
+        int count = places ? kernel.getPlacesCount() : kernel.getTransitionsCount();
+        boolean[] covered = new boolean[count];
+        IntList uncovered = new IntList();
+
+        for (Invariant invariant : invariants)
+        {
+            for (int index : invariant.getSupport())
+            {
+                covered[index] = true;
+            }
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            if(covered[i] == false)
+            {
+                uncovered.add(i);
+            }
+        }
+
+        return uncovered.toArray();
+    }
+
+    /**
+     * Returns if every place (or transition) is in some invariant: a net
+     * covered by P-invariants is bounded, a bounded and live net is
+     * covered by T-invariants.
+     *
+     * @return boolean
+     */
+    public boolean isCovered()
+    {
+        return complete && getUncovered().length == 0;
+    }
+
+    /**
+     * Computation row: incidence part and combination part (sparse).
+     */
+    private static class Row
+    {
+        /**
+         * Incidence: values[i] in columns[i] (sorted, non zero).
+         */
+        int[] columns;
+        long[] values;
+        BigInteger[] bigValues;
+
+        /**
+         * Combination: weights[i] of support[i] (sorted, positive).
+         */
+        int[] support;
+        long[] weights;
+        BigInteger[] bigWeights;
+
+        /**
+         * Support as bits.
+         */
+        final long[] bits;
+
+        Row(int size)
+        {
+            bits = new long[(size + 63) >> 6];
+        }
+
+        int indexOf(int column)
+        {
+            return Arrays.binarySearch(columns, column);
+        }
+
+        int signum(int i)
+        {
+            return (bigValues == null) ? Long.signum(values[i]) : bigValues[i].signum();
+        }
+
+        BigInteger get(int i)
+        {
+            return (bigValues == null) ? BigInteger.valueOf(values[i]) : bigValues[i];
+        }
+
+        BigInteger getWeight(int i)
+        {
+            return (bigWeights == null) ? BigInteger.valueOf(weights[i]) : bigWeights[i];
+        }
+
+        Invariant toInvariant()
+        {
+            BigInteger[] result = new BigInteger[support.length];
+
+            for (int i = 0; i < support.length; i++)
+            {
+                result[i] = getWeight(i);
+            }
+
+            return new Invariant(support, result);
+        }
+    }
+
+    /**
+     * Invariant: weights of its support (places or transitions).
+     */
+    public static class Invariant implements Comparable<Invariant>
+    {
+        private final int[] support;
+        private final BigInteger[] weights;
+
+        /**
+         * {@link Invariant} Constructor.
+         *
+         * @param support   sorted indexes
+         * @param weights   positive weight per index
+         */
+        public Invariant(int[] support, BigInteger[] weights)
+        {
+            this.support = support;
+            this.weights = weights;
+        }
+
+        /**
+         * Returns the places (or transitions) with a positive weight, sorted.
+         *
+         * @return indexes
+         */
+        public int[] getSupport()
+        {
+            return support;
+        }
+
+        /**
+         * Returns the weights of the support.
+         *
+         * @return BigInteger[]
+         */
+        public BigInteger[] getWeights()
+        {
+            return weights;
+        }
+
+        /**
+         * Smaller supports first, then by indexes.
+         *
+         * @param other
+         * @return int
+         */
+        @Override
+        public int compareTo(Invariant other)
+        {
+            if(support.length != other.support.length)
+            {
+                return (support.length < other.support.length) ? -1 : 1;
+            }
+
+            for (int i = 0; i < support.length; i++)
+            {
+                if(support[i] != other.support[i])
+                {
+                    return (support[i] < other.support[i]) ? -1 : 1;
+                }
+            }
+
+            return 0;
+        }
+    }
+}
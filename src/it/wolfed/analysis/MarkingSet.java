@@ -0,0 +1,352 @@
+package it.wolfed.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash set of markings.
+ *
+ * Each marking is packed in a fixed number of long words: every place
+ * takes 1, 2, 4, 8, 16 or 32 bits. The width starts from the biggest
+ * initial token count and is doubled (repacking all the stored markings)
+ * the first time a place overflows it, so safe nets take one bit per place.
+ *
+ * Markings are numbered in insertion order (0, 1, 2...). The hash table
+ * only holds those numbers: no boxed objects are allocated per marking.
+ */
+public class MarkingSet
+{
+    /**
+     * Number of places per marking.
+     */
+    private final int places;
+
+    /**
+     * Bits per place (power of two, max 32).
+     */
+    private int bits;
+
+    /**
+     * Long words per marking.
+     */
+    private int words;
+
+    /**
+     * Packed markings: marking i is in data[i * words .. (i + 1) * words - 1].
+     */
+    private long[] data;
+
+    /**
+     * Hash table of marking numbers + 1 (0 is empty), linear probing.
+     */
+    private int[] table;
+
+    /**
+     * Number of stored markings.
+     */
+    private int size;
+
+    /**
+     * Packing buffer.
+     */
+    private long[] packed;
+
+    /**
+     * {@link MarkingSet} Constructor.
+     *
+     * @param places        places per marking
+     * @param maxTokens     biggest token count expected (initial marking)
+     */
+    public MarkingSet(int places, int maxTokens)
+    {
+        this.places = places;
+        this.bits = 1;
+
+        while(bits < 32 && maxTokens > maxValue(bits))
+        {
+            bits *= 2;
+        }
+
+        this.words = wordsFor(bits);
+        this.data = new long[Math.max(1, words) * 1024];
+        this.table = new int[2048];
+        this.packed = new long[words];
+    }
+
+    /**
+     * Biggest token count for a bits width.
+     *
+     * @param bits
+     * @return long
+     */
+    private static long maxValue(int bits)
+    {
+        return (bits >= 32) ? Integer.MAX_VALUE : (1L << bits) - 1;
+    }
+
+    /**
+     * Long words per marking for a bits width.
+     *
+     * @param bits
+     * @return int
+     */
+    private int wordsFor(int bits)
+    {
+        return (int) (((long) places * bits + 63) / 64);
+    }
+
+    /**
+     * Adds a marking.
+     *
+     * @param marking
+     * @return the number of the new marking, or (-number - 1) if the
+     *         marking was already in the set
+     */
+    public int add(int[] marking)
+    {
+        while(pack(marking) == false)
+        {
+            widen();
+        }
+
+        int mask = table.length - 1;
+        int slot = hash(packed, 0) & mask;
+
+        while(table[slot] != 0)
+        {
+            int existing = table[slot] - 1;
+
+            if(equalsPacked(existing))
+            {
+                return -existing - 1;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        if((long) (size + 1) * words > Integer.MAX_VALUE - 8)
+        {
+            throw new IllegalStateException("Too many markings.");
+        }
+
+        int number = size++;
+
+        if(size * words > data.length)
+        {
+            data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(16L, (long) data.length * 2)));
+        }
+
+        System.arraycopy(packed, 0, data, number * words, words);
+        table[slot] = number + 1;
+
+        if(size * 2 > table.length && table.length < (1 << 30))
+        {
+            rehash(table.length * 2);
+        }
+
+        return number;
+    }
+
+    /**
+     * Returns the number of a marking, -1 if not in the set.
+     *
+     * @param marking
+     * @return int
+     */
+    public int indexOf(int[] marking)
+    {
+        if(pack(marking) == false)
+        {
+            return -1;
+        }
+
+        int mask = table.length - 1;
+        int slot = hash(packed, 0) & mask;
+
+        while(table[slot] != 0)
+        {
+            if(equalsPacked(table[slot] - 1))
+            {
+                return table[slot] - 1;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Unpacks a stored marking.
+     *
+     * @param number
+     * @param marking   destination, at least places long
+     */
+    public void get(int number, int[] marking)
+    {
+        int base = number * words;
+        long mask = maxValue(bits);
+
+        for (int p = 0; p < places; p++)
+        {
+            long bit = (long) p * bits;
+            marking[p] = (int) ((data[base + (int) (bit >>> 6)] >>> (bit & 63)) & mask);
+        }
+    }
+
+    /**
+     * Returns the number of stored markings.
+     *
+     * @return int
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the bits used per place.
+     *
+     * @return int
+     */
+    public int getBitsPerPlace()
+    {
+        return bits;
+    }
+
+    /**
+     * Returns the approximate memory used in bytes.
+     *
+     * @return long
+     */
+    public long getMemoryUsage()
+    {
+        return (long) data.length * 8 + (long) table.length * 4;
+    }
+
+    /**
+     * Packs a marking in {@link MarkingSet#packed}.
+     *
+     * @param marking
+     * @return false if a place overflows the current width
+     */
+    private boolean pack(int[] marking)
+    {
+        Arrays.fill(packed, 0);
+        long max = maxValue(bits);
+
+        for (int p = 0; p < places; p++)
+        {
+            if(marking[p] < 0 || marking[p] > max)
+            {
+                return false;
+            }
+
+            long bit = (long) p * bits;
+            packed[(int) (bit >>> 6)] |= ((long) marking[p]) << (bit & 63);
+        }
+
+        return true;
+    }
+
+    /**
+     * Compares the packing buffer with a stored marking.
+     *
+     * @param number
+     * @return boolean
+     */
+    private boolean equalsPacked(int number)
+    {
+        int base = number * words;
+
+        for (int w = 0; w < words; w++)
+        {
+            if(data[base + w] != packed[w])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Hash of a packed marking.
+     *
+     * @param source
+     * @param base
+     * @return int
+     */
+    private int hash(long[] source, int base)
+    {
+        long h = 0x9E3779B97F4A7C15L;
+
+        for (int w = 0; w < words; w++)
+        {
+            h ^= source[base + w];
+            h *= 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Rebuilds the hash table with a new capacity.
+     *
+     * @param capacity power of two
+     */
+    private void rehash(int capacity)
+    {
+        table = new int[capacity];
+        int mask = capacity - 1;
+
+        for (int number = 0; number < size; number++)
+        {
+            int slot = hash(data, number * words) & mask;
+
+            while(table[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            table[slot] = number + 1;
+        }
+    }
+
+    /**
+     * Doubles the bits per place, repacking all the stored markings.
+     */
+    private void widen()
+    {
+        if(bits >= 32)
+        {
+            throw new IllegalStateException("Negative or too big marking.");
+        }
+
+        int[] marking = new int[places];
+        int oldWords = words;
+        long[] oldData = data;
+        int oldBits = bits;
+
+        bits *= 2;
+        words = wordsFor(bits);
+        data = new long[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(16L, (long) Math.max(1, size) * words * 2))];
+        packed = new long[words];
+
+        long oldMask = maxValue(oldBits);
+
+        for (int number = 0; number < size; number++)
+        {
+            for (int p = 0; p < places; p++)
+            {
+                long bit = (long) p * oldBits;
+                marking[p] = (int) ((oldData[number * oldWords + (int) (bit >>> 6)] >>> (bit & 63)) & oldMask);
+            }
+
+            pack(marking);
+            System.arraycopy(packed, 0, data, number * words, words);
+        }
+
+        rehash(table.length);
+    }
+}
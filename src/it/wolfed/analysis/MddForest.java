@@ -0,0 +1,624 @@
+package it.wolfed.analysis;
+
+import it.wolfed.util.IntList;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Quasi-reduced multi-valued decision diagrams (MDD) sharing one forest.
+ *
+ * A node of level k (k >= 1) has a child of level k - 1 for each value
+ * 0, 1, 2... of variable k; the terminals are {@link MddForest#EMPTY}
+ * (no tuple) and {@link MddForest#ONE} (the empty tuple), of level 0.
+ * Every path goes through all the levels, so a node of level k is a set
+ * of tuples (x_k, ..., x_1). The values are unbounded: a node stores its
+ * children up to the last non-empty one.
+ *
+ * Nodes are unique (hash table on level and children), so two equal sets
+ * are the same node, and never freed: a node number stays valid, as the
+ * entries of the operation cache. The cache keeps every result (a lost
+ * result may be recomputed an exponential number of times) and is only
+ * cleared over {@link MddForest#CACHE_ENTRIES_PER_NODE} entries per
+ * allowed node; operations other than the union can store there their
+ * results with their own codes.
+ *
+ * All the nodes are stored in flat int arrays, no object per node. The
+ * operations use explicit stacks: a diagram has as many levels as a net
+ * has places, too deep for the Java stack.
+ */
+public class MddForest
+{
+    /**
+     * Terminals.
+     */
+    public static final int EMPTY = 0;
+    public static final int ONE = 1;
+
+    /**
+     * Operation codes of the cache (the others are free).
+     */
+    public static final int OP_UNION = 0;
+
+    /**
+     * Entries of the operation cache: at start and max per allowed node.
+     */
+    private static final int CACHE_ENTRIES = 1 << 16;
+    public static final int CACHE_ENTRIES_PER_NODE = 4;
+
+    /**
+     * Max number of nodes.
+     */
+    private final int maxNodes;
+
+    /**
+     * Level per node, children of node n: children[childrenStart[n] .. childrenStart[n + 1] - 1].
+     */
+    private final IntList levels = new IntList();
+    private final IntList childrenStart = new IntList();
+    private final IntList children = new IntList();
+
+    /**
+     * Unique table of node numbers + 1 (0 is empty), linear probing.
+     */
+    private int[] table = new int[1024];
+
+    /**
+     * Operation cache: 4 ints per entry (operation, a, b, result), result
+     * -1 for an empty entry, linear probing.
+     */
+    private int[] cache;
+    private int cacheSize;
+
+    /**
+     * Union stack: pending pairs (a < b), next child, children so far.
+     */
+    private final IntList stackA = new IntList();
+    private final IntList stackB = new IntList();
+    private final IntList stackNext = new IntList();
+    private final List<int[]> stackChildren = new ArrayList<>();
+
+    /**
+     * {@link MddForest} Constructor.
+     *
+     * @param maxNodes
+     */
+    public MddForest(int maxNodes)
+    {
+        this.maxNodes = maxNodes;
+
+        levels.add(0);
+        levels.add(0);
+        childrenStart.add(0);
+        childrenStart.add(0);
+        childrenStart.add(0);
+
+        clearCache(CACHE_ENTRIES * 4);
+    }
+
+    /**
+     * Returns the node of a level with some children, created if new.
+     *
+     * @param level
+     * @param nodeChildren  children by value (trailing EMPTY ignored)
+     * @return node, EMPTY if all the children are EMPTY
+     * @throws IllegalStateException if the nodes limit is reached
+     */
+    public int getNode(int level, int[] nodeChildren)
+    {
+        int length = nodeChildren.length;
+
+        while(length > 0 && nodeChildren[length - 1] == EMPTY)
+        {
+            length--;
+        }
+
+        if(length == 0)
+        {
+            return EMPTY;
+        }
+
+        int mask = table.length - 1;
+        int slot = hash(level, nodeChildren, length) & mask;
+
+        while(table[slot] != 0)
+        {
+            int node = table[slot] - 1;
+
+            if(isNode(node, level, nodeChildren, length))
+            {
+                return node;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        int node = levels.size();
+
+        if(node >= maxNodes)
+        {
+            throw new IllegalStateException("Nodes limit reached (" + maxNodes + ").");
+        }
+
+        levels.add(level);
+
+        for (int i = 0; i < length; i++)
+        {
+            children.add(nodeChildren[i]);
+        }
+
+        childrenStart.add(children.size());
+        table[slot] = node + 1;
+
+        if(node * 2 >= table.length)
+        {
+            rehash();
+        }
+
+        return node;
+    }
+
+    /**
+     * Union of two sets of the same level.
+     *
+     * The pairs of children are computed with an explicit stack: its depth
+     * is the number of levels, as large as the places of a net.
+     *
+     * @param a
+     * @param b
+     * @return node
+     */
+    public int union(int a, int b)
+    {
+        int known = getKnownUnion(a, b);
+
+        if(known >= 0)
+        {
+            return known;
+        }
+
+        // Left over by a union stopped on the nodes limit
+        stackA.clear();
+        stackB.clear();
+        stackNext.clear();
+        stackChildren.clear();
+
+        pushUnion(a, b);
+
+        int returned = -1;
+
+        while(true)
+        {
+            int top = stackA.size() - 1;
+            int[] result = stackChildren.get(top);
+            int i = stackNext.get(top);
+
+            if(returned >= 0)
+            {
+                result[i++] = returned;
+                returned = -1;
+            }
+
+            while(i < result.length)
+            {
+                int childA = getChild(stackA.get(top), i);
+                int childB = getChild(stackB.get(top), i);
+                known = getKnownUnion(childA, childB);
+
+                if(known < 0)
+                {
+                    break;
+                }
+
+                result[i++] = known;
+            }
+
+            stackNext.set(top, i);
+
+            if(i < result.length)
+            {
+                pushUnion(getChild(stackA.get(top), i), getChild(stackB.get(top), i));
+                continue;
+            }
+
+            int node = getNode(getLevel(stackA.get(top)), result);
+            putCached(OP_UNION, stackA.get(top), stackB.get(top), node);
+
+            stackA.removeLast();
+            stackB.removeLast();
+            stackNext.removeLast();
+            stackChildren.remove(top);
+
+            if(top == 0)
+            {
+                return node;
+            }
+
+            returned = node;
+        }
+    }
+
+    /**
+     * Returns the union of two sets if trivial or cached.
+     *
+     * @param a
+     * @param b
+     * @return node, -1 if to compute
+     */
+    private int getKnownUnion(int a, int b)
+    {
+        if(a == EMPTY || a == b)
+        {
+            return b;
+        }
+
+        if(b == EMPTY)
+        {
+            return a;
+        }
+
+        return getCached(OP_UNION, Math.min(a, b), Math.max(a, b));
+    }
+
+    private void pushUnion(int a, int b)
+    {
+        stackA.add(Math.min(a, b));
+        stackB.add(Math.max(a, b));
+        stackNext.add(0);
+        stackChildren.add(new int[Math.max(getChildrenCount(a), getChildrenCount(b))]);
+    }
+
+    /**
+     * Returns the level of a node (0 for the terminals).
+     *
+     * @param node
+     * @return int
+     */
+    public int getLevel(int node)
+    {
+        return levels.get(node);
+    }
+
+    /**
+     * Returns the number of stored children (last value + 1).
+     *
+     * @param node
+     * @return int
+     */
+    public int getChildrenCount(int node)
+    {
+        return childrenStart.get(node + 1) - childrenStart.get(node);
+    }
+
+    /**
+     * Returns the child of a value (EMPTY over the stored ones).
+     *
+     * @param node
+     * @param value
+     * @return node
+     */
+    public int getChild(int node, int value)
+    {
+        int start = childrenStart.get(node);
+
+        if(value >= childrenStart.get(node + 1) - start)
+        {
+            return EMPTY;
+        }
+
+        return children.get(start + value);
+    }
+
+    /**
+     * Returns if a set contains a tuple.
+     *
+     * @param node
+     * @param values    value per level (values[k - 1] for level k)
+     * @return boolean
+     */
+    public boolean contains(int node, int[] values)
+    {
+        while(node != EMPTY && node != ONE)
+        {
+            node = getChild(node, values[getLevel(node) - 1]);
+        }
+
+        return node == ONE;
+    }
+
+    /**
+     * Returns the number of tuples of a set.
+     *
+     * @param node
+     * @return BigInteger
+     */
+    public BigInteger count(int node)
+    {
+        if(node == EMPTY || node == ONE)
+        {
+            return BigInteger.valueOf(node);
+        }
+
+        boolean[] reached = getReached(node);
+        BigInteger[] counts = new BigInteger[node + 1];
+        counts[EMPTY] = BigInteger.ZERO;
+        counts[ONE] = BigInteger.ONE;
+
+        // Children are created before their parents: ascending order
+        for (int n = ONE + 1; n <= node; n++)
+        {
+            if(reached[n])
+            {
+                BigInteger sum = BigInteger.ZERO;
+
+                for (int i = childrenStart.get(n); i < childrenStart.get(n + 1); i++)
+                {
+                    sum = sum.add(counts[children.get(i)]);
+                }
+
+                counts[n] = sum;
+            }
+        }
+
+        return counts[node];
+    }
+
+    /**
+     * Returns the nodes below a node (itself included).
+     *
+     * @param node
+     * @return reached[n] true if n is below
+     */
+    public boolean[] getReached(int node)
+    {
+        boolean[] reached = new boolean[node + 1];
+        reached[node] = true;
+
+        // Parents are created after their children: descending order
+        for (int n = node; n > ONE; n--)
+        {
+            if(reached[n])
+            {
+                for (int i = childrenStart.get(n); i < childrenStart.get(n + 1); i++)
+                {
+                    reached[children.get(i)] = true;
+                }
+            }
+        }
+
+        return reached;
+    }
+
+    /**
+     * Returns the number of nodes of a set (terminals excluded).
+     *
+     * @param node
+     * @return int
+     */
+    public int getNodesCount(int node)
+    {
+        int count = 0;
+        boolean[] reached = getReached(node);
+
+        for (int n = ONE + 1; n < reached.length; n++)
+        {
+            if(reached[n])
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of stored nodes (terminals excluded).
+     *
+     * @return int
+     */
+    public int getNodesCount()
+    {
+        return levels.size() - 2;
+    }
+
+    /**
+     * Returns a cached result.
+     *
+     * @param operation
+     * @param a
+     * @param b
+     * @return result, -1 if not cached
+     */
+    public int getCached(int operation, int a, int b)
+    {
+        int mask = cache.length - 4;
+
+        for (int entry = cacheEntry(operation, a, b); cache[entry + 3] >= 0; entry = (entry + 4) & mask)
+        {
+            if(cache[entry] == operation && cache[entry + 1] == a && cache[entry + 2] == b)
+            {
+                return cache[entry + 3];
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Caches a result.
+     *
+     * @param operation
+     * @param a
+     * @param b
+     * @param result
+     */
+    public void putCached(int operation, int a, int b, int result)
+    {
+        int mask = cache.length - 4;
+        int entry = cacheEntry(operation, a, b);
+
+        while(cache[entry + 3] >= 0)
+        {
+            if(cache[entry] == operation && cache[entry + 1] == a && cache[entry + 2] == b)
+            {
+                cache[entry + 3] = result;
+                return;
+            }
+
+            entry = (entry + 4) & mask;
+        }
+
+        cache[entry] = operation;
+        cache[entry + 1] = a;
+        cache[entry + 2] = b;
+        cache[entry + 3] = result;
+
+        if(++cacheSize * 2 > cache.length / 4)
+        {
+            if(cache.length / 4 >= (long) maxNodes * CACHE_ENTRIES_PER_NODE)
+            {
+                clearCache(cache.length);
+            }
+            else
+            {
+                growCache();
+            }
+        }
+    }
+
+    /**
+     * Returns the memory used by the nodes, the unique table and the cache.
+     *
+     * @return bytes
+     */
+    public long getMemoryUsage()
+    {
+        return 4L * (levels.size() + childrenStart.size() + children.size() + table.length + cache.length);
+    }
+
+    private int cacheEntry(int operation, int a, int b)
+    {
+        int h = mix(mix(operation) + a) + b;
+
+        return (mix(h) & (cache.length / 4 - 1)) * 4;
+    }
+
+    private void clearCache(int length)
+    {
+        cache = new int[length];
+        cacheSize = 0;
+
+        for (int i = 0; i < length; i += 4)
+        {
+            cache[i + 3] = -1;
+        }
+    }
+
+    private void growCache()
+    {
+        int[] old = cache;
+        clearCache(old.length * 2);
+
+        int mask = cache.length - 4;
+
+        for (int i = 0; i < old.length; i += 4)
+        {
+            if(old[i + 3] >= 0)
+            {
+                int entry = cacheEntry(old[i], old[i + 1], old[i + 2]);
+
+                while(cache[entry + 3] >= 0)
+                {
+                    entry = (entry + 4) & mask;
+                }
+
+                System.arraycopy(old, i, cache, entry, 4);
+                cacheSize++;
+            }
+        }
+    }
+
+    private boolean isNode(int node, int level, int[] nodeChildren, int length)
+    {
+        int start = childrenStart.get(node);
+
+        if(levels.get(node) != level || childrenStart.get(node + 1) - start != length)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++)
+        {
+            if(children.get(start + i) != nodeChildren[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int hash(int level, int[] nodeChildren, int length)
+    {
+        int h = mix(level);
+
+        for (int i = 0; i < length; i++)
+        {
+            h = mix(h + nodeChildren[i]);
+        }
+
+        return h;
+    }
+
+    /**
+     * Spreads the bits of a hash (murmur3 finalizer): linear probing needs
+     * well mixed low bits.
+     *
+     * @param h
+     * @return int
+     */
+    private static int mix(int h)
+    {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+
+        return h;
+    }
+
+    private void rehash()
+    {
+        int[] grown = new int[table.length * 2];
+        int mask = grown.length - 1;
+        int[] nodeChildren = new int[0];
+
+        for (int node = ONE + 1; node < levels.size(); node++)
+        {
+            int start = childrenStart.get(node);
+            int length = childrenStart.get(node + 1) - start;
+
+            if(nodeChildren.length < length)
+            {
+                nodeChildren = new int[length];
+            }
+
+            for (int i = 0; i < length; i++)
+            {
+                nodeChildren[i] = children.get(start + i);
+            }
+
+            int slot = hash(levels.get(node), nodeChildren, length) & mask;
+
+            while(grown[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            grown[slot] = node + 1;
+        }
+
+        table = grown;
+    }
+}
@@ -0,0 +1,580 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PetriNetKernel;
+import it.wolfed.util.IntList;
+import java.util.Arrays;
+
+/**
+ * Reachability graph (state space) of a net.
+ *
+ * Breadth first exploration from the initial marking (the tokens of the
+ * places). The markings are stored packed in a {@link MarkingSet}: states
+ * are numbered in discovery order, so the BFS queue is the set itself.
+ *
+ * For each state the BFS parent (state and transition) is kept, so a
+ * firing sequence reaching any state can be rebuilt. The edges are kept
+ * only on request (CSR by source state).
+ *
+ * Subclasses can stop the exploration early overriding
+ * {@link ReachabilityGraph#onNewState(int, int[])} and
+ * {@link ReachabilityGraph#onDeadlock(int, int[])}, and can reduce the
+ * transitions fired in a state overriding
+ * {@link ReachabilityGraph#getFiringTransitions(int, int[], int[])}.
+ *
+ * On request the independent transitions are not interleaved: only the
+ * enabled transitions of a {@link StubbornSets stubborn set} are fired.
+ * The deadlocks are kept; a state with a successor already explored (it
+ * may close a cycle) fires all its enabled transitions, so no transition
+ * is ignored forever.
+ *
+ * An interrupted thread (a cancelled background analysis) stops the
+ * exploration early, as if the state limit was reached.
+ */
+public class ReachabilityGraph
+{
+    /**
+     * Net snapshot.
+     */
+    protected final PetriNetKernel kernel;
+
+    /**
+     * Max number of states to explore.
+     */
+    private final int maxStates;
+
+    /**
+     * Keep the edges of the graph.
+     */
+    private boolean storeEdges;
+
+    /**
+     * Partial order reduction, null if disabled.
+     */
+    private StubbornSets stubbornSets;
+
+    /**
+     * Reached markings.
+     */
+    private MarkingSet states;
+
+    /**
+     * BFS parent state and transition per state (-1 for the initial state).
+     */
+    private IntList parentStates;
+    private IntList parentTransitions;
+
+    /**
+     * Edges in CSR: edges of state s are edgeTargets[edgeStarts[s] .. edgeStarts[s + 1] - 1].
+     */
+    private IntList edgeStarts;
+    private IntList edgeTargets;
+    private IntList edgeTransitions;
+
+    /**
+     * States without enabled transitions.
+     */
+    private IntList deadlocks;
+
+    /**
+     * Number of explored edges (also when not stored).
+     */
+    private long edgesCount;
+
+    /**
+     * Exploration states.
+     */
+    private boolean complete;
+    private boolean limitReached;
+
+    /**
+     * Transitions enabled in a state: stamp of the last state that checked them.
+     */
+    private int[] checkedBy;
+
+    /**
+     * Transitions with an empty preset: always enabled.
+     */
+    private int[] sourceTransitions;
+
+    /**
+     * Successor of a reduced state and transitions reaching an already
+     * explored state, for the cycle proviso.
+     */
+    private int[] provisoMarking;
+    private boolean[] closingCycle;
+
+    /**
+     * {@link ReachabilityGraph} Constructor.
+     *
+     * @param graph
+     * @param maxStates
+     */
+    public ReachabilityGraph(PetriNetGraph graph, int maxStates)
+    {
+        this(new PetriNetKernel(graph), maxStates);
+    }
+
+    /**
+     * {@link ReachabilityGraph} Constructor.
+     *
+     * @param kernel
+     * @param maxStates
+     */
+    public ReachabilityGraph(PetriNetKernel kernel, int maxStates)
+    {
+        this.kernel = kernel;
+        this.maxStates = maxStates;
+    }
+
+    /**
+     * Keep (or not) the edges of the graph during the exploration.
+     *
+     * @param storeEdges
+     */
+    public void setStoreEdges(boolean storeEdges)
+    {
+        this.storeEdges = storeEdges;
+    }
+
+    /**
+     * Fires only the transitions of a stubborn set (or all the enabled ones).
+     *
+     * @param reduction
+     */
+    public void setReduction(boolean reduction)
+    {
+        if(reduction == false)
+        {
+            stubbornSets = null;
+        }
+        else if(stubbornSets == null)
+        {
+            stubbornSets = new StubbornSets(kernel);
+        }
+    }
+
+    /**
+     * Returns true if the partial order reduction is enabled.
+     *
+     * @return boolean
+     */
+    public boolean isReduction()
+    {
+        return stubbornSets != null;
+    }
+
+    /**
+     * Explores the state space.
+     *
+     * When stopped early, the states still to explore have no stored edges.
+     *
+     * @return true if the state space is complete
+     */
+    public boolean explore()
+    {
+        complete = search();
+
+        while(storeEdges && edgeStarts.size() <= states.size())
+        {
+            edgeStarts.add(edgeTargets.size());
+        }
+
+        return complete;
+    }
+
+    /**
+     * Breadth first search from the initial marking.
+     *
+     * @return false if stopped early
+     */
+    private boolean search()
+    {
+        int[] marking = kernel.getInitialMarking();
+        int maxTokens = 0;
+
+        for (int tokens : marking)
+        {
+            maxTokens = Math.max(maxTokens, tokens);
+        }
+
+        states = new MarkingSet(kernel.getPlacesCount(), maxTokens);
+        parentStates = new IntList();
+        parentTransitions = new IntList();
+        edgeStarts = new IntList();
+        edgeTargets = new IntList();
+        edgeTransitions = new IntList();
+        deadlocks = new IntList();
+        edgesCount = 0;
+        complete = false;
+        limitReached = false;
+
+        checkedBy = new int[kernel.getTransitionsCount()];
+        Arrays.fill(checkedBy, -1);
+
+        IntList sources = new IntList();
+
+        for (int t = 0; t < kernel.getTransitionsCount(); t++)
+        {
+            if(kernel.transitionPresetStart(t) == kernel.transitionPresetEnd(t))
+            {
+                sources.add(t);
+            }
+        }
+
+        sourceTransitions = sources.toArray();
+        provisoMarking = new int[kernel.getPlacesCount()];
+        closingCycle = new boolean[kernel.getTransitionsCount()];
+
+        states.add(marking);
+        parentStates.add(-1);
+        parentTransitions.add(-1);
+
+        if(onNewState(0, marking) == false)
+        {
+            return false;
+        }
+
+        int[] firing = new int[kernel.getTransitionsCount()];
+        int[] successor = new int[kernel.getPlacesCount()];
+
+        for (int state = 0; state < states.size(); state++)
+        {
+            if(Thread.currentThread().isInterrupted())
+            {
+                return false;
+            }
+
+            states.get(state, marking);
+
+            if(storeEdges)
+            {
+                edgeStarts.add(edgeTargets.size());
+            }
+
+            int count = getFiringTransitions(state, marking, firing);
+
+            if(count == 0)
+            {
+                deadlocks.add(state);
+
+                if(onDeadlock(state, marking) == false)
+                {
+                    return false;
+                }
+            }
+
+            for (int i = 0; i < count; i++)
+            {
+                int t = firing[i];
+
+                System.arraycopy(marking, 0, successor, 0, successor.length);
+                kernel.fire(t, successor);
+
+                // Stops on a new state beyond the limit: a space of exactly maxStates is complete
+                if(states.size() >= maxStates && states.indexOf(successor) < 0)
+                {
+                    limitReached = true;
+                    return false;
+                }
+
+                edgesCount++;
+
+                int added = states.add(successor);
+                int target = (added >= 0) ? added : -added - 1;
+
+                if(storeEdges)
+                {
+                    edgeTargets.add(target);
+                    edgeTransitions.add(t);
+                }
+
+                if(added >= 0)
+                {
+                    parentStates.add(state);
+                    parentTransitions.add(t);
+
+                    if(onNewState(added, successor) == false)
+                    {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Called on each new state.
+     *
+     * @param state
+     * @param marking   do not modify
+     * @return false to stop the exploration
+     */
+    protected boolean onNewState(int state, int[] marking)
+    {
+        return true;
+    }
+
+    /**
+     * Called on each state without enabled transitions.
+     *
+     * @param state
+     * @param marking   do not modify
+     * @return false to stop the exploration
+     */
+    protected boolean onDeadlock(int state, int[] marking)
+    {
+        return true;
+    }
+
+    /**
+     * Collects the transitions to fire in a state.
+     *
+     * All the enabled transitions, or the enabled transitions of a
+     * stubborn set when the reduction is enabled: a set where none of them
+     * reaches an already explored state, so each cycle of the reduced graph
+     * has a state firing all its enabled transitions.
+     *
+     * @param state
+     * @param marking
+     * @param firing    destination
+     * @return number of transitions in firing
+     */
+    protected int getFiringTransitions(int state, int[] marking, int[] firing)
+    {
+        int count = getEnabledTransitions(state, marking, firing);
+
+        if(stubbornSets == null || count <= 1)
+        {
+            return count;
+        }
+
+        // Cycle proviso: no transition reaching an already explored state
+        for (int i = 0; i < count; i++)
+        {
+            System.arraycopy(marking, 0, provisoMarking, 0, marking.length);
+            kernel.fire(firing[i], provisoMarking);
+
+            int target = states.indexOf(provisoMarking);
+            closingCycle[firing[i]] = target >= 0 && target <= state;
+        }
+
+        int reduced = stubbornSets.reduce(marking, firing, count, closingCycle);
+
+        for (int i = 0; i < count; i++)
+        {
+            closingCycle[firing[i]] = false;
+        }
+
+        return reduced;
+    }
+
+    /**
+     * Collects all the enabled transitions in a state.
+     *
+     * @param state
+     * @param marking
+     * @param enabled   destination
+     * @return number of transitions in enabled
+     */
+    protected final int getEnabledTransitions(int state, int[] marking, int[] enabled)
+    {
+        int count = 0;
+
+        for (int t : sourceTransitions)
+        {
+            enabled[count++] = t;
+        }
+
+        for (int p = 0; p < marking.length; p++)
+        {
+            if(marking[p] > 0)
+            {
+                for (int i = kernel.placePostsetStart(p); i < kernel.placePostsetEnd(p); i++)
+                {
+                    int t = kernel.placePostsetTransition(i);
+
+                    if(checkedBy[t] != state)
+                    {
+                        checkedBy[t] = state;
+
+                        if(kernel.isEnabled(t, marking))
+                        {
+                            enabled[count++] = t;
+                        }
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the net snapshot.
+     *
+     * @return PetriNetKernel
+     */
+    public PetriNetKernel getKernel()
+    {
+        return kernel;
+    }
+
+    /**
+     * Returns the number of reached states.
+     *
+     * @return int
+     */
+    public int getStatesCount()
+    {
+        return states.size();
+    }
+
+    /**
+     * Returns the number of explored edges.
+     *
+     * @return long
+     */
+    public long getEdgesCount()
+    {
+        return edgesCount;
+    }
+
+    /**
+     * Returns the states without enabled transitions.
+     *
+     * @return int[]
+     */
+    public int[] getDeadlocks()
+    {
+        return deadlocks.toArray();
+    }
+
+    /**
+     * Returns if the whole state space was explored.
+     *
+     * @return boolean
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * Returns if the exploration stopped on the states limit.
+     *
+     * @return boolean
+     */
+    public boolean isLimitReached()
+    {
+        return limitReached;
+    }
+
+    /**
+     * Returns the reached markings.
+     *
+     * @return MarkingSet
+     */
+    public MarkingSet getStates()
+    {
+        return states;
+    }
+
+    /**
+     * Returns the marking of a state.
+     *
+     * @param state
+     * @return int[]
+     */
+    public int[] getMarking(int state)
+    {
+        int[] marking = new int[kernel.getPlacesCount()];
+        states.get(state, marking);
+
+        return marking;
+    }
+
+    /**
+     * Returns a firing sequence (transition indexes) from the initial
+     * marking to a state, following the BFS parents (a shortest one).
+     *
+     * @param state
+     * @return int[]
+     */
+    public int[] getPath(int state)
+    {
+        IntList reversed = new IntList();
+
+        while(parentStates.get(state) >= 0)
+        {
+            reversed.add(parentTransitions.get(state));
+            state = parentStates.get(state);
+        }
+
+        int[] path = new int[reversed.size()];
+
+        for (int i = 0; i < path.length; i++)
+        {
+            path[i] = reversed.get(path.length - 1 - i);
+        }
+
+        return path;
+    }
+
+    /**
+     * Returns the BFS parent of a state, -1 for the initial state.
+     *
+     * @param state
+     * @return int
+     */
+    public int getParent(int state)
+    {
+        return parentStates.get(state);
+    }
+
+    /**
+     * First stored edge of a state (edges must be stored).
+     *
+     * @param state
+     * @return int
+     */
+    public int getEdgesStart(int state)
+    {
+        return edgeStarts.get(state);
+    }
+
+    /**
+     * Position after the last stored edge of a state (edges must be stored).
+     *
+     * @param state
+     * @return int
+     */
+    public int getEdgesEnd(int state)
+    {
+        return edgeStarts.get(state + 1);
+    }
+
+    /**
+     * Target state of a stored edge.
+     *
+     * @param edge
+     * @return int
+     */
+    public int getEdgeTarget(int edge)
+    {
+        return edgeTargets.get(edge);
+    }
+
+    /**
+     * Fired transition of a stored edge.
+     *
+     * @param edge
+     * @return int
+     */
+    public int getEdgeTransition(int edge)
+    {
+        return edgeTransitions.get(edge);
+    }
+}
@@ -0,0 +1,492 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PetriNetKernel;
+import it.wolfed.model.TransitionVertex;
+import it.wolfed.util.Constants;
+import it.wolfed.util.IntList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Soundness of a workflow net.
+ *
+ * A workflow net is sound if from the initial marking [i]:
+ *
+ *  - option to complete: [o] is reachable from every reachable marking
+ *  - proper completion: a reachable marking with o marked is exactly [o]
+ *  - no dead transitions: each transition is enabled in some marking
+ *
+ * The tokens of the other places (resources, such as the place added by
+ * {@link it.wolfed.operation.MutualExclusionOperation}) are part of both
+ * [i] and [o]: at completion every resource must be back in its place.
+ *
+ * The state space is explored on the short-circuited net (t*: o -> i,
+ * see {@link PetriNetKernel#shortCircuit()}), so [o] is never a deadlock
+ * and the three properties become local checks or checks on the graph.
+ *
+ * The exploration stops on the first counterexample found: a deadlock,
+ * an improper completion or a marking strictly covering one of its
+ * ancestors (the net is unbounded). The firing sequence reaching the
+ * counterexample is available as witness.
+ *
+ * With the reduction enabled ({@link ReachabilityGraph#setReduction(boolean)})
+ * the states with the final place marked fire all their enabled
+ * transitions: each firing sequence of the net is then completed by one
+ * of the reduced graph, firing the same transitions plus independent
+ * ones never consuming from o. So the improper completions, the markings
+ * not reaching [o] and the dead transitions are found on the reduced
+ * graph as well, and the results are the same.
+ */
+public class SoundnessChecker extends ReachabilityGraph
+{
+    /**
+     * Initial and final places.
+     */
+    private final int initialPlace;
+    private final int finalPlace;
+
+    /**
+     * Final marking [o].
+     */
+    private final int[] finalMarking;
+
+    /**
+     * Tokens count per state, to skip the ancestors that cannot be covered.
+     */
+    private final IntList tokensCount = new IntList();
+
+    /**
+     * Result of the check: one of the Constants.SOUNDNESS_* values.
+     */
+    private String result;
+
+    /**
+     * State reached by the witness firing sequence, -1 if none.
+     */
+    private int witnessState = -1;
+
+    /**
+     * Transitions never enabled (when sound up to that check).
+     */
+    private int[] deadTransitions = new int[0];
+
+    /**
+     * {@link SoundnessChecker} Constructor.
+     *
+     * @param graph
+     * @param maxStates
+     */
+    public SoundnessChecker(PetriNetGraph graph, int maxStates)
+    {
+        this(new PetriNetKernel(graph), maxStates);
+    }
+
+    /**
+     * {@link SoundnessChecker} Constructor.
+     *
+     * @param net       the net (not short-circuited)
+     * @param maxStates
+     * @throws IllegalStateException if the net has not a single initial
+     *         and a single final place
+     */
+    public SoundnessChecker(PetriNetKernel net, int maxStates)
+    {
+        super(net.shortCircuit(), maxStates);
+
+        this.initialPlace = net.getInitialPlaces()[0];
+        this.finalPlace = net.getFinalPlaces()[0];
+
+        this.finalMarking = kernel.getInitialMarking();
+        this.finalMarking[initialPlace] = 0;
+        this.finalMarking[finalPlace] = 1;
+
+        setStoreEdges(true);
+    }
+
+    /**
+     * Checks the soundness.
+     *
+     * @return true if sound
+     */
+    public boolean check()
+    {
+        tokensCount.clear();
+        witnessState = -1;
+        deadTransitions = new int[0];
+        result = null;
+
+        if(explore() == false)
+        {
+            if(result == null)
+            {
+                result = Constants.SOUNDNESS_UNKNOWN;
+            }
+
+            return false;
+        }
+
+        // Option to complete: every state reaches [o] (backward from it)
+        int finalState = getStates().indexOf(finalMarking);
+
+        if(finalState < 0)
+        {
+            result = Constants.SOUNDNESS_NO_OPTION_TO_COMPLETE;
+            witnessState = 0;
+            return false;
+        }
+
+        int unreachable = getFirstNotReaching(finalState);
+
+        if(unreachable >= 0)
+        {
+            result = Constants.SOUNDNESS_NO_OPTION_TO_COMPLETE;
+            witnessState = unreachable;
+            return false;
+        }
+
+        // No dead transitions
+        boolean[] fired = new boolean[kernel.getTransitionsCount()];
+
+        for (int e = getEdgesStart(0); e < getEdgesEnd(getStatesCount() - 1); e++)
+        {
+            fired[getEdgeTransition(e)] = true;
+        }
+
+        IntList dead = new IntList();
+
+        for (int t = 0; t < fired.length; t++)
+        {
+            if(fired[t] == false)
+            {
+                dead.add(t);
+            }
+        }
+
+        deadTransitions = dead.toArray();
+
+        if(deadTransitions.length > 0)
+        {
+            result = Constants.SOUNDNESS_DEAD_TRANSITION;
+            return false;
+        }
+
+        result = Constants.SOUNDNESS_SOUND;
+        return true;
+    }
+
+    /**
+     * Proper completion and boundedness, on each new state.
+     *
+     * @param state
+     * @param marking
+     * @return false on a counterexample
+     */
+    @Override
+    protected boolean onNewState(int state, int[] marking)
+    {
+        int tokens = 0;
+
+        for (int p = 0; p < marking.length; p++)
+        {
+            tokens += marking[p];
+        }
+
+        tokensCount.add(tokens);
+
+        if(marking[finalPlace] > 0 && Arrays.equals(marking, finalMarking) == false)
+        {
+            result = Constants.SOUNDNESS_IMPROPER_COMPLETION;
+            witnessState = state;
+            return false;
+        }
+
+        int[] ancestorMarking = new int[marking.length];
+
+        for (int ancestor = getParent(state); ancestor >= 0; ancestor = getParent(ancestor))
+        {
+            if(tokensCount.get(ancestor) < tokens)
+            {
+                getStates().get(ancestor, ancestorMarking);
+
+                if(isCovered(ancestorMarking, marking))
+                {
+                    result = Constants.SOUNDNESS_UNBOUNDED;
+                    witnessState = state;
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * No reduction when the final place is marked (see the class comment).
+     *
+     * @param state
+     * @param marking
+     * @param firing
+     * @return number of transitions in firing
+     */
+    @Override
+    protected int getFiringTransitions(int state, int[] marking, int[] firing)
+    {
+        if(marking[finalPlace] > 0)
+        {
+            return getEnabledTransitions(state, marking, firing);
+        }
+
+        return super.getFiringTransitions(state, marking, firing);
+    }
+
+    /**
+     * In the short-circuited net every deadlock is a counterexample.
+     *
+     * @param state
+     * @param marking
+     * @return false
+     */
+    @Override
+    protected boolean onDeadlock(int state, int[] marking)
+    {
+        result = Constants.SOUNDNESS_DEADLOCK;
+        witnessState = state;
+
+        return false;
+    }
+
+    /**
+     * Returns if a marking is less or equal than another in each place.
+     *
+     * @param smaller
+     * @param bigger
+     * @return boolean
+     */
+    private static boolean isCovered(int[] smaller, int[] bigger)
+    {
+        for (int p = 0; p < smaller.length; p++)
+        {
+            if(smaller[p] > bigger[p])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Visits the reversed edges from a state.
+     *
+     * @param target
+     * @return the first state not reaching target, -1 if none
+     */
+    private int getFirstNotReaching(int target)
+    {
+        int states = getStatesCount();
+        int[] reverseStart = new int[states + 1];
+
+        for (int s = 0; s < states; s++)
+        {
+            for (int e = getEdgesStart(s); e < getEdgesEnd(s); e++)
+            {
+                reverseStart[getEdgeTarget(e) + 1]++;
+            }
+        }
+
+        for (int s = 0; s < states; s++)
+        {
+            reverseStart[s + 1] += reverseStart[s];
+        }
+
+        int[] next = new int[states];
+        System.arraycopy(reverseStart, 0, next, 0, states);
+        int[] reverseSource = new int[reverseStart[states]];
+
+        for (int s = 0; s < states; s++)
+        {
+            for (int e = getEdgesStart(s); e < getEdgesEnd(s); e++)
+            {
+                reverseSource[next[getEdgeTarget(e)]++] = s;
+            }
+        }
+
+        boolean[] reaching = new boolean[states];
+        int[] stack = new int[states];
+        int size = 0;
+
+        reaching[target] = true;
+        stack[size++] = target;
+
+        while(size > 0)
+        {
+            int s = stack[--size];
+
+            for (int i = reverseStart[s]; i < reverseStart[s + 1]; i++)
+            {
+                if(reaching[reverseSource[i]] == false)
+                {
+                    reaching[reverseSource[i]] = true;
+                    stack[size++] = reverseSource[i];
+                }
+            }
+        }
+
+        for (int s = 0; s < states; s++)
+        {
+            if(reaching[s] == false)
+            {
+                return s;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the result: one of the Constants.SOUNDNESS_* values.
+     *
+     * @return String
+     */
+    public String getResult()
+    {
+        return result;
+    }
+
+    /**
+     * Returns if the net is sound (after {@link SoundnessChecker#check()}).
+     *
+     * @return boolean
+     */
+    public boolean isSound()
+    {
+        return Constants.SOUNDNESS_SOUND.equals(result);
+    }
+
+    /**
+     * Returns the firing sequence (transition indexes) reaching the
+     * counterexample, null if there is none.
+     *
+     * @return int[]
+     */
+    public int[] getWitness()
+    {
+        return (witnessState < 0) ? null : getPath(witnessState);
+    }
+
+    /**
+     * Returns the firing sequence reaching the counterexample as
+     * transitions, null if there is none.
+     *
+     * @return List<TransitionVertex>
+     */
+    public List<TransitionVertex> getWitnessTransitions()
+    {
+        int[] witness = getWitness();
+
+        if(witness == null)
+        {
+            return null;
+        }
+
+        List<TransitionVertex> sequence = new ArrayList<>();
+
+        for (int t : witness)
+        {
+            sequence.add(kernel.getTransition(t));
+        }
+
+        return sequence;
+    }
+
+    /**
+     * Returns the firing sequence reaching the counterexample as the names
+     * of the transitions at snapshot time, null if there is none.
+     *
+     * @return List<String>
+     */
+    public List<String> getWitnessNames()
+    {
+        int[] witness = getWitness();
+
+        if(witness == null)
+        {
+            return null;
+        }
+
+        List<String> sequence = new ArrayList<>();
+
+        for (int t : witness)
+        {
+            sequence.add(kernel.getTransitionName(t));
+        }
+
+        return sequence;
+    }
+
+    /**
+     * Returns the marking of the counterexample, null if there is none.
+     *
+     * @return int[]
+     */
+    public int[] getWitnessMarking()
+    {
+        return (witnessState < 0) ? null : getMarking(witnessState);
+    }
+
+    /**
+     * Returns the dead transitions.
+     *
+     * @return List<TransitionVertex>
+     */
+    public List<TransitionVertex> getDeadTransitions()
+    {
+        List<TransitionVertex> dead = new ArrayList<>();
+
+        for (int t : deadTransitions)
+        {
+            dead.add(kernel.getTransition(t));
+        }
+
+        return dead;
+    }
+
+    /**
+     * Returns the names of the dead transitions at snapshot time.
+     *
+     * @return List<String>
+     */
+    public List<String> getDeadTransitionNames()
+    {
+        List<String> dead = new ArrayList<>();
+
+        for (int t : deadTransitions)
+        {
+            dead.add(kernel.getTransitionName(t));
+        }
+
+        return dead;
+    }
+
+    /**
+     * Returns the initial place index.
+     *
+     * @return int
+     */
+    public int getInitialPlace()
+    {
+        return initialPlace;
+    }
+
+    /**
+     * Returns the final place index.
+     *
+     * @return int
+     */
+    public int getFinalPlace()
+    {
+        return finalPlace;
+    }
+}
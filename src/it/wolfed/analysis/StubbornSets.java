@@ -0,0 +1,252 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetKernel;
+import it.wolfed.util.IntList;
+import java.util.Arrays;
+
+/**
+ * Stubborn sets, for the partial order reduction of the state space.
+ *
+ * A stubborn set in a marking M is a set of transitions Ts such that:
+ *
+ *  - for each enabled t in Ts: the transitions consuming from the input
+ *    places of t (its conflicts) are in Ts
+ *  - for each disabled t in Ts: the producers of an input place p of t
+ *    with M(p) lower than the arc weight (scapegoat) are in Ts
+ *  - at least one transition of Ts is enabled
+ *
+ * The transitions outside Ts can neither disable nor enable the ones in
+ * Ts, so firing only the enabled transitions of Ts keeps all the
+ * deadlocks: independent branches (as the ones of a parallelism) are no
+ * longer interleaved.
+ *
+ * The conflicts of each transition are computed once from the net
+ * structure (CSR), each set is the closure from a seed transition: the
+ * seed giving the fewest enabled transitions is kept. The sets containing
+ * an excluded enabled transition (as one closing a cycle) are discarded.
+ */
+public class StubbornSets
+{
+    private final PetriNetKernel kernel;
+
+    /**
+     * Conflicts of transition t: conflictTransition[conflictStart[t] .. conflictStart[t + 1] - 1].
+     */
+    private final int[] conflictStart;
+    private final int[] conflictTransition;
+
+    /**
+     * Closure work data: stamp of the last closure including a transition,
+     * stamp of the enabled transitions, pending transitions.
+     */
+    private final int[] inSet;
+    private final int[] enabledStamp;
+    private final int[] stack;
+    private int stamp;
+
+    /**
+     * {@link StubbornSets} Constructor.
+     *
+     * @param kernel
+     */
+    public StubbornSets(PetriNetKernel kernel)
+    {
+        this.kernel = kernel;
+
+        int transitions = kernel.getTransitionsCount();
+        int[] seenBy = new int[transitions];
+        IntList starts = new IntList(transitions + 1);
+        IntList conflicts = new IntList();
+
+        for (int t = 0; t < transitions; t++)
+        {
+            seenBy[t] = -1;
+        }
+
+        for (int t = 0; t < transitions; t++)
+        {
+            starts.add(conflicts.size());
+
+            for (int i = kernel.transitionPresetStart(t); i < kernel.transitionPresetEnd(t); i++)
+            {
+                int p = kernel.transitionPresetPlace(i);
+
+                for (int j = kernel.placePostsetStart(p); j < kernel.placePostsetEnd(p); j++)
+                {
+                    int conflict = kernel.placePostsetTransition(j);
+
+                    if(conflict != t && seenBy[conflict] != t)
+                    {
+                        seenBy[conflict] = t;
+                        conflicts.add(conflict);
+                    }
+                }
+            }
+        }
+
+        starts.add(conflicts.size());
+
+        conflictStart = starts.toArray();
+        conflictTransition = conflicts.toArray();
+
+        inSet = new int[transitions];
+        enabledStamp = new int[transitions];
+        stack = new int[transitions];
+    }
+
+    /**
+     * Moves the enabled transitions of a stubborn set to the front.
+     *
+     * @param marking
+     * @param enabled   all the enabled transitions, reordered
+     * @param count     number of enabled transitions
+     * @param excluded  enabled transitions not allowed in the set, by transition
+     * @return number of enabled transitions in the stubborn set (the first
+     *         ones), count if no set is smaller and without excluded transitions
+     */
+    public int reduce(int[] marking, int[] enabled, int count, boolean[] excluded)
+    {
+        if(stamp > Integer.MAX_VALUE - count - 2)
+        {
+            // Stamps overflow: restart them
+            stamp = 0;
+            Arrays.fill(inSet, 0);
+            Arrays.fill(enabledStamp, 0);
+        }
+
+        int enabledMark = ++stamp;
+
+        for (int i = 0; i < count; i++)
+        {
+            enabledStamp[enabled[i]] = enabledMark;
+        }
+
+        int bestSeed = enabled[0];
+        int bestCount = count;
+
+        for (int i = 0; i < count && bestCount > 1; i++)
+        {
+            if(excluded[enabled[i]])
+            {
+                continue;
+            }
+
+            int found = closure(enabled[i], marking, enabledMark, excluded, bestCount);
+
+            if(found < bestCount)
+            {
+                bestSeed = enabled[i];
+                bestCount = found;
+            }
+        }
+
+        if(bestCount == count)
+        {
+            return count;
+        }
+
+        // Rebuild the best set and move its transitions to the front
+        closure(bestSeed, marking, enabledMark, excluded, Integer.MAX_VALUE);
+        int setMark = stamp;
+
+        int front = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            if(inSet[enabled[i]] == setMark)
+            {
+                int swap = enabled[front];
+                enabled[front++] = enabled[i];
+                enabled[i] = swap;
+            }
+        }
+
+        return front;
+    }
+
+    /**
+     * Builds the stubborn set of a seed.
+     *
+     * @param seed          enabled transition
+     * @param marking
+     * @param enabledMark   stamp of the enabled transitions
+     * @param excluded      stops on these enabled transitions
+     * @param limit         stops when this number of enabled transitions is reached
+     * @return number of enabled transitions in the set (at least limit if stopped)
+     */
+    private int closure(int seed, int[] marking, int enabledMark, boolean[] excluded, int limit)
+    {
+        int setMark = ++stamp;
+        int size = 0;
+        int enabledCount = 0;
+
+        inSet[seed] = setMark;
+        stack[size++] = seed;
+
+        while(size > 0)
+        {
+            int t = stack[--size];
+
+            if(enabledStamp[t] == enabledMark)
+            {
+                if(excluded[t])
+                {
+                    return limit;
+                }
+
+                if(++enabledCount >= limit)
+                {
+                    return enabledCount;
+                }
+
+                for (int i = conflictStart[t]; i < conflictStart[t + 1]; i++)
+                {
+                    int conflict = conflictTransition[i];
+
+                    if(inSet[conflict] != setMark)
+                    {
+                        inSet[conflict] = setMark;
+                        stack[size++] = conflict;
+                    }
+                }
+            }
+            else
+            {
+                int p = getScapegoat(t, marking);
+
+                for (int i = kernel.placePresetStart(p); i < kernel.placePresetEnd(p); i++)
+                {
+                    int producer = kernel.placePresetTransition(i);
+
+                    if(inSet[producer] != setMark)
+                    {
+                        inSet[producer] = setMark;
+                        stack[size++] = producer;
+                    }
+                }
+            }
+        }
+
+        return enabledCount;
+    }
+
+    /**
+     * Returns an input place of a disabled transition without enough tokens.
+     *
+     * @param t
+     * @param marking
+     * @return place
+     */
+    private int getScapegoat(int t, int[] marking)
+    {
+        for (int i = kernel.transitionPresetStart(t); i < kernel.transitionPresetEnd(t); i++)
+        {
+            if(marking[kernel.transitionPresetPlace(i)] < kernel.transitionPresetWeight(i))
+            {
+                return kernel.transitionPresetPlace(i);
+            }
+        }
+
+        throw new IllegalStateException("Transition " + t + " is enabled.");
+    }
+}
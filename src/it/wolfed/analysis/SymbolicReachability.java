@@ -0,0 +1,920 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PetriNetKernel;
+import it.wolfed.util.IntList;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reachable markings of a net as a decision diagram ({@link MddForest}).
+ *
+ * One level per place, the value is the token count. The markings are
+ * generated by saturation: each transition (event) is fired at the top
+ * level it touches, and a node of level k is saturated (closed under all
+ * the events whose top level is at most k) as soon as it is built, from
+ * the bottom up. The markings are never enumerated, so the count can go
+ * far beyond what an explicit {@link ReachabilityGraph} can store.
+ *
+ * The places order is derived from the net structure: depth first from
+ * the initial marking, then improved by a few FORCE iterations (each place
+ * moves to the average center of its transitions), keeping the order with
+ * the smallest total span of the transitions. The nearer the places of a
+ * transition, the smaller the diagram.
+ *
+ * The exploration stops on the nodes limit, on a place over the tokens
+ * limit (the net may be unbounded) and when the thread is interrupted.
+ */
+public class SymbolicReachability
+{
+    /**
+     * Cache code of the event firing (the union uses {@link MddForest#OP_UNION}).
+     */
+    private static final int OP_FIRE = 1;
+
+    /**
+     * Max FORCE iterations for the places order.
+     */
+    private static final int ORDER_ITERATIONS = 32;
+
+    /**
+     * Net snapshot.
+     */
+    private final PetriNetKernel kernel;
+
+    /**
+     * Limits.
+     */
+    private final int maxNodes;
+    private final int maxTokens;
+
+    /**
+     * Place per level (levelPlace[k - 1] for level k), level per place.
+     */
+    private int[] levelPlace;
+    private int[] placeLevel;
+
+    /**
+     * Events (transitions touching some place), levels touched from the
+     * top: event e touches eventLevel[eventStart[e] .. eventStart[e + 1] - 1]
+     * consuming eventIn and producing eventOut tokens there.
+     */
+    private int[] eventStart;
+    private int[] eventLevel;
+    private int[] eventIn;
+    private int[] eventOut;
+
+    /**
+     * Events by top level: topEvent[topStart[k] .. topStart[k + 1] - 1].
+     */
+    private int[] topStart;
+    private int[] topEvent;
+
+    private MddForest forest;
+    private int root;
+    private boolean complete;
+
+    /**
+     * {@link SymbolicReachability} Constructor.
+     *
+     * @param graph
+     * @param maxNodes
+     * @param maxTokens
+     */
+    public SymbolicReachability(PetriNetGraph graph, int maxNodes, int maxTokens)
+    {
+        this(new PetriNetKernel(graph), maxNodes, maxTokens);
+    }
+
+    /**
+     * {@link SymbolicReachability} Constructor.
+     *
+     * @param kernel
+     * @param maxNodes  max nodes of the forest
+     * @param maxTokens max tokens per place
+     */
+    public SymbolicReachability(PetriNetKernel kernel, int maxNodes, int maxTokens)
+    {
+        this.kernel = kernel;
+        this.maxNodes = maxNodes;
+        this.maxTokens = maxTokens;
+    }
+
+    /**
+     * Generates the reachable markings.
+     *
+     * @return true if complete, false if stopped on a limit
+     */
+    public boolean explore()
+    {
+        initOrder();
+        initEvents();
+
+        forest = new MddForest(maxNodes);
+        root = MddForest.EMPTY;
+        complete = false;
+
+        int[] marking = kernel.getInitialMarking();
+
+        try
+        {
+            int node = MddForest.ONE;
+
+            for (int level = 1; level <= levelPlace.length; level++)
+            {
+                int tokens = marking[levelPlace[level - 1]];
+                checkTokens(tokens);
+
+                IntList initial = new IntList(tokens + 1);
+
+                for (int i = 0; i < tokens; i++)
+                {
+                    initial.add(MddForest.EMPTY);
+                }
+
+                initial.add(node);
+                node = saturate(level, initial);
+            }
+
+            root = node;
+            complete = true;
+        }
+        catch (IllegalStateException ex)
+        {
+            complete = false;
+        }
+
+        return complete;
+    }
+
+    /**
+     * Closes a node under the events of its level (and below).
+     *
+     * Saturating a node fires events below it, which saturates the nodes
+     * built there, down to the bottom level: the calls are frames of an
+     * explicit stack, as deep as the places of the net.
+     *
+     * @param level
+     * @param node      children by value (saturated), modified
+     * @return node
+     */
+    private int saturate(int level, IntList node)
+    {
+        List<Frame> stack = new ArrayList<>();
+        stack.add(newSaturation(level, node));
+
+        int returned = -1;
+
+        while(true)
+        {
+            Frame frame = stack.get(stack.size() - 1);
+            Frame call = frame.firing ? stepFire(frame, returned) : stepSaturate(frame, returned);
+
+            if(call != null)
+            {
+                stack.add(call);
+                returned = -1;
+                continue;
+            }
+
+            stack.remove(stack.size() - 1);
+            returned = frame.value;
+
+            if(stack.isEmpty())
+            {
+                return returned;
+            }
+        }
+    }
+
+    /**
+     * Returns the frame saturating a node.
+     *
+     * @param level
+     * @param node      children by value (saturated), modified
+     * @return Frame
+     */
+    private Frame newSaturation(int level, IntList node)
+    {
+        if(Thread.currentThread().isInterrupted())
+        {
+            throw new IllegalStateException("Interrupted.");
+        }
+
+        Frame frame = new Frame(false, level);
+        frame.node = node;
+        frame.pending = new IntList();
+        frame.next = topStart[level] - 1;
+
+        return frame;
+    }
+
+    /**
+     * Runs a saturation until it needs a firing or it is done.
+     *
+     * @param frame
+     * @param returned  result of the last firing
+     * @return the firing to run, null when done (the node in frame.value)
+     */
+    private Frame stepSaturate(Frame frame, int returned)
+    {
+        if(frame.waiting >= 0)
+        {
+            addSaturated(frame, frame.waiting, returned);
+            frame.waiting = -1;
+        }
+
+        while(true)
+        {
+            // Fires the event until no value changes (worklist of values)
+            while(frame.pending.isEmpty() == false)
+            {
+                int i = frame.pending.removeLast();
+                int child = frame.node.get(i);
+                int fired = getFired(frame.event, eventStart[frame.event] + 1, child);
+
+                if(fired < 0)
+                {
+                    frame.waiting = i;
+
+                    return newFiring(frame.event, eventStart[frame.event] + 1, frame.level - 1, child);
+                }
+
+                addSaturated(frame, i, fired);
+            }
+
+            // Next event of the level, all again while a value changes
+            if(++frame.next == topStart[frame.level + 1])
+            {
+                if(frame.changed == false)
+                {
+                    frame.value = forest.getNode(frame.level, frame.node.toArray());
+
+                    return null;
+                }
+
+                frame.changed = false;
+                frame.next = topStart[frame.level];
+            }
+
+            frame.event = topEvent[frame.next];
+            frame.in = eventIn[eventStart[frame.event]];
+            frame.out = eventOut[eventStart[frame.event]];
+
+            for (int i = frame.node.size() - 1; i >= frame.in; i--)
+            {
+                if(frame.node.get(i) != MddForest.EMPTY)
+                {
+                    frame.pending.add(i);
+                }
+            }
+        }
+    }
+
+    private void addSaturated(Frame frame, int i, int fired)
+    {
+        if(fired == MddForest.EMPTY)
+        {
+            return;
+        }
+
+        int j = i - frame.in + frame.out;
+        checkTokens(j);
+
+        while(frame.node.size() <= j)
+        {
+            frame.node.add(MddForest.EMPTY);
+        }
+
+        int union = forest.union(frame.node.get(j), fired);
+
+        if(union != frame.node.get(j))
+        {
+            frame.node.set(j, union);
+            frame.changed = true;
+
+            if(j >= frame.in)
+            {
+                frame.pending.add(j);
+            }
+        }
+    }
+
+    /**
+     * Returns the firing of an event below its top level if trivial or
+     * cached.
+     *
+     * @param e
+     * @param next      next touched level entry of the event
+     * @param node      saturated node
+     * @return node, -1 if to compute
+     */
+    private int getFired(int e, int next, int node)
+    {
+        if(next == eventStart[e + 1] || node == MddForest.EMPTY)
+        {
+            return node;
+        }
+
+        return forest.getCached(OP_FIRE, e, node);
+    }
+
+    /**
+     * Returns the frame firing an event below its top level.
+     *
+     * @param e
+     * @param next      next touched level entry of the event
+     * @param level
+     * @param node      saturated node of level
+     * @return Frame
+     */
+    private Frame newFiring(int e, int next, int level, int node)
+    {
+        boolean touched = eventLevel[next] == level;
+
+        Frame frame = new Frame(true, level);
+        frame.event = e;
+        frame.source = node;
+        frame.in = touched ? eventIn[next] : 0;
+        frame.out = touched ? eventOut[next] : 0;
+        frame.next = touched ? next + 1 : next;
+        frame.child = frame.in;
+        frame.node = new IntList();
+
+        return frame;
+    }
+
+    /**
+     * Runs a firing until it needs another firing or a saturation, or it
+     * is done.
+     *
+     * @param frame
+     * @param returned  result of the last call
+     * @return the call to run, null when done (the node in frame.value)
+     */
+    private Frame stepFire(Frame frame, int returned)
+    {
+        if(frame.saturating)
+        {
+            forest.putCached(OP_FIRE, frame.event, frame.source, returned);
+            frame.value = returned;
+
+            return null;
+        }
+
+        if(frame.waiting >= 0)
+        {
+            addFired(frame, frame.waiting, returned);
+            frame.waiting = -1;
+        }
+
+        while(frame.child < forest.getChildrenCount(frame.source))
+        {
+            int i = frame.child++;
+            int child = forest.getChild(frame.source, i);
+
+            if(child == MddForest.EMPTY)
+            {
+                continue;
+            }
+
+            int fired = getFired(frame.event, frame.next, child);
+
+            if(fired < 0)
+            {
+                frame.waiting = i;
+
+                return newFiring(frame.event, frame.next, frame.level - 1, child);
+            }
+
+            addFired(frame, i, fired);
+        }
+
+        frame.saturating = true;
+
+        return newSaturation(frame.level, frame.node);
+    }
+
+    private void addFired(Frame frame, int i, int fired)
+    {
+        if(fired == MddForest.EMPTY)
+        {
+            return;
+        }
+
+        int j = i - frame.in + frame.out;
+        checkTokens(j);
+
+        while(frame.node.size() <= j)
+        {
+            frame.node.add(MddForest.EMPTY);
+        }
+
+        frame.node.set(j, forest.union(frame.node.get(j), fired));
+    }
+
+    private void checkTokens(int tokens)
+    {
+        if(tokens > maxTokens)
+        {
+            throw new IllegalStateException("Tokens limit reached (" + maxTokens + ").");
+        }
+    }
+
+    /**
+     * Builds the events of the transitions: levels touched from the top,
+     * tokens consumed and produced there.
+     */
+    private void initEvents()
+    {
+        int transitions = kernel.getTransitionsCount();
+        int levels = levelPlace.length;
+        int[] in = new int[levels + 1];
+        int[] out = new int[levels + 1];
+        int[] touchedBy = new int[levels + 1];
+        int[] tops = new int[transitions];
+        Arrays.fill(touchedBy, -1);
+
+        IntList starts = new IntList(transitions + 1);
+        IntList eventLevels = new IntList();
+        IntList eventIns = new IntList();
+        IntList eventOuts = new IntList();
+        IntList touched = new IntList();
+
+        for (int t = 0; t < transitions; t++)
+        {
+            touched.clear();
+
+            for (int i = kernel.transitionPresetStart(t); i < kernel.transitionPresetEnd(t); i++)
+            {
+                int level = placeLevel[kernel.transitionPresetPlace(i)];
+
+                if(touchedBy[level] != t)
+                {
+                    touchedBy[level] = t;
+                    in[level] = 0;
+                    out[level] = 0;
+                    touched.add(level);
+                }
+
+                in[level] += kernel.transitionPresetWeight(i);
+            }
+
+            for (int i = kernel.transitionPostsetStart(t); i < kernel.transitionPostsetEnd(t); i++)
+            {
+                int level = placeLevel[kernel.transitionPostsetPlace(i)];
+
+                if(touchedBy[level] != t)
+                {
+                    touchedBy[level] = t;
+                    in[level] = 0;
+                    out[level] = 0;
+                    touched.add(level);
+                }
+
+                out[level] += kernel.transitionPostsetWeight(i);
+            }
+
+            if(touched.isEmpty())
+            {
+                continue;
+            }
+
+            int[] sorted = touched.toArray();
+            Arrays.sort(sorted);
+
+            tops[starts.size()] = sorted[sorted.length - 1];
+            starts.add(eventLevels.size());
+
+            for (int i = sorted.length - 1; i >= 0; i--)
+            {
+                eventLevels.add(sorted[i]);
+                eventIns.add(in[sorted[i]]);
+                eventOuts.add(out[sorted[i]]);
+            }
+        }
+
+        int events = starts.size();
+        starts.add(eventLevels.size());
+
+        eventStart = starts.toArray();
+        eventLevel = eventLevels.toArray();
+        eventIn = eventIns.toArray();
+        eventOut = eventOuts.toArray();
+
+        // Events by top level (CSR)
+        topStart = new int[levels + 2];
+
+        for (int e = 0; e < events; e++)
+        {
+            topStart[tops[e] + 1]++;
+        }
+
+        for (int k = 0; k <= levels; k++)
+        {
+            topStart[k + 1] += topStart[k];
+        }
+
+        int[] next = Arrays.copyOf(topStart, levels + 1);
+        topEvent = new int[events];
+
+        for (int e = 0; e < events; e++)
+        {
+            topEvent[next[tops[e]]++] = e;
+        }
+    }
+
+    /**
+     * Places order: depth first from the marked places, then FORCE.
+     */
+    private void initOrder()
+    {
+        int places = kernel.getPlacesCount();
+        int transitions = kernel.getTransitionsCount();
+        int[] order = getDepthFirstOrder();
+
+        // Position per place, best order so far
+        final double[] position = new double[places];
+        Integer[] sorting = new Integer[places];
+        int[] best = order.clone();
+        long bestSpan = getSpan(order);
+        double[] center = new double[transitions];
+        double[] sum = new double[places];
+        int[] degree = new int[places];
+
+        for (int iteration = 0; iteration < ORDER_ITERATIONS && bestSpan > 0; iteration++)
+        {
+            for (int i = 0; i < places; i++)
+            {
+                position[order[i]] = i;
+            }
+
+            Arrays.fill(sum, 0);
+            Arrays.fill(degree, 0);
+
+            for (int t = 0; t < transitions; t++)
+            {
+                double total = 0;
+                int count = 0;
+
+                for (int i = kernel.transitionPresetStart(t); i < kernel.transitionPresetEnd(t); i++)
+                {
+                    total += position[kernel.transitionPresetPlace(i)];
+                    count++;
+                }
+
+                for (int i = kernel.transitionPostsetStart(t); i < kernel.transitionPostsetEnd(t); i++)
+                {
+                    total += position[kernel.transitionPostsetPlace(i)];
+                    count++;
+                }
+
+                center[t] = (count == 0) ? 0 : total / count;
+
+                for (int i = kernel.transitionPresetStart(t); i < kernel.transitionPresetEnd(t); i++)
+                {
+                    sum[kernel.transitionPresetPlace(i)] += center[t];
+                    degree[kernel.transitionPresetPlace(i)]++;
+                }
+
+                for (int i = kernel.transitionPostsetStart(t); i < kernel.transitionPostsetEnd(t); i++)
+                {
+                    sum[kernel.transitionPostsetPlace(i)] += center[t];
+                    degree[kernel.transitionPostsetPlace(i)]++;
+                }
+            }
+
+            for (int p = 0; p < places; p++)
+            {
+                if(degree[p] > 0)
+                {
+                    position[p] = sum[p] / degree[p];
+                }
+
+                sorting[p] = order[p];
+            }
+
+            // Stable: ties keep the previous order
+            Arrays.sort(sorting, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(Integer a, Integer b)
+                {
+                    return Double.compare(position[a], position[b]);
+                }
+            });
+
+            for (int i = 0; i < places; i++)
+            {
+                order[i] = sorting[i];
+            }
+
+            long span = getSpan(order);
+
+            if(span >= bestSpan)
+            {
+                break;
+            }
+
+            bestSpan = span;
+            best = order.clone();
+        }
+
+        // First place of the order on the top level
+        levelPlace = new int[places];
+        placeLevel = new int[places];
+
+        for (int i = 0; i < places; i++)
+        {
+            levelPlace[places - 1 - i] = best[i];
+            placeLevel[best[i]] = places - i;
+        }
+    }
+
+    /**
+     * Places depth first from the marked places along the arcs (the places
+     * never reached start new visits): the places of a branch are kept
+     * together, the parallel branches are not interleaved.
+     *
+     * @return places order
+     */
+    private int[] getDepthFirstOrder()
+    {
+        int places = kernel.getPlacesCount();
+        int[] marking = kernel.getInitialMarking();
+        boolean[] visited = new boolean[places];
+        int[] order = new int[places];
+        int size = 0;
+
+        // Stack of (place, next postset arc, next postset place of that transition)
+        IntList stackPlace = new IntList();
+        IntList stackArc = new IntList();
+        IntList stackPlaceArc = new IntList();
+
+        for (int round = 0; round < 2; round++)
+        {
+            for (int start = 0; start < places; start++)
+            {
+                if(visited[start] || (round == 0 && marking[start] == 0))
+                {
+                    continue;
+                }
+
+                visited[start] = true;
+                order[size++] = start;
+                stackPlace.add(start);
+                stackArc.add(kernel.placePostsetStart(start));
+                stackPlaceArc.add(-1);
+
+                while(stackPlace.isEmpty() == false)
+                {
+                    int top = stackPlace.size() - 1;
+                    int p = stackPlace.get(top);
+                    int arc = stackArc.get(top);
+
+                    if(arc == kernel.placePostsetEnd(p))
+                    {
+                        stackPlace.removeLast();
+                        stackArc.removeLast();
+                        stackPlaceArc.removeLast();
+                        continue;
+                    }
+
+                    int t = kernel.placePostsetTransition(arc);
+                    int next = stackPlaceArc.get(top);
+
+                    if(next < 0)
+                    {
+                        next = kernel.transitionPostsetStart(t);
+                    }
+
+                    if(next == kernel.transitionPostsetEnd(t))
+                    {
+                        stackArc.set(top, arc + 1);
+                        stackPlaceArc.set(top, -1);
+                        continue;
+                    }
+
+                    stackPlaceArc.set(top, next + 1);
+                    int successor = kernel.transitionPostsetPlace(next);
+
+                    if(visited[successor] == false)
+                    {
+                        visited[successor] = true;
+                        order[size++] = successor;
+                        stackPlace.add(successor);
+                        stackArc.add(kernel.placePostsetStart(successor));
+                        stackPlaceArc.add(-1);
+                    }
+                }
+            }
+        }
+
+        return order;
+    }
+
+    /**
+     * Sum over the transitions of the distance between their farthest places.
+     *
+     * @param order
+     * @return long
+     */
+    private long getSpan(int[] order)
+    {
+        int[] position = new int[order.length];
+
+        for (int i = 0; i < order.length; i++)
+        {
+            position[order[i]] = i;
+        }
+
+        long span = 0;
+
+        for (int t = 0; t < kernel.getTransitionsCount(); t++)
+        {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+
+            for (int i = kernel.transitionPresetStart(t); i < kernel.transitionPresetEnd(t); i++)
+            {
+                min = Math.min(min, position[kernel.transitionPresetPlace(i)]);
+                max = Math.max(max, position[kernel.transitionPresetPlace(i)]);
+            }
+
+            for (int i = kernel.transitionPostsetStart(t); i < kernel.transitionPostsetEnd(t); i++)
+            {
+                min = Math.min(min, position[kernel.transitionPostsetPlace(i)]);
+                max = Math.max(max, position[kernel.transitionPostsetPlace(i)]);
+            }
+
+            if(max >= min)
+            {
+                span += max - min;
+            }
+        }
+
+        return span;
+    }
+
+    /**
+     * Returns the net snapshot.
+     *
+     * @return PetriNetKernel
+     */
+    public PetriNetKernel getKernel()
+    {
+        return kernel;
+    }
+
+    /**
+     * Returns if the exploration is complete.
+     *
+     * @return boolean
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * Returns the number of reachable markings (0 if not complete).
+     *
+     * @return BigInteger
+     */
+    public BigInteger getStatesCount()
+    {
+        return forest.count(root);
+    }
+
+    /**
+     * Returns if a marking is reachable.
+     *
+     * @param marking   tokens per place
+     * @return boolean
+     */
+    public boolean contains(int[] marking)
+    {
+        int[] values = new int[marking.length];
+
+        for (int p = 0; p < marking.length; p++)
+        {
+            values[placeLevel[p] - 1] = marking[p];
+        }
+
+        return forest.contains(root, values);
+    }
+
+    /**
+     * Returns the max tokens per place over the reachable markings.
+     *
+     * @return bounds by place
+     */
+    public int[] getBounds()
+    {
+        boolean[] reached = forest.getReached(root);
+        int[] bounds = new int[levelPlace.length];
+
+        for (int node = MddForest.ONE + 1; node < reached.length; node++)
+        {
+            if(reached[node])
+            {
+                int p = levelPlace[forest.getLevel(node) - 1];
+                bounds[p] = Math.max(bounds[p], forest.getChildrenCount(node) - 1);
+            }
+        }
+
+        return bounds;
+    }
+
+    /**
+     * Returns the places from the top level down.
+     *
+     * @return places
+     */
+    public int[] getPlaceOrder()
+    {
+        int[] order = new int[levelPlace.length];
+
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = levelPlace[levelPlace.length - 1 - i];
+        }
+
+        return order;
+    }
+
+    /**
+     * Returns the number of nodes of the reachable markings diagram.
+     *
+     * @return int
+     */
+    public int getNodesCount()
+    {
+        return forest.getNodesCount(root);
+    }
+
+    /**
+     * Returns the decision diagrams forest (all the nodes built).
+     *
+     * @return MddForest
+     */
+    public MddForest getForest()
+    {
+        return forest;
+    }
+
+    /**
+     * Pending call of the saturation: saturates a node or fires an event
+     * below its top level.
+     */
+    private static class Frame
+    {
+        /**
+         * Firing (true) or saturation (false), level of the node.
+         */
+        final boolean firing;
+        final int level;
+
+        /**
+         * Children by value: the saturated node, the fired result.
+         */
+        IntList node;
+
+        /**
+         * Event, tokens consumed and produced on the level.
+         */
+        int event;
+        int in;
+        int out;
+
+        /**
+         * Saturation: current topEvent entry, values to fire, if a value
+         * changed since the first event. Firing: next touched level entry.
+         */
+        int next;
+        IntList pending;
+        boolean changed;
+
+        /**
+         * Firing: source node, next child, result under saturation.
+         */
+        int source;
+        int child;
+        boolean saturating;
+
+        /**
+         * Value waiting for a call result (-1 if none), result when done.
+         */
+        int waiting = -1;
+        int value;
+
+        Frame(boolean firing, int level)
+        {
+            this.firing = firing;
+            this.level = level;
+        }
+    }
+}
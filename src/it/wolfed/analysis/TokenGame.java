@@ -0,0 +1,331 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PetriNetKernel;
+import java.util.Random;
+
+/**
+ * Token game: fires the transitions of a net over an int[] marking.
+ *
+ * The enabled transitions are tracked incrementally: for each transition
+ * the number of input arcs without enough tokens is kept, and after a
+ * firing only the consumers of the changed places are re-checked.
+ * A step costs O(local degree) instead of O(#transitions).
+ */
+public class TokenGame
+{
+    /**
+     * Net snapshot.
+     */
+    private final PetriNetKernel kernel;
+
+    /**
+     * Current marking.
+     */
+    private final int[] marking;
+
+    /**
+     * Per transition: number of input arcs not satisfied by the marking.
+     */
+    private final int[] missingTokens;
+
+    /**
+     * Enabled transitions (dense set): enabled[0 .. enabledCount - 1].
+     */
+    private final int[] enabled;
+
+    /**
+     * Position of each transition in {@link TokenGame#enabled}, -1 if disabled.
+     */
+    private final int[] enabledPosition;
+
+    /**
+     * Size of the enabled set.
+     */
+    private int enabledCount;
+
+    /**
+     * Number of transitions fired since the last reset.
+     */
+    private long steps;
+
+    /**
+     * Random source for {@link TokenGame#step()}.
+     */
+    private final Random random;
+
+    /**
+     * {@link TokenGame} Constructor.
+     *
+     * Starts from the tokens of the places of the graph.
+     *
+     * @param graph
+     */
+    public TokenGame(PetriNetGraph graph)
+    {
+        this(new PetriNetKernel(graph), new Random());
+    }
+
+    /**
+     * {@link TokenGame} Constructor.
+     *
+     * @param kernel
+     * @param random
+     */
+    public TokenGame(PetriNetKernel kernel, Random random)
+    {
+        this.kernel = kernel;
+        this.random = random;
+        this.marking = new int[kernel.getPlacesCount()];
+        this.missingTokens = new int[kernel.getTransitionsCount()];
+        this.enabled = new int[kernel.getTransitionsCount()];
+        this.enabledPosition = new int[kernel.getTransitionsCount()];
+        reset(kernel.getInitialMarking());
+    }
+
+    /**
+     * Restarts the game from a marking.
+     *
+     * @param initialMarking
+     */
+    public final void reset(int[] initialMarking)
+    {
+        System.arraycopy(initialMarking, 0, marking, 0, marking.length);
+        enabledCount = 0;
+        steps = 0;
+
+        for (int t = 0; t < kernel.getTransitionsCount(); t++)
+        {
+            missingTokens[t] = 0;
+            enabledPosition[t] = -1;
+
+            for (int i = kernel.transitionPresetStart(t); i < kernel.transitionPresetEnd(t); i++)
+            {
+                if(marking[kernel.transitionPresetPlace(i)] < kernel.transitionPresetWeight(i))
+                {
+                    missingTokens[t]++;
+                }
+            }
+
+            if(missingTokens[t] == 0)
+            {
+                addEnabled(t);
+            }
+        }
+    }
+
+    /**
+     * Restarts the game from the initial marking of the snapshot.
+     */
+    public void reset()
+    {
+        reset(kernel.getInitialMarking());
+    }
+
+    /**
+     * Fires an enabled transition.
+     *
+     * @param t transition index in the kernel
+     * @throws IllegalStateException if the transition is not enabled
+     */
+    public void fire(int t)
+    {
+        if(enabledPosition[t] < 0)
+        {
+            throw new IllegalStateException("Transition " + kernel.getTransitionName(t) + " is not enabled.");
+        }
+
+        for (int i = kernel.transitionPresetStart(t); i < kernel.transitionPresetEnd(t); i++)
+        {
+            addTokens(kernel.transitionPresetPlace(i), -kernel.transitionPresetWeight(i));
+        }
+
+        for (int i = kernel.transitionPostsetStart(t); i < kernel.transitionPostsetEnd(t); i++)
+        {
+            addTokens(kernel.transitionPostsetPlace(i), kernel.transitionPostsetWeight(i));
+        }
+
+        steps++;
+    }
+
+    /**
+     * Fires a random enabled transition.
+     *
+     * @return the fired transition, -1 on deadlock
+     */
+    public int step()
+    {
+        if(enabledCount == 0)
+        {
+            return -1;
+        }
+
+        int t = enabled[random.nextInt(enabledCount)];
+        fire(t);
+
+        return t;
+    }
+
+    /**
+     * Fires random transitions until a deadlock or maxSteps.
+     *
+     * @param maxSteps
+     * @return number of fired transitions
+     */
+    public long run(long maxSteps)
+    {
+        long fired = 0;
+
+        while(fired < maxSteps && step() >= 0)
+        {
+            fired++;
+        }
+
+        return fired;
+    }
+
+    /**
+     * Changes the tokens of a place and re-checks only his consumers.
+     *
+     * @param p
+     * @param delta
+     */
+    private void addTokens(int p, int delta)
+    {
+        int before = marking[p];
+        int after = before + delta;
+        marking[p] = after;
+
+        for (int i = kernel.placePostsetStart(p); i < kernel.placePostsetEnd(p); i++)
+        {
+            int t = kernel.placePostsetTransition(i);
+            int weight = kernel.placePostsetWeight(i);
+
+            if(before >= weight && after < weight)
+            {
+                if(missingTokens[t]++ == 0)
+                {
+                    removeEnabled(t);
+                }
+            }
+            else if(before < weight && after >= weight)
+            {
+                if(--missingTokens[t] == 0)
+                {
+                    addEnabled(t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a transition to the enabled set.
+     *
+     * @param t
+     */
+    private void addEnabled(int t)
+    {
+        enabledPosition[t] = enabledCount;
+        enabled[enabledCount++] = t;
+    }
+
+    /**
+     * Removes a transition from the enabled set (swap with the last).
+     *
+     * @param t
+     */
+    private void removeEnabled(int t)
+    {
+        int position = enabledPosition[t];
+        int last = enabled[--enabledCount];
+
+        enabled[position] = last;
+        enabledPosition[last] = position;
+        enabledPosition[t] = -1;
+    }
+
+    /**
+     * Returns the net snapshot.
+     *
+     * @return PetriNetKernel
+     */
+    public PetriNetKernel getKernel()
+    {
+        return kernel;
+    }
+
+    /**
+     * Returns a copy of the current marking.
+     *
+     * @return int[]
+     */
+    public int[] getMarking()
+    {
+        return marking.clone();
+    }
+
+    /**
+     * Returns the tokens of a place.
+     *
+     * @param p
+     * @return int
+     */
+    public int getTokens(int p)
+    {
+        return marking[p];
+    }
+
+    /**
+     * Returns if a transition is enabled.
+     *
+     * @param t
+     * @return boolean
+     */
+    public boolean isEnabled(int t)
+    {
+        return enabledPosition[t] >= 0;
+    }
+
+    /**
+     * Returns the number of enabled transitions.
+     *
+     * @return int
+     */
+    public int getEnabledCount()
+    {
+        return enabledCount;
+    }
+
+    /**
+     * Returns the i-th enabled transition (0 .. getEnabledCount() - 1).
+     *
+     * The order changes after each firing.
+     *
+     * @param i
+     * @return int
+     */
+    public int getEnabled(int i)
+    {
+        return enabled[i];
+    }
+
+    /**
+     * Returns if no transition is enabled.
+     *
+     * @return boolean
+     */
+    public boolean isDeadlock()
+    {
+        return enabledCount == 0;
+    }
+
+    /**
+     * Returns the number of transitions fired since the last reset.
+     *
+     * @return long
+     */
+    public long getSteps()
+    {
+        return steps;
+    }
+}
@@ -0,0 +1,601 @@
+package it.wolfed.cli;
+
+import it.wolfed.analysis.Invariants;
+import it.wolfed.analysis.SoundnessChecker;
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PetriNetKernel;
+import it.wolfed.util.Constants;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless analysis of pnml files.
+ *
+ * Usage:
+ *
+ *  java -cp Wolfed.jar:lib/jgraphx_1_13_0_0.jar it.wolfed.cli.BatchAnalyzer
+ *      [-threads n] [-format json|csv] [-maxstates n] [-maxrows n]
+ *      [-output file] file|directory ...
+ *
+ * Directories are scanned recursively for *.pnml files. Each file is
+ * imported with {@link PetriNetGraph#factory(InputStream, String)} and each
+ * of its nets is analyzed on a {@link PetriNetKernel} snapshot, the files
+ * are processed in parallel. The report has a row per net, in the order of
+ * the files, with the workflow properties, the soundness, the P- and
+ * T-invariants and the timings (-maxrows 0 skips the invariants).
+ *
+ * No Swing class is loaded: it runs on servers without a display.
+ *
+ * Exit status: 0 all the files analyzed, 1 some files failed, 2 usage
+ * error.
+ */
+public class BatchAnalyzer
+{
+    /**
+     * Worker threads.
+     */
+    private final int threads;
+
+    /**
+     * Max states of the soundness check.
+     */
+    private final int maxStates;
+
+    /**
+     * Max rows of the invariants computation, 0 to skip it.
+     */
+    private final int maxRows;
+
+    /**
+     * {@link BatchAnalyzer} Constructor.
+     *
+     * @param threads
+     * @param maxStates
+     * @param maxRows
+     */
+    public BatchAnalyzer(int threads, int maxStates, int maxRows)
+    {
+        this.threads = threads;
+        this.maxStates = maxStates;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args
+     */
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxStates = Constants.SOUNDNESS_MAX_STATES;
+        int maxRows = Constants.INVARIANTS_MAX_ROWS;
+        String format = Constants.BATCH_FORMAT_JSON;
+        String output = null;
+        List<String> paths = new ArrayList<>();
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "-threads":
+                    {
+                        threads = Integer.parseInt(getValue(args, ++i));
+                        break;
+                    }
+
+                    case "-maxstates":
+                    {
+                        maxStates = Integer.parseInt(getValue(args, ++i));
+                        break;
+                    }
+
+                    case "-maxrows":
+                    {
+                        maxRows = Integer.parseInt(getValue(args, ++i));
+                        break;
+                    }
+
+                    case "-format":
+                    {
+                        format = getValue(args, ++i);
+                        break;
+                    }
+
+                    case "-output":
+                    {
+                        output = getValue(args, ++i);
+                        break;
+                    }
+
+                    default:
+                    {
+                        paths.add(args[i]);
+                    }
+                }
+            }
+
+            if(paths.isEmpty() || threads < 1 || maxStates < 1 || maxRows < 0
+                || (format.equals(Constants.BATCH_FORMAT_JSON) == false
+                    && format.equals(Constants.BATCH_FORMAT_CSV) == false))
+            {
+                throw new IllegalArgumentException("Invalid arguments.");
+            }
+        }
+        catch (IllegalArgumentException ex)
+        {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: BatchAnalyzer [-threads n] [-format json|csv] [-maxstates n] [-maxrows n] [-output file] file|directory ...");
+            System.exit(2);
+            return;
+        }
+
+        try
+        {
+            List<NetReport> reports = new BatchAnalyzer(threads, maxStates, maxRows).analyze(getFiles(paths));
+
+            Writer writer = (output == null)
+                ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                : new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8);
+
+            try (PrintWriter out = new PrintWriter(new BufferedWriter(writer)))
+            {
+                if(format.equals(Constants.BATCH_FORMAT_CSV))
+                {
+                    writeCsv(reports, out);
+                }
+                else
+                {
+                    writeJson(reports, out);
+                }
+            }
+
+            for (NetReport report : reports)
+            {
+                if(report.error != null)
+                {
+                    System.exit(1);
+                }
+            }
+        }
+        catch (IOException | InterruptedException ex)
+        {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the value of an option.
+     *
+     * @param args
+     * @param i
+     * @return String
+     */
+    private static String getValue(String[] args, int i)
+    {
+        if(i >= args.length)
+        {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1] + ".");
+        }
+
+        return args[i];
+    }
+
+    /**
+     * Returns the files to analyze: the files as they are and the pnml
+     * files in the directories (recursively, sorted by name).
+     *
+     * @param paths
+     * @return List<File>
+     */
+    public static List<File> getFiles(List<String> paths)
+    {
+        List<File> files = new ArrayList<>();
+
+        for (String path : paths)
+        {
+            addFiles(new File(path), files);
+        }
+
+        return files;
+    }
+
+    private static void addFiles(File file, List<File> files)
+    {
+        if(file.isDirectory() == false)
+        {
+            files.add(file);
+            return;
+        }
+
+        File[] children = file.listFiles();
+
+        if(children == null)
+        {
+            return;
+        }
+
+        Arrays.sort(children);
+
+        for (File child : children)
+        {
+            if(child.isDirectory()
+                || child.getName().toLowerCase(Locale.ROOT).endsWith(Constants.EDITOR_EXPORT_PNML))
+            {
+                addFiles(child, files);
+            }
+        }
+    }
+
+    /**
+     * Analyzes the files on the thread pool.
+     *
+     * @param files
+     * @return a report per net (or per failed file), in the order of the files
+     * @throws InterruptedException
+     */
+    public List<NetReport> analyze(List<File> files) throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<List<NetReport>>> results = new ArrayList<>();
+        List<NetReport> reports = new ArrayList<>();
+
+        try
+        {
+            for (final File file : files)
+            {
+                results.add(executor.submit(new Callable<List<NetReport>>()
+                {
+                    @Override
+                    public List<NetReport> call()
+                    {
+                        return analyze(file);
+                    }
+                }));
+            }
+
+            for (Future<List<NetReport>> result : results)
+            {
+                try
+                {
+                    reports.addAll(result.get());
+                }
+                catch (ExecutionException ex)
+                {
+                    // analyze(File) reports its errors
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return reports;
+    }
+
+    /**
+     * Analyzes all the nets of a file.
+     *
+     * @param file
+     * @return a report per net, a single report with the error if the file
+     *         can't be imported
+     */
+    public List<NetReport> analyze(File file)
+    {
+        List<NetReport> reports = new ArrayList<>();
+        long start = System.nanoTime();
+        List<PetriNetGraph> graphs;
+
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file)))
+        {
+            graphs = PetriNetGraph.factory(input, file.getName());
+
+            if(graphs.isEmpty())
+            {
+                throw new IOException("No net found.");
+            }
+        }
+        catch (Exception ex)
+        {
+            NetReport report = new NetReport(file.getPath());
+            report.error = (ex.getMessage() != null) ? ex.getMessage() : ex.toString();
+            report.loadMillis = getMillis(start);
+            reports.add(report);
+
+            return reports;
+        }
+
+        double loadMillis = getMillis(start);
+
+        for (PetriNetGraph graph : graphs)
+        {
+            NetReport report = new NetReport(file.getPath());
+            report.loadMillis = loadMillis;
+
+            try
+            {
+                analyze(graph, report);
+            }
+            catch (RuntimeException ex)
+            {
+                report.error = ex.toString();
+            }
+
+            reports.add(report);
+        }
+
+        return reports;
+    }
+
+    /**
+     * Analyzes a net.
+     *
+     * @param graph
+     * @param report    destination
+     */
+    private void analyze(PetriNetGraph graph, NetReport report)
+    {
+        long start = System.nanoTime();
+        PetriNetKernel kernel = new PetriNetKernel(graph);
+
+        report.net = graph.getId();
+        report.places = kernel.getPlacesCount();
+        report.transitions = kernel.getTransitionsCount();
+        report.arcs = kernel.getArcsCount();
+        report.singleInitialPlace = kernel.isSingleInitialPlace();
+        report.singleFinalPlace = kernel.isSingleFinalPlace();
+        report.stronglyConnected = kernel.isWorkflowStronglyConnected();
+        report.workflow = report.stronglyConnected;
+
+        if(report.workflow)
+        {
+            SoundnessChecker checker = new SoundnessChecker(kernel, maxStates);
+            checker.setReduction(true);
+            report.sound = checker.check();
+            report.soundness = checker.getResult();
+            report.states = checker.getStatesCount();
+        }
+
+        if(maxRows > 0)
+        {
+            // Short-circuited: t* closes the workflow cycles
+            PetriNetKernel invariantsKernel = (report.singleInitialPlace && report.singleFinalPlace)
+                ? kernel.shortCircuit()
+                : kernel;
+
+            Invariants placeInvariants = new Invariants(invariantsKernel, true, maxRows);
+
+            if(placeInvariants.compute())
+            {
+                report.placeInvariants = placeInvariants.getInvariants().size();
+                report.placeCovered = placeInvariants.isCovered();
+            }
+
+            Invariants transitionInvariants = new Invariants(invariantsKernel, false, maxRows);
+
+            if(transitionInvariants.compute())
+            {
+                report.transitionInvariants = transitionInvariants.getInvariants().size();
+                report.transitionCovered = transitionInvariants.isCovered();
+            }
+        }
+
+        report.analysisMillis = getMillis(start);
+    }
+
+    private static double getMillis(long start)
+    {
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /**
+     * Writes the reports as a json array.
+     *
+     * @param reports
+     * @param out
+     */
+    public static void writeJson(List<NetReport> reports, PrintWriter out)
+    {
+        out.println("[");
+
+        for (int i = 0; i < reports.size(); i++)
+        {
+            NetReport report = reports.get(i);
+
+            out.print("  {\"file\": " + quoteJson(report.file)
+                + ", \"net\": " + quoteJson(report.net)
+                + ", \"places\": " + report.places
+                + ", \"transitions\": " + report.transitions
+                + ", \"arcs\": " + report.arcs
+                + ", \"singleInitialPlace\": " + report.singleInitialPlace
+                + ", \"singleFinalPlace\": " + report.singleFinalPlace
+                + ", \"stronglyConnected\": " + report.stronglyConnected
+                + ", \"workflow\": " + report.workflow
+                + ", \"sound\": " + report.sound
+                + ", \"soundness\": " + quoteJson(report.soundness)
+                + ", \"states\": " + report.states
+                + ", \"placeInvariants\": " + report.placeInvariants
+                + ", \"placeCovered\": " + report.placeCovered
+                + ", \"transitionInvariants\": " + report.transitionInvariants
+                + ", \"transitionCovered\": " + report.transitionCovered
+                + ", \"loadMillis\": " + formatMillis(report.loadMillis)
+                + ", \"analysisMillis\": " + formatMillis(report.analysisMillis)
+                + ", \"error\": " + quoteJson(report.error)
+                + "}");
+            out.println((i < reports.size() - 1) ? "," : "");
+        }
+
+        out.println("]");
+    }
+
+    /**
+     * Writes the reports as csv, with a header row.
+     *
+     * @param reports
+     * @param out
+     */
+    public static void writeCsv(List<NetReport> reports, PrintWriter out)
+    {
+        out.println("file,net,places,transitions,arcs,singleInitialPlace,singleFinalPlace,"
+            + "stronglyConnected,workflow,sound,soundness,states,placeInvariants,placeCovered,"
+            + "transitionInvariants,transitionCovered,loadMillis,analysisMillis,error");
+
+        for (NetReport report : reports)
+        {
+            out.println(quoteCsv(report.file)
+                + "," + quoteCsv(report.net)
+                + "," + report.places
+                + "," + report.transitions
+                + "," + report.arcs
+                + "," + report.singleInitialPlace
+                + "," + report.singleFinalPlace
+                + "," + report.stronglyConnected
+                + "," + report.workflow
+                + "," + report.sound
+                + "," + quoteCsv(report.soundness)
+                + "," + report.states
+                + "," + report.placeInvariants
+                + "," + report.placeCovered
+                + "," + report.transitionInvariants
+                + "," + report.transitionCovered
+                + "," + formatMillis(report.loadMillis)
+                + "," + formatMillis(report.analysisMillis)
+                + "," + quoteCsv(report.error));
+        }
+    }
+
+    private static String formatMillis(double millis)
+    {
+        return String.format(Locale.ROOT, "%.3f", millis);
+    }
+
+    private static String quoteJson(String text)
+    {
+        if(text == null)
+        {
+            return "null";
+        }
+
+        StringBuilder quoted = new StringBuilder("\"");
+
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+
+            switch (c)
+            {
+                case '"':
+                {
+                    quoted.append("\\\"");
+                    break;
+                }
+
+                case '\\':
+                {
+                    quoted.append("\\\\");
+                    break;
+                }
+
+                default:
+                {
+                    if(c < 0x20)
+                    {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+
+        return quoted.append('"').toString();
+    }
+
+    private static String quoteCsv(String text)
+    {
+        if(text == null)
+        {
+            return "";
+        }
+
+        if(text.indexOf(',') < 0 && text.indexOf('"') < 0
+            && text.indexOf('\n') < 0 && text.indexOf('\r') < 0)
+        {
+            return text;
+        }
+
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Analysis result of a net.
+     */
+    public static class NetReport
+    {
+        public final String file;
+        public String net;
+        public int places;
+        public int transitions;
+        public int arcs;
+        public boolean singleInitialPlace;
+        public boolean singleFinalPlace;
+        public boolean stronglyConnected;
+        public boolean workflow;
+        public boolean sound;
+
+        /**
+         * One of the Constants.SOUNDNESS_* values, null if not a workflow.
+         */
+        public String soundness;
+        public int states;
+
+        /**
+         * Minimal P- and T-invariants (of the short-circuited net for a
+         * single initial and final place), -1 if not computed or over the
+         * rows limit.
+         */
+        public int placeInvariants = -1;
+        public boolean placeCovered;
+        public int transitionInvariants = -1;
+        public boolean transitionCovered;
+        public double loadMillis;
+        public double analysisMillis;
+
+        /**
+         * Why the file (or the net) was not analyzed, null on success.
+         */
+        public String error;
+
+        public NetReport(String file)
+        {
+            this.file = file;
+        }
+    }
+}
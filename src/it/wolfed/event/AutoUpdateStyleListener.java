@@ -1,5 +1,6 @@
 package it.wolfed.event;
 
+import com.mxgraph.model.mxIGraphModel;
 import com.mxgraph.util.mxEventObject;
 import com.mxgraph.util.mxEventSource.mxIEventListener;
 import it.wolfed.model.InterfaceVertex;
@@ -8,85 +9,100 @@ import it.wolfed.model.PlaceVertex;
 import it.wolfed.model.TransitionVertex;
 import it.wolfed.model.Vertex;
 import it.wolfed.util.Constants;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Updates the style of the cells on each structural change.
+ *
+ * The new style of each cell is computed once, then only the cells with a
+ * different style are changed, in a single model update: the view repaints
+ * only them. Style (and geometry, value) changes are ignored, so the
+ * listener doesn't trigger itself.
+ */
 public class AutoUpdateStyleListener implements mxIEventListener
 {
     private PetriNetGraph graph;
-    
+
     public AutoUpdateStyleListener(PetriNetGraph graph)
     {
         this.graph = graph;
     }
-    
+
     @Override
     public void invoke(Object o, mxEventObject eo)
     {
-        updateEdgesStyle();
-        updateVerticesStyle();
-        graph.refresh();
+        if(PetriNetGraph.isStructuralChange(eo) == false)
+        {
+            return;
+        }
+
+        Map<Object, String> styles = new HashMap<>();
+        boolean isWorkFlow = graph.isWorkFlow();
+
+        computeEdgesStyle(styles, isWorkFlow);
+        computeVerticesStyle(styles, isWorkFlow);
+        applyStyles(styles);
     }
-    
-    private void updateEdgesStyle()
+
+    private void computeEdgesStyle(Map<Object, String> styles, boolean isWorkFlow)
     {
         // Reset Arc Style
+        String arcStyle = isWorkFlow ? Constants.STYLE_ARC_FLOW_CONNECTED : Constants.STYLE_ARC;
+
         for(Object edge: graph.getChildEdges())
         {
-            if(graph.isWorkFlow())
-            {
-                graph.getModel().setStyle(edge, Constants.STYLE_ARC_FLOW_CONNECTED);
-            }
-            else
-            {
-                graph.getModel().setStyle(edge, Constants.STYLE_ARC);
-            }
+            styles.put(edge, arcStyle);
         }
-        
+
         // Highlight not strongly connected arc
-        if( ! graph.isWorkFlow() && graph.isSingleFinalPlace())
+        if( ! isWorkFlow && graph.isSingleFinalPlace())
         {
             for(Vertex vertex : graph.getNotConnectedVertices(graph.getFinalPlaces().get(0)))
             {
-                for(Object edge : graph.getIncomingEdges(vertex))
+                Object[] incomingEdges = graph.getIncomingEdges(vertex);
+
+                for(Object edge : incomingEdges)
                 {
-                    graph.getModel().setStyle(edge, Constants.STYLE_ARC_FLOW_UNCONNECTED);
+                    styles.put(edge, Constants.STYLE_ARC_FLOW_UNCONNECTED);
                 }
-                
+
                 // Caso limite di "Transition Initial"
-                if(vertex instanceof TransitionVertex &&
-                        graph.getIncomingEdges(vertex).length == 0)
+                if(vertex instanceof TransitionVertex && incomingEdges.length == 0)
                 {
                     for(Object edge : graph.getOutgoingEdges(vertex))
                     {
-                        graph.getModel().setStyle(edge, Constants.STYLE_ARC_FLOW_UNCONNECTED);
+                        styles.put(edge, Constants.STYLE_ARC_FLOW_UNCONNECTED);
                     }
                 }
             }
         }
     }
 
-    private void updateVerticesStyle()
+    private void computeVerticesStyle(Map<Object, String> styles, boolean isWorkFlow)
     {
-        String newStyle;
+        boolean singleInitialPlace = graph.getInitialPlaces().size() <= 1;
+        boolean singleFinalPlace = graph.getFinalPlaces().size() <= 1;
 
         for (Object objVertex : graph.getChildVertices())
         {
             if(objVertex instanceof PlaceVertex)
             {
-                PlaceVertex place = (PlaceVertex) objVertex;
+                String newStyle;
 
-                if(graph.getInitialPlaces().contains(place))
+                if(graph.isInitialPlace(objVertex))
                 {
-                    newStyle = (graph.getInitialPlaces().size() > 1)
-                            ? Constants.STYLE_PLACE_SPECIAL_INVALID
-                            : Constants.STYLE_PLACE_SPECIAL_VALID;
+                    newStyle = singleInitialPlace
+                            ? Constants.STYLE_PLACE_SPECIAL_VALID
+                            : Constants.STYLE_PLACE_SPECIAL_INVALID;
                 }
-                else if(graph.getFinalPlaces().contains(place))
+                else if(graph.isFinalPlace(objVertex))
                 {
-                    newStyle = (graph.getFinalPlaces().size() > 1)
-                            ? Constants.STYLE_PLACE_SPECIAL_INVALID
-                            : Constants.STYLE_PLACE_SPECIAL_VALID;
+                    newStyle = singleFinalPlace
+                            ? Constants.STYLE_PLACE_SPECIAL_VALID
+                            : Constants.STYLE_PLACE_SPECIAL_INVALID;
                 }
-                else if(graph.isWorkFlow())
+                else if(isWorkFlow)
                 {
                     newStyle = Constants.STYLE_PLACE_VALID;
                 }
@@ -94,29 +110,55 @@ public class AutoUpdateStyleListener implements mxIEventListener
                 {
                     newStyle = Constants.STYLE_PLACE;
                 }
-                
-                graph.getModel().setStyle(place, newStyle);
+
+                styles.put(objVertex, newStyle);
             }
             else if(objVertex instanceof TransitionVertex)
             {
-                if(graph.isWorkFlow())
-                {
-                    newStyle = Constants.STYLE_TRANSITION_VALID;
-                }
-                else
-                {
-                    newStyle = Constants.STYLE_TRANSITION;
-                }
-                
-                graph.getModel().setStyle(objVertex, newStyle);
+                styles.put(objVertex, isWorkFlow ? Constants.STYLE_TRANSITION_VALID : Constants.STYLE_TRANSITION);
             }
             else if(objVertex instanceof InterfaceVertex)
             {
                 for(Object edgeObj : graph.getEdges(objVertex))
                 {
-                    graph.getModel().setStyle(edgeObj, Constants.STYLE_ARC_WITH_INTERFACE);
+                    styles.put(edgeObj, Constants.STYLE_ARC_WITH_INTERFACE);
                 }
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Sets the styles that changed, in a single update.
+     *
+     * @param styles
+     */
+    private void applyStyles(Map<Object, String> styles)
+    {
+        mxIGraphModel model = graph.getModel();
+        boolean updating = false;
+
+        try
+        {
+            for (Map.Entry<Object, String> entry : styles.entrySet())
+            {
+                if(entry.getValue().equals(model.getStyle(entry.getKey())) == false)
+                {
+                    if(updating == false)
+                    {
+                        model.beginUpdate();
+                        updating = true;
+                    }
+
+                    model.setStyle(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        finally
+        {
+            if(updating)
+            {
+                model.endUpdate();
+            }
+        }
+    }
+}
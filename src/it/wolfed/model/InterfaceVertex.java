@@ -2,10 +2,11 @@
 package it.wolfed.model;
 
 import it.wolfed.util.Constants;
-import it.wolfed.util.IterableNodeList;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import it.wolfed.util.XMLStreamUtils;
+import java.io.IOException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * Interface.
@@ -31,44 +32,47 @@ public class InterfaceVertex extends Vertex
     }
     
     /**
-     * Generate a new {@link InterfaceVertex} from a pnml valid dom node.
+     * Generate a new {@link InterfaceVertex} from a pnml interface element.
      * From toolSpecific
      * 
      * 
      * <interface id="p2" /> 
 
      * @param parent
-     * @param dom
+     * @param reader    on the START_ELEMENT, left on the END_ELEMENT
      * @return  InterfaceVertex
+     * @throws XMLStreamException
      */  
-    public static InterfaceVertex factory(Object parent, Node dom)
+    public static InterfaceVertex factory(Object parent, XMLStreamReader reader) throws XMLStreamException
     {
-        String id = dom.getAttributes().getNamedItem(Constants.PNML_ID).getNodeValue();
+        String id = reader.getAttributeValue(null, Constants.PNML_ID);
+        XMLStreamUtils.skipElement(reader);
+        
         return new InterfaceVertex(parent, id, id);
     };
 
     /**
      * Export PNML interface
      * 
-     * @param doc
-     * @return 
+     * @param writer
+     * @throws XMLStreamException
      */
-    public Element exportPNML(Document doc) 
+    public void exportPNML(XMLStreamWriter writer) throws XMLStreamException
     {
-        /**<interface id="i1"> */
-        Element interf = doc.createElement(Constants.PNML_INTERFACE);
-	interf.setAttribute(Constants.PNML_ID, getId());
-        
-        return interf;
+        /**<interface id="i1"/> */
+        writer.writeEmptyElement(Constants.PNML_INTERFACE);
+        writer.writeAttribute(Constants.PNML_ID, getId());
     }
     
     /**
      * Export DOT interface
      * 
-     * @return 
+     * @param out
+     * @param dotId     sanitized id
+     * @throws IOException
      */
-      public String exportDOT() 
-      {
-        return "\n"+this.getId().replaceAll("-", "")+" [label=\""+getValue().toString()+"\", shape=\"doublecircle\", color=\"orange\" ];";
+    public void exportDOT(Appendable out, String dotId) throws IOException
+    {
+        out.append("\n").append(dotId).append(" [label=\"").append(getValue().toString()).append("\", shape=\"doublecircle\", color=\"orange\" ];");
     }
 }
@@ -2,32 +2,46 @@
 package it.wolfed.model;
 
 import it.wolfed.manipulation.GraphManipulation;
-import com.mxgraph.analysis.mxDistanceCostFunction;
-import com.mxgraph.analysis.mxGraphAnalysis;
 import com.mxgraph.model.mxCell;
+import com.mxgraph.model.mxGraphModel.mxChildChange;
+import com.mxgraph.model.mxGraphModel.mxRootChange;
+import com.mxgraph.model.mxGraphModel.mxTerminalChange;
+import com.mxgraph.model.mxGraphModel.mxValueChange;
+import com.mxgraph.model.mxICell;
 import com.mxgraph.util.mxEvent;
 import com.mxgraph.util.mxEventObject;
 import com.mxgraph.util.mxEventSource;
+import com.mxgraph.util.mxUndoableEdit.mxUndoableChange;
 import com.mxgraph.view.mxGraph;
 import it.wolfed.swing.GraphComponent;
 import it.wolfed.util.Constants;
-import it.wolfed.util.IterableNodeList;
+import it.wolfed.util.XMLStreamUtils;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * PetriNet implementation.
@@ -99,15 +113,31 @@ public class PetriNetGraph extends mxGraph
     /**
      * Holds all the initialPlaces of the graph.
      * 
-     * Refreshed on every change.
+     * Kept in sync on every executed child and terminal change.
+     * @see PetriNetGraph#isInitialPlace(java.lang.Object)
+     */
+    private Set<PlaceVertex> initialPlacesFound = new HashSet<>();
+    
+    /**
+     * Holds all the finalPlaces of the graph.
+     * 
+     * Kept in sync on every executed child and terminal change.
+     * @see PetriNetGraph#isFinalPlace(java.lang.Object)
+     */
+    private Set<PlaceVertex> finalPlacesFound = new HashSet<>();
+    
+    /**
+     * Ordered list of the initialPlaces of the graph.
+     * 
+     * Rebuilt when {@link PetriNetGraph#initialPlacesFound} changes.
      * @see PetriNetGraph#getInitialPlaces()
      */
     private List<PlaceVertex> initialPlaces;
     
     /**
-     * Holds all the initialPlaces of the graph.
+     * Ordered list of the finalPlaces of the graph.
      * 
-     * Refreshed on every change.
+     * Rebuilt when {@link PetriNetGraph#finalPlacesFound} changes.
      * @see PetriNetGraph#getFinalPlaces()
      */
     private List<PlaceVertex> finalPlaces;
@@ -115,10 +145,54 @@ public class PetriNetGraph extends mxGraph
     /**
      * Holds all the NOT "workflow connected" vertices of the graph.
      * 
-     * Refreshed on every change.
+     * Refreshed on every structural change.
      * @see PetriNetGraph#getNotConnectedVertices(it.wolfed.model.Vertex)
      */
     private Set<Vertex> notConnectedVertices;
+    
+    /**
+     * Holds all the vertices NOT reachable from the initial place.
+     * 
+     * Refreshed on every structural change.
+     * @see PetriNetGraph#getNotReachableVertices(it.wolfed.model.Vertex)
+     */
+    private Set<Vertex> notReachableVertices;
+    
+    /**
+     * Index of the vertices of the graph by id.
+     * 
+     * Kept in sync on every executed child change.
+     * @see PetriNetGraph#getVertexById(java.lang.String)
+     */
+    private Map<String, Vertex> verticesById = new HashMap<>();
+    
+    /**
+     * Index of the vertices of the graph by value.
+     * 
+     * Kept in sync on every executed child and value change.
+     * @see PetriNetGraph#getVertexByValue(java.lang.Object)
+     */
+    private Map<Object, Set<Vertex>> verticesByValue = new HashMap<>();
+    
+    /**
+     * Arcs counters of the vertices of the graph.
+     * 
+     * For each vertex: {#preset arcs, #postset arcs, insertion order}.
+     * Kept in sync on every executed child and terminal change.
+     */
+    private Map<Vertex, int[]> vertexDegrees = new HashMap<>();
+    
+    /**
+     * Index of the vertex insertion order.
+     */
+    private int indexVertexOrder;
+    
+    /**
+     * Positions in the {@link PetriNetGraph#vertexDegrees} counters.
+     */
+    private static final int DEGREE_PRESET = 0;
+    private static final int DEGREE_POSTSET = 1;
+    private static final int DEGREE_ORDER = 2;
 
     /**
      * {@link PetriNetGraph} Constructor.
@@ -135,18 +209,136 @@ public class PetriNetGraph extends mxGraph
         setDropEnabled(false);
         setMultigraph(false);
         
-        // Dirty Pattern: Force refreshing of analysis on change event
-        // @todo filter this only on add and remove events
+        // Force refreshing of analysis only on structural change events,
+        // style and geometry changes keep the computed analysis
         getModel().addListener(mxEvent.CHANGE, new mxEventSource.mxIEventListener()
         {
             @Override
             public void invoke(Object sender, mxEventObject evt)
             {
-                initialPlaces = null;
-                finalPlaces = null;
+                if(isStructuralChange(evt) == false)
+                {
+                    return;
+                }
+                
                 notConnectedVertices = null;
+                notReachableVertices = null;
             }
         });
+        
+        // Keep the vertex indexes and the arcs counters in sync with every
+        // atomic change, also inside a beginUpdate() / endUpdate() block
+        getModel().addListener(mxEvent.EXECUTE, new mxEventSource.mxIEventListener()
+        {
+            @Override
+            public void invoke(Object sender, mxEventObject evt)
+            {
+                Object change = evt.getProperty("change");
+                
+                if(change instanceof mxChildChange)
+                {
+                    mxChildChange childChange = (mxChildChange) change;
+                    
+                    if(childChange.getChild() instanceof Vertex)
+                    {
+                        // After the execution parent holds the new parent (null on remove)
+                        if(childChange.getParent() == null)
+                        {
+                            unindexVertex((Vertex) childChange.getChild(), ((Vertex) childChange.getChild()).getValue());
+                            untrackVertex((Vertex) childChange.getChild());
+                        }
+                        else
+                        {
+                            indexVertex((Vertex) childChange.getChild());
+                            trackVertex((Vertex) childChange.getChild());
+                        }
+                    }
+                    else if(childChange.getChild() instanceof mxICell
+                        && ((mxICell) childChange.getChild()).isEdge())
+                    {
+                        // Previous holds the old parent: count only real add\remove
+                        mxICell edge = (mxICell) childChange.getChild();
+                        int delta = 0;
+                        
+                        if(childChange.getParent() == null && childChange.getPrevious() != null)
+                        {
+                            delta = -1;
+                        }
+                        else if(childChange.getParent() != null && childChange.getPrevious() == null)
+                        {
+                            delta = 1;
+                        }
+                        
+                        if(delta != 0)
+                        {
+                            updateDegree(edge.getTerminal(true), true, delta);
+                            updateDegree(edge.getTerminal(false), false, delta);
+                        }
+                    }
+                }
+                else if(change instanceof mxTerminalChange)
+                {
+                    mxTerminalChange terminalChange = (mxTerminalChange) change;
+                    
+                    // After the execution previous holds the old terminal
+                    if(getModel().getParent(terminalChange.getCell()) != null)
+                    {
+                        updateDegree(terminalChange.getPrevious(), terminalChange.isSource(), -1);
+                        updateDegree(terminalChange.getTerminal(), terminalChange.isSource(), 1);
+                    }
+                }
+                else if(change instanceof mxValueChange)
+                {
+                    mxValueChange valueChange = (mxValueChange) change;
+                    
+                    if(valueChange.getCell() instanceof Vertex
+                        && verticesById.containsKey(((Vertex) valueChange.getCell()).getId()))
+                    {
+                        // After the execution previous holds the old value
+                        unindexVertex((Vertex) valueChange.getCell(), valueChange.getPrevious());
+                        indexVertex((Vertex) valueChange.getCell());
+                    }
+                }
+                else if(change instanceof mxRootChange)
+                {
+                    reindexVertices();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Returns if a model change event alters the net structure.
+     * 
+     * Structural changes are added\removed cells (mxChildChange), 
+     * reconnected arcs (mxTerminalChange) and a new root (mxRootChange).
+     * Style, geometry and value changes are not structural.
+     * 
+     * @param evt mxEvent.CHANGE event
+     * @return boolean
+     */
+    @SuppressWarnings("unchecked")
+    public static boolean isStructuralChange(mxEventObject evt)
+    {
+        Object changes = (evt == null) ? null : evt.getProperty("changes");
+        
+        // Unknown changes, assume the worst
+        if(changes instanceof List == false)
+        {
+            return true;
+        }
+        
+        for(mxUndoableChange change : (List<mxUndoableChange>) changes)
+        {
+            if(change instanceof mxChildChange
+                || change instanceof mxTerminalChange
+                || change instanceof mxRootChange)
+            {
+                return true;
+            }
+        }
+        
+        return false;
     }
     
     /**
@@ -159,19 +351,64 @@ public class PetriNetGraph extends mxGraph
     }
     
     /**
-     * Imports a pnmlXML node in a new {@link PetriNetGraph}.
+     * Imports all the nets of a pnml stream.
      * 
-     * @todo refactor this in "divide et impera"
-     * @param dom
+     * Single pass over the document: memory does not depend on the file
+     * size but only on the imported nets.
+     * 
+     * @param input
+     * @param defaultId     id for the nets without one
+     * @return List<PetriNetGraph>
+     * @throws XMLStreamException
+     * @see <a href="http://www.pnmlXML.org/">http://www.pnmlXML.org/</a>
+     */
+    public static List<PetriNetGraph> factory(InputStream input, String defaultId) throws XMLStreamException
+    {
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(input);
+        List<PetriNetGraph> graphs = new ArrayList<>();
+        
+        try
+        {
+            while (reader.hasNext())
+            {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT
+                    && reader.getLocalName().equals(Constants.PNML_NET))
+                {
+                    graphs.add(factory(reader, defaultId));
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        
+        return graphs;
+    }
+    
+    /**
+     * Imports a pnml net element in a new {@link PetriNetGraph}.
+     * 
+     * The reader must be on the net START_ELEMENT and is left on its
+     * END_ELEMENT. Vertices are built while reading, arcs and interfaces
+     * are resolved by id after the whole net.
+     * 
+     * @param reader
      * @param defaultId
      * @return PetriNetGraph
+     * @throws XMLStreamException
      * @see <a href="http://www.pnmlXML.org/">http://www.pnmlXML.org/</a>
      */
-    public static PetriNetGraph factory(Node dom, String defaultId)
+    public static PetriNetGraph factory(XMLStreamReader reader, String defaultId) throws XMLStreamException
     {
         // Xml Mapping 1:1
-        String id = dom.getAttributes().getNamedItem(Constants.PNML_ID).getTextContent().trim();
-        String type = dom.getAttributes().getNamedItem(Constants.PNML_TYPE).getTextContent().trim();
+        String id = reader.getAttributeValue(null, Constants.PNML_ID);
+        String type = reader.getAttributeValue(null, Constants.PNML_TYPE);
+        id = (id == null) ? "" : id.trim();
         
         // Fix Woped "noID" behaviour
         if(id.isEmpty() || id.equals("noID"))
@@ -181,64 +418,84 @@ public class PetriNetGraph extends mxGraph
         
         // Creates new Graph
         PetriNetGraph graph = new PetriNetGraph(id);
-        graph.setType(type);
+        graph.setType((type == null) ? "" : type.trim());
                 
         // Pmnl Import
         graph.getModel().beginUpdate();
         Object parent = graph.getDefaultParent();
 
-        // Holds the arcsNodes founds
-        Set<Node> arcsNodes = new HashSet<>();
-        Set<Node> interfacesNodes = new HashSet<>();
+        // Holds the arcs found: {id, source, target}
+        List<String[]> arcs = new ArrayList<>();
+        List<InterfaceVertex> interfacesFound = new ArrayList<>();
         
         try
         {
-            for (final Node elementNode : new IterableNodeList(dom.getChildNodes())) 
+            while (XMLStreamUtils.nextChild(reader))
             {
-                if (elementNode.getNodeType() == Node.ELEMENT_NODE) 
+                switch (reader.getLocalName())
                 {
-                    switch (elementNode.getNodeName())
+                    case Constants.PNML_PLACE:
                     {
-                        case Constants.PNML_PLACE:
-                        {
-                            graph.addCell(PlaceVertex.factory(parent, elementNode));
-                            graph.getSetNextPlaceId();
-                            break;
-                        }
+                        graph.addCell(PlaceVertex.factory(parent, reader));
+                        graph.getSetNextPlaceId();
+                        break;
+                    }
 
-                        case Constants.PNML_TRANSITION:
-                        {
-                            graph.addCell(TransitionVertex.factory(parent, elementNode));
-                            graph.getSetNextTransitionId();
-                            break;
-                        }
+                    case Constants.PNML_TRANSITION:
+                    {
+                        graph.addCell(TransitionVertex.factory(parent, reader));
+                        graph.getSetNextTransitionId();
+                        break;
+                    }
 
-                        case Constants.PNML_ARC:
-                        {
-                            arcsNodes.add(elementNode);             
-                            break;
-                        }
-                            
-                        case Constants.PNML_TOOL_SPECIFIC:
+                    /**
+                     * <arc id="a31" source="t7" target="p7"> ... </arc>
+                     */
+                    case Constants.PNML_ARC:
+                    {
+                        arcs.add(new String[] {
+                            reader.getAttributeValue(null, Constants.PNML_ID),
+                            reader.getAttributeValue(null, Constants.PNML_SOURCE),
+                            reader.getAttributeValue(null, Constants.PNML_TARGET)
+                        });
+                        
+                        XMLStreamUtils.skipElement(reader);
+                        break;
+                    }
+
+                    case Constants.PNML_TOOL_SPECIFIC:
+                    {
+                        String tool = reader.getAttributeValue(null, Constants.PNML_TOOL);
+                        
+                        if(tool != null && tool.trim().equals(Constants.EDITOR_NAME))
                         {
-                            if(elementNode.getAttributes().getNamedItem(Constants.PNML_TOOL)
-                                    .getTextContent().trim().equals(Constants.EDITOR_NAME))
+                            while (XMLStreamUtils.nextChild(reader))
                             {
-                                for(final Node toolNode : new IterableNodeList(elementNode.getChildNodes()))
+                                if(reader.getLocalName().equals(Constants.PNML_INTERFACES))
                                 {
-                                    switch (toolNode.getNodeName())
+                                    while (XMLStreamUtils.nextChild(reader))
                                     {
-                                        case Constants.PNML_INTERFACES:
-                                        {
-                                            for(final Node interfNode : new IterableNodeList(toolNode.getChildNodes()))
-                                            {
-                                                interfacesNodes.add(interfNode);
-                                            }
-                                        }
+                                        interfacesFound.add(InterfaceVertex.factory(parent, reader));
                                     }
                                 }
+                                else
+                                {
+                                    XMLStreamUtils.skipElement(reader);
+                                }
                             }
                         }
+                        else
+                        {
+                            XMLStreamUtils.skipElement(reader);
+                        }
+                        
+                        break;
+                    }
+                        
+                    default:
+                    {
+                        XMLStreamUtils.skipElement(reader);
+                        break;
                     }
                 }
             }
@@ -246,20 +503,27 @@ public class PetriNetGraph extends mxGraph
             /**
              * Arcs should always be processed AFTER all the vertex.
              */
-            for(Node arcNode : arcsNodes)
+            for(String[] arc : arcs)
             {
-                graph.addCell(ArcEdge.factory(parent, arcNode, graph));
+                graph.addCell(new ArcEdge(parent, arc[0], null, graph.getVertexById(arc[1]), graph.getVertexById(arc[2])));
                 graph.getSetNextArcId();
             }
             
             /**
              * Casting place to interface
              */
-            for(Node interfNode : interfacesNodes)
+            for(InterfaceVertex interf : interfacesFound)
             {
-                // Tranform place into interface
-                InterfaceVertex interf = InterfaceVertex.factory(parent, interfNode);
-                PlaceVertex placeMirror = (PlaceVertex) graph.getVertexByValue(interf.getValue());
+                // Tranform place into interface (mirror by id, or by name for old files)
+                Vertex mirror = graph.getVertexById(interf.getId());
+                
+                if((mirror instanceof PlaceVertex) == false)
+                {
+                    mirror = graph.getVertexByValue(interf.getValue());
+                }
+                
+                PlaceVertex placeMirror = (PlaceVertex) mirror;
+                interf.setValue(placeMirror.getValue());
                 interf.setGeometry(placeMirror.getGeometry());
 
                 graph.addCell(interf);
@@ -354,7 +618,7 @@ public class PetriNetGraph extends mxGraph
      */
     public boolean isSingleInitialPlace()
     {
-        return (getInitialPlaces().size() == 1);
+        return (initialPlacesFound.size() == 1);
     }
     
     /**
@@ -364,7 +628,7 @@ public class PetriNetGraph extends mxGraph
      */
     public boolean isSingleFinalPlace()
     {
-        return (getFinalPlaces().size() == 1);
+        return (finalPlacesFound.size() == 1);
     }
     
     /**
@@ -379,7 +643,8 @@ public class PetriNetGraph extends mxGraph
             return false;
         }
         
-        return getNotConnectedVertices(getFinalPlaces().get(0)).isEmpty();
+        return getNotConnectedVertices(getFinalPlaces().get(0)).isEmpty()
+            && getNotReachableVertices(getInitialPlaces().get(0)).isEmpty();
     }
     
     /**
@@ -402,6 +667,8 @@ public class PetriNetGraph extends mxGraph
     /**
      * Returns all the Places and Transition without a path to target Vertex.
      * 
+     * A single backward visit from the target: O(V+E).
+     * 
      * @param target
      * @return HashSet<Vertex>
      */
@@ -410,43 +677,25 @@ public class PetriNetGraph extends mxGraph
         if(notConnectedVertices == null)
         {
             notConnectedVertices = new HashSet<>();
+            Set<Vertex> connected = getPathVertices(target, false);
             
             for (Object cell : getChildVertices())
             {
-                /**
-                 * Search a path to target.
-                 * 
-                 * @todo Change this with a simple path check (shortestpath now)
-                 */
-                if(cell != target)
+                // Ignore Interfaces
+                if(cell instanceof TransitionVertex || cell instanceof PlaceVertex)
                 {
-                    Object[] paths = mxGraphAnalysis
-                        .getInstance()
-                        .getShortestPath(
-                            this,
-                            cell,
-                            target,
-                            new mxDistanceCostFunction(),
-                            getChildVertices().length,
-                            true
-                     );
-
                     // Path not exists
-                    if(paths.length == 0)
+                    if(connected.contains(cell) == false)
                     {
-                        // Ignore Interfaces
-                        if(cell instanceof TransitionVertex || cell instanceof PlaceVertex)
-                        {
-                            notConnectedVertices.add((Vertex) cell);
-                        }
+                        notConnectedVertices.add((Vertex) cell);
                     }
-                }
 
-                // Case with a Transition "Initial" (only postset arc)
-                if(cell instanceof TransitionVertex 
-                        && getIncomingEdges(cell).length == 0)
-                {
-                    notConnectedVertices.add((Vertex) cell);
+                    // Case with a Transition "Initial" (only postset arc)
+                    if(cell instanceof TransitionVertex 
+                            && getPresetSize((Vertex) cell) == 0)
+                    {
+                        notConnectedVertices.add((Vertex) cell);
+                    }
                 }
             }
         }
@@ -455,55 +704,345 @@ public class PetriNetGraph extends mxGraph
     }
     
     /**
-     * Get a vertex by his id.
+     * Returns all the Places and Transition without a path from source Vertex.
      * 
-     * @param  id 
-     * @return Vertex
+     * A single forward visit from the source: O(V+E).
+     * 
+     * @param source
+     * @return HashSet<Vertex>
      */
-    public Vertex getVertexById(String id)
+    public Set<Vertex> getNotReachableVertices(Vertex source)
     {
-        for (Object objVertex : getChildVertices())
+        if(notReachableVertices == null)
         {
-            if (objVertex instanceof Vertex)
+            notReachableVertices = new HashSet<>();
+            Set<Vertex> reachable = getPathVertices(source, true);
+            
+            for (Object cell : getChildVertices())
             {
-                Vertex vertex = (Vertex) objVertex;
+                // Ignore Interfaces
+                if((cell instanceof TransitionVertex || cell instanceof PlaceVertex)
+                        && reachable.contains(cell) == false)
+                {
+                    notReachableVertices.add((Vertex) cell);
+                }
+            }
+        }
 
-                if (vertex.getId().equals(id))
+        return notReachableVertices;
+    }
+    
+    /**
+     * Visits the graph from a vertex following the arcs direction (forward)
+     * or against it (backward).
+     * 
+     * @param start
+     * @param forward
+     * @return all the visited vertices, start included
+     */
+    private Set<Vertex> getPathVertices(Vertex start, boolean forward)
+    {
+        Set<Vertex> visited = new HashSet<>();
+        Deque<Vertex> stack = new ArrayDeque<>();
+        
+        visited.add(start);
+        stack.push(start);
+        
+        while(stack.isEmpty() == false)
+        {
+            Vertex vertex = stack.pop();
+            
+            for(int i = 0; i < vertex.getEdgeCount(); i++)
+            {
+                mxICell edge = vertex.getEdgeAt(i);
+                
+                // Forward follows the postset arcs, backward the preset arcs
+                if(edge.getTerminal(forward) == vertex)
                 {
-                    return vertex;
+                    Object next = edge.getTerminal(!forward);
+                    
+                    if(next instanceof Vertex && visited.add((Vertex) next))
+                    {
+                        stack.push((Vertex) next);
+                    }
                 }
             }
         }
         
-        return null;
+        return visited;
+    }
+    
+    /**
+     * Get a vertex by his id.
+     * 
+     * @param  id 
+     * @return Vertex
+     */
+    public Vertex getVertexById(String id)
+    {
+        return verticesById.get(id);
     }
     
     /**
      * Get a vertex by his value.
      * 
+     * If more vertices share the same value the first inserted is returned.
+     * 
      * @param  value
      * @return Vertex
      */
     public Vertex getVertexByValue(Object value)
     {
+        Set<Vertex> vertices = verticesByValue.get(value);
+        
+        return (vertices == null) ? null : vertices.iterator().next();
+    }
+    
+    /**
+     * Adds a vertex to the id and value indexes.
+     * 
+     * @param vertex 
+     */
+    private void indexVertex(Vertex vertex)
+    {
+        verticesById.put(vertex.getId(), vertex);
+        
+        Set<Vertex> vertices = verticesByValue.get(vertex.getValue());
+        
+        if(vertices == null)
+        {
+            vertices = new LinkedHashSet<>();
+            verticesByValue.put(vertex.getValue(), vertices);
+        }
+        
+        vertices.add(vertex);
+    }
+    
+    /**
+     * Removes a vertex from the id and value indexes.
+     * 
+     * @param vertex
+     * @param value value under which the vertex was indexed
+     */
+    private void unindexVertex(Vertex vertex, Object value)
+    {
+        if(verticesById.get(vertex.getId()) == vertex)
+        {
+            verticesById.remove(vertex.getId());
+        }
+        
+        Set<Vertex> vertices = verticesByValue.get(value);
+        
+        if(vertices != null)
+        {
+            vertices.remove(vertex);
+            
+            if(vertices.isEmpty())
+            {
+                verticesByValue.remove(value);
+            }
+        }
+    }
+    
+    /**
+     * Rebuilds the id and value indexes and the arcs counters from scratch.
+     */
+    private void reindexVertices()
+    {
+        verticesById.clear();
+        verticesByValue.clear();
+        vertexDegrees.clear();
+        initialPlacesFound.clear();
+        finalPlacesFound.clear();
+        initialPlaces = null;
+        finalPlaces = null;
+        
         for (Object objVertex : getChildVertices())
         {
             if (objVertex instanceof Vertex)
             {
-                Vertex vertex = (Vertex) objVertex;
-
-                if (vertex.getValue().equals(value))
+                indexVertex((Vertex) objVertex);
+                trackVertex((Vertex) objVertex);
+            }
+        }
+    }
+    
+    /**
+     * Starts counting the arcs of a vertex.
+     * 
+     * Arcs already connected to the vertex are counted from his edges.
+     * 
+     * @param vertex 
+     */
+    private void trackVertex(Vertex vertex)
+    {
+        int[] degree = {0, 0, ++indexVertexOrder};
+        
+        for(int i = 0; i < vertex.getEdgeCount(); i++)
+        {
+            mxICell edge = vertex.getEdgeAt(i);
+            
+            if(edge.getParent() != null)
+            {
+                if(edge.getTerminal(false) == vertex)
+                {
+                    degree[DEGREE_PRESET]++;
+                }
+                
+                if(edge.getTerminal(true) == vertex)
                 {
-                    return vertex;
+                    degree[DEGREE_POSTSET]++;
                 }
             }
         }
         
-        return null;
+        vertexDegrees.put(vertex, degree);
+        
+        if(vertex instanceof PlaceVertex)
+        {
+            updateSpecialPlace((PlaceVertex) vertex, degree);
+        }
+    }
+    
+    /**
+     * Stops counting the arcs of a vertex.
+     * 
+     * @param vertex 
+     */
+    private void untrackVertex(Vertex vertex)
+    {
+        vertexDegrees.remove(vertex);
+        
+        if(initialPlacesFound.remove(vertex))
+        {
+            initialPlaces = null;
+        }
+        
+        if(finalPlacesFound.remove(vertex))
+        {
+            finalPlaces = null;
+        }
+    }
+    
+    /**
+     * Updates the arcs counter of an arc terminal.
+     * 
+     * @param terminal
+     * @param isSource  true if the terminal is the arc source (postset)
+     * @param delta     +1 on connect, -1 on disconnect
+     */
+    private void updateDegree(Object terminal, boolean isSource, int delta)
+    {
+        int[] degree = vertexDegrees.get(terminal);
+        
+        if(degree != null)
+        {
+            degree[isSource ? DEGREE_POSTSET : DEGREE_PRESET] += delta;
+            
+            if(terminal instanceof PlaceVertex)
+            {
+                updateSpecialPlace((PlaceVertex) terminal, degree);
+            }
+        }
+    }
+    
+    /**
+     * Adds or removes a place from the initial and final places.
+     * 
+     * @param place
+     * @param degree 
+     */
+    private void updateSpecialPlace(PlaceVertex place, int[] degree)
+    {
+        boolean isInitial = degree[DEGREE_PRESET] == 0 && degree[DEGREE_POSTSET] > 0;
+        boolean isFinal = degree[DEGREE_POSTSET] == 0 && degree[DEGREE_PRESET] > 0;
+        
+        if(isInitial ? initialPlacesFound.add(place) : initialPlacesFound.remove(place))
+        {
+            initialPlaces = null;
+        }
+        
+        if(isFinal ? finalPlacesFound.add(place) : finalPlacesFound.remove(place))
+        {
+            finalPlaces = null;
+        }
+    }
+    
+    /**
+     * Returns the places sorted by insertion order.
+     * 
+     * @param places
+     * @return List<PlaceVertex>
+     */
+    private List<PlaceVertex> sortByInsertion(Set<PlaceVertex> places)
+    {
+        List<PlaceVertex> sorted = new ArrayList<>(places);
+        
+        Collections.sort(sorted, new Comparator<PlaceVertex>()
+        {
+            @Override
+            public int compare(PlaceVertex a, PlaceVertex b)
+            {
+                return Integer.compare(
+                    vertexDegrees.get(a)[DEGREE_ORDER],
+                    vertexDegrees.get(b)[DEGREE_ORDER]
+                );
+            }
+        });
+        
+        return sorted;
+    }
+    
+    /**
+     * Returns the number of preset arcs of a vertex.
+     * 
+     * @param vertex
+     * @return int
+     */
+    public int getPresetSize(Vertex vertex)
+    {
+        int[] degree = vertexDegrees.get(vertex);
+        
+        return (degree == null) ? 0 : degree[DEGREE_PRESET];
+    }
+    
+    /**
+     * Returns the number of postset arcs of a vertex.
+     * 
+     * @param vertex
+     * @return int
+     */
+    public int getPostsetSize(Vertex vertex)
+    {
+        int[] degree = vertexDegrees.get(vertex);
+        
+        return (degree == null) ? 0 : degree[DEGREE_POSTSET];
     }
     
     /**
-     * Get the initial places of the graph.
+     * Returns if a cell is an initial place of the graph.
+     * 
+     * @param cell
+     * @return boolean
+     */
+    public boolean isInitialPlace(Object cell)
+    {
+        return initialPlacesFound.contains(cell);
+    }
+    
+    /**
+     * Returns if a cell is a final place of the graph.
+     * 
+     * @param cell
+     * @return boolean
+     */
+    public boolean isFinalPlace(Object cell)
+    {
+        return finalPlacesFound.contains(cell);
+    }
+    
+    /**
+     * Get the initial places of the graph, in insertion order.
      * 
      * An initial place is a place with:
      * 
@@ -516,26 +1055,14 @@ public class PetriNetGraph extends mxGraph
     {
         if(initialPlaces == null)
         {        
-            initialPlaces = new ArrayList<>();
-        
-            for (Object vertexObj : getChildVertices())
-            {   
-                if(vertexObj instanceof PlaceVertex)
-                {
-                    if(getIncomingEdges(vertexObj).length == 0
-                        && getOutgoingEdges(vertexObj).length > 0)
-                    {
-                        initialPlaces.add((PlaceVertex) vertexObj);
-                    }
-                }
-            }
+            initialPlaces = Collections.unmodifiableList(sortByInsertion(initialPlacesFound));
         }
 
         return initialPlaces;
     }
     
     /**
-     * Get the final places of the graph.
+     * Get the final places of the graph, in insertion order.
      * 
      * A final place is a place with:
      * 
@@ -548,19 +1075,7 @@ public class PetriNetGraph extends mxGraph
     {
         if(finalPlaces == null)
         {
-            finalPlaces = new ArrayList<>();
-            
-             for (Object vertexObj : getChildVertices())
-            {   
-                if(vertexObj instanceof PlaceVertex)
-                {
-                    if(getOutgoingEdges(vertexObj).length == 0
-                        && getIncomingEdges(vertexObj).length > 0)
-                    {
-                        finalPlaces.add((PlaceVertex) vertexObj);
-                    }
-                }    
-            }
+            finalPlaces = Collections.unmodifiableList(sortByInsertion(finalPlacesFound));
         }
         
         return finalPlaces;
@@ -661,7 +1176,175 @@ public class PetriNetGraph extends mxGraph
         ArcEdge edge = new ArcEdge(getDefaultParent(), id, "", source, target);
         return (ArcEdge) addCell(edge);
     }
-    
+
+    /**
+     * Copies all the cells of another graph (same ids) and its ids counters.
+     *
+     * @param source
+     */
+    public void copyFrom(PetriNetGraph source)
+    {
+        // Clones keep the ids, the arcs are linked to the cloned vertices
+        Object[] copies = source.getModel().cloneCells(source.getChildCells(source.getDefaultParent()), true);
+
+        getModel().beginUpdate();
+
+        try
+        {
+            addCells(copies);
+        }
+        finally
+        {
+            getModel().endUpdate();
+        }
+
+        indexPlaces = Math.max(indexPlaces, source.indexPlaces);
+        indexTransitions = Math.max(indexTransitions, source.indexTransitions);
+        indexArcs = Math.max(indexArcs, source.indexArcs);
+        indexInterfaces = Math.max(indexInterfaces, source.indexInterfaces);
+    }
+
+    /**
+     * Returns a structural hash of the net.
+     *
+     * Depends only on the ids, values and tokens of the vertices and on
+     * the ids, values and terminals of the arcs: not on geometry, style or
+     * insertion order. Equal nets (as operation inputs) have equal hashes.
+     *
+     * @return long
+     */
+    public long getStructuralHash()
+    {
+        long sum = 0;
+        long xor = 0;
+        int count = 0;
+
+        for (Object cellObj : getChildCells(getDefaultParent()))
+        {
+            mxCell cell = (mxCell) cellObj;
+            long hash = hash(0xCBF29CE484222325L, cell.getClass().getName());
+            hash = hash(hash, cell.getId());
+            hash = hash(hash, String.valueOf(cell.getValue()));
+
+            if(cell instanceof PlaceVertex)
+            {
+                hash = mix(hash ^ ((PlaceVertex) cell).getTokens());
+            }
+            else if(cell.isEdge())
+            {
+                hash = hash(hash, cell.getSource() == null ? null : cell.getSource().getId());
+                hash = hash(hash, cell.getTarget() == null ? null : cell.getTarget().getId());
+            }
+
+            hash = mix(hash);
+            sum += hash;
+            xor ^= hash;
+            count++;
+        }
+
+        return mix(sum ^ mix(xor + count) ^ hash(0, type));
+    }
+
+    /**
+     * Returns a canonical text of the net: the same fields as the
+     * structural hash, cell by cell in sorted order. Two nets have the
+     * same text if and only if they are equal as operation inputs, so it
+     * confirms what the hash only suggests.
+     *
+     * @return String
+     */
+    public String getStructuralKey()
+    {
+        List<String> cells = new ArrayList<>();
+
+        for (Object cellObj : getChildCells(getDefaultParent()))
+        {
+            mxCell cell = (mxCell) cellObj;
+            StringBuilder text = new StringBuilder();
+            appendField(text, cell.getClass().getName());
+            appendField(text, cell.getId());
+            appendField(text, String.valueOf(cell.getValue()));
+
+            if(cell instanceof PlaceVertex)
+            {
+                appendField(text, String.valueOf(((PlaceVertex) cell).getTokens()));
+            }
+            else if(cell.isEdge())
+            {
+                appendField(text, cell.getSource() == null ? null : cell.getSource().getId());
+                appendField(text, cell.getTarget() == null ? null : cell.getTarget().getId());
+            }
+
+            cells.add(text.toString());
+        }
+
+        Collections.sort(cells);
+
+        StringBuilder key = new StringBuilder();
+        appendField(key, type);
+
+        for (String cell : cells)
+        {
+            key.append(cell).append('\n');
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Appends a field with its length, so no text can be read in two ways.
+     *
+     * @param text
+     * @param field     null allowed
+     */
+    private static void appendField(StringBuilder text, String field)
+    {
+        if(field == null)
+        {
+            text.append('~');
+            return;
+        }
+
+        text.append(field.length()).append(':').append(field);
+    }
+
+    /**
+     * FNV-1a step over the chars of a string.
+     *
+     * @param hash
+     * @param text
+     * @return long
+     */
+    private static long hash(long hash, String text)
+    {
+        if(text == null)
+        {
+            return mix(hash ^ 0x9E3779B97F4A7C15L);
+        }
+
+        for (int i = 0; i < text.length(); i++)
+        {
+            hash = (hash ^ text.charAt(i)) * 0x100000001B3L;
+        }
+
+        // Separator, so ("ab", "c") and ("a", "bc") differ
+        return (hash ^ 0xFF) * 0x100000001B3L;
+    }
+
+    /**
+     * 64 bit finalizer (splitmix64).
+     *
+     * @param hash
+     * @return long
+     */
+    private static long mix(long hash)
+    {
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+
+        return hash ^ (hash >>> 31);
+    }
+
     /**
      * Force only-vertex selectable cells.
      * 
@@ -707,8 +1390,8 @@ public class PetriNetGraph extends mxGraph
         
         if(cell instanceof Vertex)
         {
-            tip += " | PRESET: " + String.format("%d", getIncomingEdges(cell).length);
-            tip += " | POSTSET: " + String.format("%d", getOutgoingEdges(cell).length);
+            tip += " | PRESET: " + String.format("%d", getPresetSize((Vertex) cell));
+            tip += " | POSTSET: " + String.format("%d", getPostsetSize((Vertex) cell));
             
             if(cell instanceof PlaceVertex)
             {
@@ -723,24 +1406,65 @@ public class PetriNetGraph extends mxGraph
     /**
      * Export graph to XML String.
      * 
-     * @param exportType
-     * @return 
+     * @return String
+     * @throws XMLStreamException
      */
-    public String exportPNML() throws ParserConfigurationException, TransformerConfigurationException, TransformerException 
+    public String exportPNML() throws XMLStreamException
     {
-        /** <?xml version="1.0" encoding="UTF-8"?> */
-        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-        Element interfaces = doc.createElement(Constants.PNML_INTERFACES);
+        StringWriter output = new StringWriter();
+        exportPNML(output);
 
+        return output.toString();
+    }
+    
+    /**
+     * Export graph to a pnml file.
+     * 
+     * The document is streamed through a buffered writer on the file
+     * channel: memory use does not depend on the graph size.
+     * 
+     * @param file
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    public void exportPNML(File file) throws IOException, XMLStreamException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            Writer output = new BufferedWriter(Channels.newWriter(channel, "UTF-8"), 1 << 16))
+        {
+            exportPNML(output);
+        }
+    }
+    
+    /**
+     * Export graph to a pnml document.
+     * 
+     * @param output
+     * @throws XMLStreamException
+     */
+    public void exportPNML(Writer output) throws XMLStreamException
+    {
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output);
+        int interfacesCount = 0;
+        
+        /** <?xml version="1.0" encoding="UTF-8" standalone="no"?> */
+        try
+        {
+            output.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+        }
+        catch (IOException ex)
+        {
+            throw new XMLStreamException(ex);
+        }
+        
         /** <pnml> */
-        Element pnml = doc.createElement(Constants.PNML_TAG);
-        doc.appendChild(pnml);
+        writer.writeStartElement(Constants.PNML_TAG);
 
-        /**     <net type="http://www.informatik.hu-berlin.de/top/pntd/ptNetb" id="noId"> */
-        Element net = doc.createElement(Constants.PNML_NET);
-        net.setAttribute(Constants.PNML_TYPE, getType());
-        net.setAttribute(Constants.PNML_ID, getId());
-        pnml.appendChild(net);
+        /**     <net id="noId" type="http://www.informatik.hu-berlin.de/top/pntd/ptNetb"> */
+        writer.writeStartElement(Constants.PNML_NET);
+        writer.writeAttribute(Constants.PNML_ID, getId());
+        writer.writeAttribute(Constants.PNML_TYPE, (getType() == null) ? "" : getType());
         
         for (Object cellObj : getChildCells())
         {           
@@ -748,19 +1472,18 @@ public class PetriNetGraph extends mxGraph
             if(cellObj instanceof PlaceVertex)
             {
                 PlaceVertex place = (PlaceVertex) cellObj;
-                net.appendChild(place.exportPNML(doc));
+                place.exportPNML(writer);
             }
             /** <transition id="t1" name="t1"> ... </transition> */
             else if(cellObj instanceof TransitionVertex)
             {
                 TransitionVertex transition = (TransitionVertex) cellObj;
-                net.appendChild(transition.exportPNML(doc));
+                transition.exportPNML(writer);
             }
-            /**  <interface id="i1" name="i1"> ... </interface> */
             else if(cellObj instanceof InterfaceVertex)
             {
                 InterfaceVertex interf = (InterfaceVertex) cellObj;
-                interfaces.appendChild(interf.exportPNML(doc));
+                interfacesCount++;
                 
                 /**
                  * Interfaces are not PNML complaint.
@@ -776,7 +1499,7 @@ public class PetriNetGraph extends mxGraph
                  * See {@link PetriNetGraph#factory}
                  */
                  PlaceVertex mirrorInterf = new PlaceVertex(getDefaultParent(), interf.getId(), interf.getValue(), interf.getGeometry().getX(), interf.getGeometry().getY());
-                 net.appendChild(mirrorInterf.exportPNML(doc));
+                 mirrorInterf.exportPNML(writer);
             }
             /**  <arc id="a17" source="t3" target="p5"> ... </arc> */
             else if(cellObj instanceof mxCell)
@@ -785,7 +1508,7 @@ public class PetriNetGraph extends mxGraph
                 
                 if(cell.isEdge())
                 {
-                    net.appendChild(ArcEdge.exportPNML(doc, cell));
+                    ArcEdge.exportPNML(writer, cell);
                 }
             }
         }
@@ -793,74 +1516,148 @@ public class PetriNetGraph extends mxGraph
         if(indexInterfaces > 0)
         {
             /**     <toolspecific tool="WoLFEd" version="currentVersion">
-            *            <interface id="i1" />
+            *            <interfaces>
+            *                <interface id="i1" />
+            *            </interfaces>
             *       </toolspecific>
             */
-            Element toolSpecific = doc.createElement(Constants.PNML_TOOL_SPECIFIC);
-            toolSpecific.setAttribute(Constants.PNML_TOOL, Constants.EDITOR_NAME);
-            toolSpecific.setAttribute(Constants.PNML_TOOL_VERSION, Constants.EDITOR_VERSION);
-            toolSpecific.appendChild(interfaces);
-            net.appendChild(toolSpecific);
+            writer.writeStartElement(Constants.PNML_TOOL_SPECIFIC);
+            writer.writeAttribute(Constants.PNML_TOOL, Constants.EDITOR_NAME);
+            writer.writeAttribute(Constants.PNML_TOOL_VERSION, Constants.EDITOR_VERSION);
+            
+            if(interfacesCount == 0)
+            {
+                writer.writeEmptyElement(Constants.PNML_INTERFACES);
+            }
+            else
+            {
+                writer.writeStartElement(Constants.PNML_INTERFACES);
+
+                // Second pass: interfaces are written after all the net elements
+                for (Object cellObj : getChildCells())
+                {
+                    if(cellObj instanceof InterfaceVertex)
+                    {
+                        ((InterfaceVertex) cellObj).exportPNML(writer);
+                    }
+                }
+
+                writer.writeEndElement();
+            }
+            
+            writer.writeEndElement();
         }
 
         /**     </net>
         * </pnml> 
         */
-        
-        // Output
-        doc.getDocumentElement().normalize();
-        DOMSource source = new DOMSource(doc);
-        StringWriter sw = new StringWriter();
-        StreamResult result = new StreamResult(sw);
-        Transformer transformer = TransformerFactory.newInstance().newTransformer();
-        transformer.transform(source, result);
-
-        return sw.toString();
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.flush();
     }
     
     /**
      * Export graph to DOT String.
      * 
-     * @return 
+     * @return String
      */
     public String exportDOT() 
     {
         StringBuilder dot = new StringBuilder();
-        dot.append("digraph WoLFEdGraph{\nrankdir=LR;");
+        
+        try
+        {
+            exportDOT(dot);
+        }
+        catch (IOException ex)
+        {
+            // StringBuilder never throws
+            throw new IllegalStateException(ex);
+        }
+        
+        return dot.toString();
+    }
+    
+    /**
+     * Export graph to DOT.
+     * 
+     * Streams each element in the output (a buffered Writer for files).
+     * The ids are sanitized once per vertex in a table, edges look up
+     * their terminals there.
+     * 
+     * @param out
+     * @throws IOException
+     */
+    public void exportDOT(Appendable out) throws IOException
+    {
+        Object[] vertices = getChildVertices();
+        Map<Object, String> dotIds = new HashMap<>(vertices.length * 2);
+        
+        out.append("digraph WoLFEdGraph{\nrankdir=LR;");
      
         // Vertex
-        for (Object cellObj : this.getChildVertices())
+        for (Object cellObj : vertices)
         {
+            String dotId = toDotId(((mxCell) cellObj).getId());
+            dotIds.put(cellObj, dotId);
+            
             if (cellObj instanceof InterfaceVertex)
             {
-                InterfaceVertex interfaceVertex = (InterfaceVertex) cellObj;
-                dot.append(interfaceVertex.exportDOT());
+                ((InterfaceVertex) cellObj).exportDOT(out, dotId);
             }
-            if (cellObj instanceof PlaceVertex)
+            else if (cellObj instanceof PlaceVertex)
             {
-                PlaceVertex placeVertex = (PlaceVertex) cellObj;
-                dot.append(placeVertex.exportDOT());
+                ((PlaceVertex) cellObj).exportDOT(out, dotId);
             }
-            if (cellObj instanceof TransitionVertex)
+            else if (cellObj instanceof TransitionVertex)
             {
-                TransitionVertex transitionVertex = (TransitionVertex) cellObj;
-                dot.append(transitionVertex.exportDOT());
+                ((TransitionVertex) cellObj).exportDOT(out, dotId);
             }
         }
 
         // Edges
-        for (Object edgeObj : this.getChildEdges())
+        for (Object edgeObj : getChildEdges())
         {
             mxCell edge = (mxCell) edgeObj;
             
             if (edge.isEdge())
             {
-                dot.append(ArcEdge.exportDOT(edge));
+                String sourceId = dotIds.get(edge.getSource());
+                String targetId = dotIds.get(edge.getTarget());
+                
+                ArcEdge.exportDOT(out,
+                    (sourceId == null) ? toDotId(edge.getSource().getId()) : sourceId,
+                    (targetId == null) ? toDotId(edge.getTarget().getId()) : targetId
+                );
             }
         }
 
-        dot.append("\n }");
+        out.append("\n }");
+    }
+    
+    /**
+     * Returns a cell id usable in DOT (without '-').
+     * 
+     * @param id
+     * @return String
+     */
+    private static String toDotId(String id)
+    {
+        if(id.indexOf('-') < 0)
+        {
+            return id;
+        }
         
-        return dot.toString();
+        StringBuilder dotId = new StringBuilder(id.length());
+        
+        for (int i = 0; i < id.length(); i++)
+        {
+            if(id.charAt(i) != '-')
+            {
+                dotId.append(id.charAt(i));
+            }
+        }
+        
+        return dotId.toString();
     }
 }
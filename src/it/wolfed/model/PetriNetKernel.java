@@ -0,0 +1,927 @@
+package it.wolfed.model;
+
+import com.mxgraph.model.mxICell;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, immutable snapshot of a {@link PetriNetGraph}.
+ *
+ * Places and transitions are numbered densely (0..n-1) and the flow
+ * relation is stored as CSR (compressed sparse row) int arrays, so the
+ * analyses can run primitive loops instead of walking mxCell objects.
+ *
+ * Interfaces are numbered as places: they hold tokens like places, but
+ * they are ignored by the workflow checks (as in {@link PetriNetGraph}).
+ *
+ * The model has no arc inscriptions: each arc weighs 1 and parallel arcs
+ * between the same place and transition are summed.
+ *
+ * Transition t consumes from the places:
+ *
+ *  prePlace[preStart[t] .. preStart[t + 1] - 1]
+ *
+ * with weights preWeight[same range]. The same layout is used for the
+ * transition postsets and for the place presets\postsets.
+ */
+public class PetriNetKernel
+{
+    /**
+     * Places (and interfaces) by index.
+     */
+    private final Vertex[] places;
+
+    /**
+     * Transitions by index.
+     */
+    private final TransitionVertex[] transitions;
+
+    /**
+     * Names of the places and of the transitions at snapshot time.
+     */
+    private final String[] placeNames;
+    private final String[] transitionNames;
+
+    /**
+     * Index of a vertex in {@link PetriNetKernel#places} or
+     * {@link PetriNetKernel#transitions}.
+     */
+    private final Map<Vertex, Integer> indexes;
+
+    /**
+     * Tokens per place at snapshot time.
+     */
+    private final int[] initialMarking;
+
+    /**
+     * Transitions presets (input places) in CSR.
+     */
+    private final int[] transitionPreStart;
+    private final int[] transitionPrePlace;
+    private final int[] transitionPreWeight;
+
+    /**
+     * Transitions postsets (output places) in CSR.
+     */
+    private final int[] transitionPostStart;
+    private final int[] transitionPostPlace;
+    private final int[] transitionPostWeight;
+
+    /**
+     * Places presets (input transitions) in CSR.
+     */
+    private final int[] placePreStart;
+    private final int[] placePreTransition;
+    private final int[] placePreWeight;
+
+    /**
+     * Places postsets (output transitions) in CSR.
+     */
+    private final int[] placePostStart;
+    private final int[] placePostTransition;
+    private final int[] placePostWeight;
+
+    /**
+     * Number of distinct arcs (parallel arcs counted once).
+     */
+    private final int arcsCount;
+
+    /**
+     * Extra transition of a short-circuited net, -1 otherwise.
+     */
+    private final int shortCircuitTransition;
+
+    /**
+     * Builds the snapshot of a graph.
+     *
+     * Must be called on the thread owning the graph (usually the EDT), the
+     * snapshot can then be shared with any thread.
+     *
+     * @param graph
+     */
+    public PetriNetKernel(PetriNetGraph graph)
+    {
+        List<Vertex> placesFound = new ArrayList<>();
+        List<TransitionVertex> transitionsFound = new ArrayList<>();
+        List<mxICell> edgesFound = new ArrayList<>();
+        indexes = new HashMap<>();
+
+        // Number the vertices, arcs are resolved after all the vertices
+        for (Object cellObj : graph.getChildCells())
+        {
+            if(cellObj instanceof PlaceVertex || cellObj instanceof InterfaceVertex)
+            {
+                indexes.put((Vertex) cellObj, placesFound.size());
+                placesFound.add((Vertex) cellObj);
+            }
+            else if(cellObj instanceof TransitionVertex)
+            {
+                indexes.put((Vertex) cellObj, transitionsFound.size());
+                transitionsFound.add((TransitionVertex) cellObj);
+            }
+            else if(cellObj instanceof mxICell && ((mxICell) cellObj).isEdge())
+            {
+                edgesFound.add((mxICell) cellObj);
+            }
+        }
+
+        places = placesFound.toArray(new Vertex[placesFound.size()]);
+        transitions = transitionsFound.toArray(new TransitionVertex[transitionsFound.size()]);
+
+        initialMarking = new int[places.length];
+        placeNames = new String[places.length];
+        transitionNames = new String[transitions.length];
+
+        for (int t = 0; t < transitions.length; t++)
+        {
+            transitionNames[t] = String.valueOf(transitions[t].getValue());
+        }
+
+        for (int p = 0; p < places.length; p++)
+        {
+            placeNames[p] = String.valueOf(places[p].getValue());
+
+            if(places[p] instanceof PlaceVertex)
+            {
+                initialMarking[p] = ((PlaceVertex) places[p]).getTokens();
+            }
+        }
+
+        // Split arcs in place -> transition (input) and transition -> place (output)
+        int[] inputPlace = new int[edgesFound.size()];
+        int[] inputTransition = new int[edgesFound.size()];
+        int[] outputPlace = new int[edgesFound.size()];
+        int[] outputTransition = new int[edgesFound.size()];
+        int inputs = 0, outputs = 0;
+
+        for (mxICell edge : edgesFound)
+        {
+            Object source = edge.getTerminal(true);
+            Object target = edge.getTerminal(false);
+
+            if(target instanceof TransitionVertex && isPlace(source))
+            {
+                inputPlace[inputs] = indexes.get((Vertex) source);
+                inputTransition[inputs++] = indexes.get((Vertex) target);
+            }
+            else if(source instanceof TransitionVertex && isPlace(target))
+            {
+                outputPlace[outputs] = indexes.get((Vertex) target);
+                outputTransition[outputs++] = indexes.get((Vertex) source);
+            }
+        }
+
+        int[][][] flow = compressFlow(places.length, transitions.length,
+            inputPlace, inputTransition, inputs, outputPlace, outputTransition, outputs);
+
+        transitionPreStart = flow[0][0];
+        transitionPrePlace = flow[0][1];
+        transitionPreWeight = flow[0][2];
+        transitionPostStart = flow[1][0];
+        transitionPostPlace = flow[1][1];
+        transitionPostWeight = flow[1][2];
+        placePreStart = flow[2][0];
+        placePreTransition = flow[2][1];
+        placePreWeight = flow[2][2];
+        placePostStart = flow[3][0];
+        placePostTransition = flow[3][1];
+        placePostWeight = flow[3][2];
+
+        arcsCount = transitionPrePlace.length + transitionPostPlace.length;
+        shortCircuitTransition = -1;
+    }
+
+    /**
+     * Builds the short-circuited copy of a net.
+     *
+     * @see PetriNetKernel#shortCircuit()
+     * @param net
+     * @param initialPlace
+     * @param finalPlace
+     */
+    private PetriNetKernel(PetriNetKernel net, int initialPlace, int finalPlace)
+    {
+        places = net.places;
+        indexes = net.indexes;
+        transitions = Arrays.copyOf(net.transitions, net.transitions.length + 1);
+        shortCircuitTransition = net.transitions.length;
+        placeNames = net.placeNames;
+        transitionNames = Arrays.copyOf(net.transitionNames, net.transitionNames.length + 1);
+        transitionNames[shortCircuitTransition] = "t*";
+
+        initialMarking = net.initialMarking.clone();
+        initialMarking[initialPlace] = 1;
+
+        // Expand the weighted arcs back to pairs, plus final -> t* -> initial
+        int inputs = 0, outputs = 0;
+
+        for (int weight : net.transitionPreWeight)
+        {
+            inputs += weight;
+        }
+
+        for (int weight : net.transitionPostWeight)
+        {
+            outputs += weight;
+        }
+
+        int[] inputPlace = new int[inputs + 1];
+        int[] inputTransition = new int[inputs + 1];
+        int[] outputPlace = new int[outputs + 1];
+        int[] outputTransition = new int[outputs + 1];
+        inputs = 0;
+        outputs = 0;
+
+        for (int t = 0; t < net.transitions.length; t++)
+        {
+            for (int i = net.transitionPreStart[t]; i < net.transitionPreStart[t + 1]; i++)
+            {
+                for (int w = 0; w < net.transitionPreWeight[i]; w++)
+                {
+                    inputPlace[inputs] = net.transitionPrePlace[i];
+                    inputTransition[inputs++] = t;
+                }
+            }
+
+            for (int i = net.transitionPostStart[t]; i < net.transitionPostStart[t + 1]; i++)
+            {
+                for (int w = 0; w < net.transitionPostWeight[i]; w++)
+                {
+                    outputPlace[outputs] = net.transitionPostPlace[i];
+                    outputTransition[outputs++] = t;
+                }
+            }
+        }
+
+        inputPlace[inputs] = finalPlace;
+        inputTransition[inputs++] = shortCircuitTransition;
+        outputPlace[outputs] = initialPlace;
+        outputTransition[outputs++] = shortCircuitTransition;
+
+        int[][][] flow = compressFlow(places.length, transitions.length,
+            inputPlace, inputTransition, inputs, outputPlace, outputTransition, outputs);
+
+        transitionPreStart = flow[0][0];
+        transitionPrePlace = flow[0][1];
+        transitionPreWeight = flow[0][2];
+        transitionPostStart = flow[1][0];
+        transitionPostPlace = flow[1][1];
+        transitionPostWeight = flow[1][2];
+        placePreStart = flow[2][0];
+        placePreTransition = flow[2][1];
+        placePreWeight = flow[2][2];
+        placePostStart = flow[3][0];
+        placePostTransition = flow[3][1];
+        placePostWeight = flow[3][2];
+
+        arcsCount = transitionPrePlace.length + transitionPostPlace.length;
+    }
+
+    /**
+     * Returns the short-circuited net used by the soundness analysis: a
+     * copy with an extra transition t* from the final place back to the
+     * initial place. The marking is the one of the net with exactly one
+     * token in the initial place (other tokens are resources, such as the
+     * mutex place).
+     *
+     * t* is the last transition, {@link PetriNetKernel#getTransition(int)}
+     * returns null for it.
+     *
+     * @return PetriNetKernel
+     * @throws IllegalStateException if the net has not a single initial
+     *         and a single final place
+     */
+    public PetriNetKernel shortCircuit()
+    {
+        int[] initial = getInitialPlaces();
+        int[] fin = getFinalPlaces();
+
+        if(initial.length != 1 || fin.length != 1)
+        {
+            throw new IllegalStateException("The net has not a single initial and a single final place.");
+        }
+
+        return new PetriNetKernel(this, initial[0], fin[0]);
+    }
+
+    /**
+     * Returns the extra transition of a short-circuited net, -1 otherwise.
+     *
+     * @return int
+     */
+    public int getShortCircuitTransition()
+    {
+        return shortCircuitTransition;
+    }
+
+    /**
+     * Returns if a cell can be numbered as a place.
+     *
+     * @param cell
+     * @return boolean
+     */
+    private boolean isPlace(Object cell)
+    {
+        return (cell instanceof PlaceVertex || cell instanceof InterfaceVertex)
+            && indexes.containsKey((Vertex) cell);
+    }
+
+    /**
+     * Builds the four CSR views of the flow relation.
+     *
+     * @param placesCount
+     * @param transitionsCount
+     * @param inputPlace        place -> transition arcs
+     * @param inputTransition
+     * @param inputs
+     * @param outputPlace       transition -> place arcs
+     * @param outputTransition
+     * @param outputs
+     * @return {transition presets, transition postsets, place presets, place postsets}
+     */
+    private static int[][][] compressFlow(int placesCount, int transitionsCount,
+        int[] inputPlace, int[] inputTransition, int inputs,
+        int[] outputPlace, int[] outputTransition, int outputs)
+    {
+        return new int[][][] {
+            compress(transitionsCount, placesCount, inputTransition, inputPlace, inputs),
+            compress(transitionsCount, placesCount, outputTransition, outputPlace, outputs),
+            compress(placesCount, transitionsCount, outputPlace, outputTransition, outputs),
+            compress(placesCount, transitionsCount, inputPlace, inputTransition, inputs)
+        };
+    }
+
+    /**
+     * Builds a CSR matrix from a list of (row, column) pairs.
+     *
+     * Counting sort by row, then duplicated columns in a row are merged
+     * summing their weight. O(rows + columns + pairs).
+     *
+     * @param rowsCount
+     * @param columnsCount
+     * @param rows
+     * @param columns
+     * @param size          number of valid pairs
+     * @return {start, column, weight}
+     */
+    private static int[][] compress(int rowsCount, int columnsCount, int[] rows, int[] columns, int size)
+    {
+        int[] start = new int[rowsCount + 1];
+
+        for (int i = 0; i < size; i++)
+        {
+            start[rows[i] + 1]++;
+        }
+
+        for (int r = 0; r < rowsCount; r++)
+        {
+            start[r + 1] += start[r];
+        }
+
+        int[] next = Arrays.copyOf(start, rowsCount);
+        int[] sorted = new int[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            sorted[next[rows[i]]++] = columns[i];
+        }
+
+        // Merge duplicates: position of a column in the current row
+        int[] seen = new int[columnsCount];
+        Arrays.fill(seen, -1);
+
+        int[] column = new int[size];
+        int[] weight = new int[size];
+        int[] compressedStart = new int[rowsCount + 1];
+        int count = 0;
+
+        for (int r = 0; r < rowsCount; r++)
+        {
+            compressedStart[r] = count;
+
+            for (int i = start[r]; i < start[r + 1]; i++)
+            {
+                int c = sorted[i];
+
+                if(seen[c] >= compressedStart[r])
+                {
+                    weight[seen[c]]++;
+                }
+                else
+                {
+                    seen[c] = count;
+                    column[count] = c;
+                    weight[count++] = 1;
+                }
+            }
+        }
+
+        compressedStart[rowsCount] = count;
+
+        return new int[][] {
+            compressedStart,
+            Arrays.copyOf(column, count),
+            Arrays.copyOf(weight, count)
+        };
+    }
+
+    /**
+     * Returns the number of places (interfaces included).
+     *
+     * @return int
+     */
+    public int getPlacesCount()
+    {
+        return places.length;
+    }
+
+    /**
+     * Returns the number of transitions.
+     *
+     * @return int
+     */
+    public int getTransitionsCount()
+    {
+        return transitions.length;
+    }
+
+    /**
+     * Returns the number of distinct arcs.
+     *
+     * @return int
+     */
+    public int getArcsCount()
+    {
+        return arcsCount;
+    }
+
+    /**
+     * Returns the place (or interface) vertex at an index.
+     *
+     * @param p
+     * @return Vertex
+     */
+    public Vertex getPlace(int p)
+    {
+        return places[p];
+    }
+
+    /**
+     * Returns the transition vertex at an index (null for the short-circuit).
+     *
+     * @param t
+     * @return TransitionVertex
+     */
+    public TransitionVertex getTransition(int t)
+    {
+        return transitions[t];
+    }
+
+    /**
+     * Returns the name of the place at an index, as it was at snapshot
+     * time (safe off the thread owning the graph).
+     *
+     * @param p
+     * @return String
+     */
+    public String getPlaceName(int p)
+    {
+        return placeNames[p];
+    }
+
+    /**
+     * Returns the name of the transition at an index, as it was at
+     * snapshot time ("t*" for the short-circuit).
+     *
+     * @param t
+     * @return String
+     */
+    public String getTransitionName(int t)
+    {
+        return transitionNames[t];
+    }
+
+    /**
+     * Returns the index of a place or transition, -1 if not in the snapshot.
+     *
+     * @param vertex
+     * @return int
+     */
+    public int indexOf(Vertex vertex)
+    {
+        Integer index = indexes.get(vertex);
+
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * Returns if the place at an index is an interface.
+     *
+     * @param p
+     * @return boolean
+     */
+    public boolean isInterface(int p)
+    {
+        return places[p] instanceof InterfaceVertex;
+    }
+
+    /**
+     * Returns a copy of the tokens per place at snapshot time.
+     *
+     * @return int[]
+     */
+    public int[] getInitialMarking()
+    {
+        return initialMarking.clone();
+    }
+
+    /**
+     * First position of the preset of transition t.
+     *
+     * @param t
+     * @return int
+     */
+    public int transitionPresetStart(int t)
+    {
+        return transitionPreStart[t];
+    }
+
+    /**
+     * Position after the last of the preset of transition t.
+     *
+     * @param t
+     * @return int
+     */
+    public int transitionPresetEnd(int t)
+    {
+        return transitionPreStart[t + 1];
+    }
+
+    /**
+     * Input place at a preset position.
+     *
+     * @param i
+     * @return int
+     */
+    public int transitionPresetPlace(int i)
+    {
+        return transitionPrePlace[i];
+    }
+
+    /**
+     * Arc weight at a preset position.
+     *
+     * @param i
+     * @return int
+     */
+    public int transitionPresetWeight(int i)
+    {
+        return transitionPreWeight[i];
+    }
+
+    /**
+     * First position of the postset of transition t.
+     *
+     * @param t
+     * @return int
+     */
+    public int transitionPostsetStart(int t)
+    {
+        return transitionPostStart[t];
+    }
+
+    /**
+     * Position after the last of the postset of transition t.
+     *
+     * @param t
+     * @return int
+     */
+    public int transitionPostsetEnd(int t)
+    {
+        return transitionPostStart[t + 1];
+    }
+
+    /**
+     * Output place at a postset position.
+     *
+     * @param i
+     * @return int
+     */
+    public int transitionPostsetPlace(int i)
+    {
+        return transitionPostPlace[i];
+    }
+
+    /**
+     * Arc weight at a postset position.
+     *
+     * @param i
+     * @return int
+     */
+    public int transitionPostsetWeight(int i)
+    {
+        return transitionPostWeight[i];
+    }
+
+    /**
+     * First position of the preset of place p.
+     *
+     * @param p
+     * @return int
+     */
+    public int placePresetStart(int p)
+    {
+        return placePreStart[p];
+    }
+
+    /**
+     * Position after the last of the preset of place p.
+     *
+     * @param p
+     * @return int
+     */
+    public int placePresetEnd(int p)
+    {
+        return placePreStart[p + 1];
+    }
+
+    /**
+     * Input transition at a place preset position.
+     *
+     * @param i
+     * @return int
+     */
+    public int placePresetTransition(int i)
+    {
+        return placePreTransition[i];
+    }
+
+    /**
+     * Arc weight at a place preset position.
+     *
+     * @param i
+     * @return int
+     */
+    public int placePresetWeight(int i)
+    {
+        return placePreWeight[i];
+    }
+
+    /**
+     * First position of the postset of place p.
+     *
+     * @param p
+     * @return int
+     */
+    public int placePostsetStart(int p)
+    {
+        return placePostStart[p];
+    }
+
+    /**
+     * Position after the last of the postset of place p.
+     *
+     * @param p
+     * @return int
+     */
+    public int placePostsetEnd(int p)
+    {
+        return placePostStart[p + 1];
+    }
+
+    /**
+     * Output transition at a place postset position.
+     *
+     * @param i
+     * @return int
+     */
+    public int placePostsetTransition(int i)
+    {
+        return placePostTransition[i];
+    }
+
+    /**
+     * Arc weight at a place postset position.
+     *
+     * @param i
+     * @return int
+     */
+    public int placePostsetWeight(int i)
+    {
+        return placePostWeight[i];
+    }
+
+    /**
+     * Returns if transition t is enabled in a marking.
+     *
+     * @param t
+     * @param marking
+     * @return boolean
+     */
+    public boolean isEnabled(int t, int[] marking)
+    {
+        for (int i = transitionPreStart[t]; i < transitionPreStart[t + 1]; i++)
+        {
+            if(marking[transitionPrePlace[i]] < transitionPreWeight[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Fires transition t, updating the marking in place.
+     *
+     * The transition must be enabled.
+     *
+     * @param t
+     * @param marking
+     */
+    public void fire(int t, int[] marking)
+    {
+        for (int i = transitionPreStart[t]; i < transitionPreStart[t + 1]; i++)
+        {
+            marking[transitionPrePlace[i]] -= transitionPreWeight[i];
+        }
+
+        for (int i = transitionPostStart[t]; i < transitionPostStart[t + 1]; i++)
+        {
+            marking[transitionPostPlace[i]] += transitionPostWeight[i];
+        }
+    }
+
+    /**
+     * Returns the initial places (not interfaces): #preset 0, #postset > 0.
+     *
+     * @return int[]
+     */
+    public int[] getInitialPlaces()
+    {
+        int[] found = new int[places.length];
+        int count = 0;
+
+        for (int p = 0; p < places.length; p++)
+        {
+            if(isInterface(p) == false
+                && placePreStart[p + 1] == placePreStart[p]
+                && placePostStart[p + 1] > placePostStart[p])
+            {
+                found[count++] = p;
+            }
+        }
+
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Returns the final places (not interfaces): #preset > 0, #postset 0.
+     *
+     * @return int[]
+     */
+    public int[] getFinalPlaces()
+    {
+        int[] found = new int[places.length];
+        int count = 0;
+
+        for (int p = 0; p < places.length; p++)
+        {
+            if(isInterface(p) == false
+                && placePostStart[p + 1] == placePostStart[p]
+                && placePreStart[p + 1] > placePreStart[p])
+            {
+                found[count++] = p;
+            }
+        }
+
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Returns if the net has only an initial place.
+     *
+     * @return boolean
+     */
+    public boolean isSingleInitialPlace()
+    {
+        return getInitialPlaces().length == 1;
+    }
+
+    /**
+     * Returns if the net has only a final place.
+     *
+     * @return boolean
+     */
+    public boolean isSingleFinalPlace()
+    {
+        return getFinalPlaces().length == 1;
+    }
+
+    /**
+     * Returns if each place and transition is on a path from the initial
+     * to the final place.
+     *
+     * Same semantic of {@link PetriNetGraph#isWorkflowStronglyConnected()}.
+     *
+     * @return boolean
+     */
+    public boolean isWorkflowStronglyConnected()
+    {
+        int[] initial = getInitialPlaces();
+        int[] fin = getFinalPlaces();
+
+        if(initial.length != 1 || fin.length != 1)
+        {
+            return false;
+        }
+
+        boolean[] reachable = visit(initial[0], true);
+        boolean[] connected = visit(fin[0], false);
+
+        for (int t = 0; t < transitions.length; t++)
+        {
+            // Case with a Transition "Initial" (only postset arc)
+            if(transitionPreStart[t + 1] == transitionPreStart[t]
+                || reachable[places.length + t] == false
+                || connected[places.length + t] == false)
+            {
+                return false;
+            }
+        }
+
+        for (int p = 0; p < places.length; p++)
+        {
+            if(isInterface(p) == false && (reachable[p] == false || connected[p] == false))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Visits the net from a place following the arcs direction (forward)
+     * or against it (backward).
+     *
+     * Nodes are numbered places first: p, then transitions: places + t.
+     *
+     * @param place
+     * @param forward
+     * @return visited nodes
+     */
+    public boolean[] visit(int place, boolean forward)
+    {
+        int[] placeStart = forward ? placePostStart : placePreStart;
+        int[] placeNext = forward ? placePostTransition : placePreTransition;
+        int[] transitionStart = forward ? transitionPostStart : transitionPreStart;
+        int[] transitionNext = forward ? transitionPostPlace : transitionPrePlace;
+
+        boolean[] visited = new boolean[places.length + transitions.length];
+        int[] stack = new int[places.length + transitions.length];
+        int size = 0;
+
+        visited[place] = true;
+        stack[size++] = place;
+
+        while(size > 0)
+        {
+            int node = stack[--size];
+
+            if(node < places.length)
+            {
+                for (int i = placeStart[node]; i < placeStart[node + 1]; i++)
+                {
+                    int next = places.length + placeNext[i];
+
+                    if(visited[next] == false)
+                    {
+                        visited[next] = true;
+                        stack[size++] = next;
+                    }
+                }
+            }
+            else
+            {
+                int t = node - places.length;
+
+                for (int i = transitionStart[t]; i < transitionStart[t + 1]; i++)
+                {
+                    int next = transitionNext[i];
+
+                    if(visited[next] == false)
+                    {
+                        visited[next] = true;
+                        stack[size++] = next;
+                    }
+                }
+            }
+        }
+
+        return visited;
+    }
+}
@@ -2,11 +2,11 @@
 package it.wolfed.model;
 
 import it.wolfed.util.Constants;
-import it.wolfed.util.IterableNodeList;
-import javax.xml.parsers.ParserConfigurationException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import it.wolfed.util.XMLStreamUtils;
+import java.io.IOException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * Place.
@@ -41,7 +41,7 @@ public class PlaceVertex extends Vertex
     }
     
     /**
-     * Generate a new {@link PlaceVertex} from a pnml valid dom node.
+     * Generate a new {@link PlaceVertex} from a pnml place element.
      * 
      * <place id="p2"> 
      * 	<name> 
@@ -59,67 +59,69 @@ public class PlaceVertex extends Vertex
      * 	</initialMarking> 
      * </place>
      * 
+     * The reader must be on the place START_ELEMENT and is left on its
+     * END_ELEMENT.
+     * 
      * @param parent
-     * @param dom
+     * @param reader
      * @return  PlaceVertex
+     * @throws XMLStreamException
      * @see <a href="http://www.pnml.org/">http://www.pnml.org/</a>
      */  
-    public static PlaceVertex factory(Object parent, Node dom)
+    public static PlaceVertex factory(Object parent, XMLStreamReader reader) throws XMLStreamException
     {
         String id, value = "";
         int tokens = 0;
         double x = 0, y = 0;
         
-        id = dom.getAttributes().getNamedItem(Constants.PNML_ID).getNodeValue();
+        id = reader.getAttributeValue(null, Constants.PNML_ID);
 
-        for (final Node childNode : new IterableNodeList(dom.getChildNodes()))
+        while (XMLStreamUtils.nextChild(reader))
         {
-            if (childNode.getNodeType() == Node.ELEMENT_NODE)
+            switch (reader.getLocalName())
             {
-                switch (childNode.getNodeName())
+                // @note pnml "name" will be mapped to "value" property
+                case Constants.PNML_NAME:
                 {
-                    // @note pnml "name" will be mapped to "value" property
-                    case Constants.PNML_NAME:
-                    {
-                        value = childNode.getTextContent().trim();
-                        break;
-                    }
-                        
-                    // @note pnml "initialmarking" will be mapped to "tokens" property
-                    case Constants.PNML_INITIALMARKING:
+                    value = XMLStreamUtils.getTextContent(reader).trim();
+                    break;
+                }
+
+                // @note pnml "initialmarking" will be mapped to "tokens" property
+                case Constants.PNML_INITIALMARKING:
+                {
+                    tokens = Integer.parseInt(XMLStreamUtils.getTextContent(reader).trim());
+                    break;
+                }
+
+                /** 
+                * Set the geometric aspect of the Vertex
+                * 
+                *  <graphics> 
+                *       <position x="200" y="70"/>
+                * 	    <dimension x="40" y="40"/> 
+                * 	</graphics> 
+                */
+                case Constants.PNML_GRAPHICS:
+                { 
+                    while (XMLStreamUtils.nextChild(reader))
                     {
-                        tokens = Integer.parseInt(childNode.getTextContent().trim());
-                        break;
-                    }
-                    
-                    /** 
-                    * Set the geometric aspect of the Vertex
-                    * 
-                    *  <graphics> 
-                    *       <position x="200" y="70"/>
-                    * 	    <dimension x="40" y="40"/> 
-                    * 	</graphics> 
-                    */
-                    case Constants.PNML_GRAPHICS:
-                    { 
-                        for (final Node graphNode : new IterableNodeList(childNode.getChildNodes()))
+                        if (reader.getLocalName().equals(Constants.PNML_GRAPHICS_POSITION))
                         {
-                            if (graphNode.getNodeType() == Node.ELEMENT_NODE)
-                            {
-                                switch(graphNode.getNodeName())
-                                {
-                                    case Constants.PNML_GRAPHICS_POSITION :
-                                    {
-                                        x = Double.valueOf(graphNode.getAttributes().getNamedItem(Constants.PNML_GRAPHICS_POSITION_X).getNodeValue());
-                                        y = Double.valueOf(graphNode.getAttributes().getNamedItem(Constants.PNML_GRAPHICS_POSITION_Y).getNodeValue());
-                                        break;
-                                    }
-                                }
-                            }
+                            x = Double.valueOf(reader.getAttributeValue(null, Constants.PNML_GRAPHICS_POSITION_X));
+                            y = Double.valueOf(reader.getAttributeValue(null, Constants.PNML_GRAPHICS_POSITION_Y));
                         }
-                        
-                        break;
+
+                        XMLStreamUtils.skipElement(reader);
                     }
+
+                    break;
+                }
+
+                default:
+                {
+                    XMLStreamUtils.skipElement(reader);
+                    break;
                 }
             }
         }
@@ -149,99 +151,86 @@ public class PlaceVertex extends Vertex
         return tokens;
     }
 
-    public Element exportPNML(Document doc) throws ParserConfigurationException 
+    /**
+     * Export PNML Place.
+     * 
+     * @param writer
+     * @throws XMLStreamException
+     */
+    public void exportPNML(XMLStreamWriter writer) throws XMLStreamException
     {
         /** <place id="p6"> */
-        Element place = doc.createElement(Constants.PNML_PLACE);
-	place.setAttribute(Constants.PNML_ID, getId());
+        writer.writeStartElement(Constants.PNML_PLACE);
+        writer.writeAttribute(Constants.PNML_ID, getId());
 
-        /**     <name> */
-        Element name = doc.createElement(Constants.PNML_NAME);
-        place.appendChild(name);
-
-        /**         <text>p6</text> */
-        Element text = doc.createElement(Constants.PNML_TEXT);
-	text.setTextContent(getValue().toString());
-        name.appendChild(text);
+        /**     <name>
+         *          <text>p6</text>
+         *      </name>
+         */
+        writer.writeStartElement(Constants.PNML_NAME);
+        XMLStreamUtils.writeTextElement(writer, Constants.PNML_TEXT, getValue().toString());
+        writer.writeEndElement();
        
-	 /**    
+        /**    
          *     Ignored:
          *     <graphics>
-	 *          <offset x="650" y="110"/>
-	 *        </graphics>
-         *
-	 *      </name>
+         *          <offset x="650" y="110"/>
+         *     </graphics>
          */
         
         /**     <graphics>
          *          <position x="650" y="70"/>
-	 *          <dimension x="40" y="40"/>
+         *      </graphics>
          */
-        Element graphics = doc.createElement(Constants.PNML_GRAPHICS);
-        Element position = doc.createElement(Constants.PNML_GRAPHICS_POSITION);
-        position.setAttribute(Constants.PNML_GRAPHICS_POSITION_X, String.valueOf(getGeometry().getX()));
-        position.setAttribute(Constants.PNML_GRAPHICS_POSITION_Y, String.valueOf(getGeometry().getY()));
-	graphics.appendChild(position);
-        place.appendChild(graphics);
+        writer.writeStartElement(Constants.PNML_GRAPHICS);
+        writer.writeEmptyElement(Constants.PNML_GRAPHICS_POSITION);
+        writer.writeAttribute(Constants.PNML_GRAPHICS_POSITION_X, String.valueOf(getGeometry().getX()));
+        writer.writeAttribute(Constants.PNML_GRAPHICS_POSITION_Y, String.valueOf(getGeometry().getY()));
+        writer.writeEndElement();
         
         if(tokens > 0)
         {
-            /**     <initialMarking> */
-            Element initialMarking = doc.createElement(Constants.PNML_INITIALMARKING);
-            
-            /**         <text>2</text> */
-            Element initialMarkingText = doc.createElement(Constants.PNML_TEXT);
-            initialMarkingText.setTextContent(String.valueOf(getTokens()));
-            initialMarking.appendChild(initialMarkingText);
-
-            /**    </initialMarking>*/
-            place.appendChild(initialMarking);
-	}
+            /**     <initialMarking>
+             *          <text>2</text>
+             *      </initialMarking>
+             */
+            writer.writeStartElement(Constants.PNML_INITIALMARKING);
+            XMLStreamUtils.writeTextElement(writer, Constants.PNML_TEXT, String.valueOf(getTokens()));
+            writer.writeEndElement();
+        }
         
         /**  </place>  */
-        return place;
+        writer.writeEndElement();
     }
     
     /**
      * Export DOT Place.
      * 
-     * @return 
+     * @param out
+     * @param dotId     sanitized id
+     * @throws IOException
      */
-    public String exportDOT()
+    public void exportDOT(Appendable out, String dotId) throws IOException
     {
-
-        String shape;
-        
-        StringBuilder dotBuilder = new StringBuilder();
-        dotBuilder
-                .append("\n")
-                .append(this.getId().replaceAll("-", ""))
-                .append(" [label=\"")
-                .append(getValue().toString())
-                .append("\", shape=\"");
+        out.append("\n")
+           .append(dotId)
+           .append(" [label=\"")
+           .append(getValue().toString())
+           .append("\", shape=\"");
 
         switch (getStyle())
         {
-            case Constants.STYLE_PLACE_VALID:
-            {
-                shape = "circle\", color=\"green\" ];";
-                break;
-            }
-                
             case Constants.STYLE_PLACE_SPECIAL_VALID:
             {
-                shape = "doublecircle\", color=\"green\" ];";
+                out.append("doublecircle\", color=\"green\" ];");
                 break;
             }
                 
             default:
             {
-                shape = "circle\", color=\"green\" ];";
+                out.append("circle\", color=\"green\" ];");
                 break;
             }
         }
-
-        dotBuilder.append(shape);
-        return dotBuilder.toString();
     }
 }
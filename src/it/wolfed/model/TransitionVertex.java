@@ -2,11 +2,11 @@
 package it.wolfed.model;
 
 import it.wolfed.util.Constants;
-import it.wolfed.util.IterableNodeList;
-import javax.xml.parsers.ParserConfigurationException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import it.wolfed.util.XMLStreamUtils;
+import java.io.IOException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * Transition.
@@ -34,7 +34,7 @@ public class TransitionVertex extends Vertex
     }
     
     /**
-     * Generate a new {@link TransitionVertex} from a pnml valid dom node.
+     * Generate a new {@link TransitionVertex} from a pnml transition element.
      * 
      * <transition id="t1"> 
      * 	<name> 
@@ -54,59 +54,61 @@ public class TransitionVertex extends Vertex
      * 	</toolspecific> 
      * </transition>
      *
+     * The reader must be on the transition START_ELEMENT and is left on
+     * its END_ELEMENT.
+     *
      * @param parent
-     * @param dom
+     * @param reader
      * @return TransitionVertex
+     * @throws XMLStreamException
      * @see <a href="http://www.pnml.org/">http://www.pnml.org/</a>
      */
-    public static TransitionVertex factory(Object parent, Node dom)
+    public static TransitionVertex factory(Object parent, XMLStreamReader reader) throws XMLStreamException
     {
         String id, value = "";
         double x = 0, y = 0;
         
-        id = dom.getAttributes().getNamedItem(Constants.PNML_ID).getNodeValue();
+        id = reader.getAttributeValue(null, Constants.PNML_ID);
 
-        for (final Node childNode : new IterableNodeList(dom.getChildNodes()))
+        while (XMLStreamUtils.nextChild(reader))
         {
-            if (childNode.getNodeType() == Node.ELEMENT_NODE)
+            switch (reader.getLocalName())
             {
-                switch (childNode.getNodeName())
+                // @note pnml "name" will be mapped to "value" property
+                case Constants.PNML_NAME:
                 {
-                    // @note pnml "name" will be mapped to "value" property
-                    case Constants.PNML_NAME:
-                    {
-                        value = childNode.getTextContent().trim();
-                        break;
-                    }
-                        
-                    /** 
-                    * Set the geometric aspect of the Vertex
-                    * 
-                    *  <graphics> 
-                    *       <position x="200" y="70"/>
-                    * 	    <dimension x="40" y="40"/> 
-                    * 	</graphics> 
-                    */
-                    case Constants.PNML_GRAPHICS:
+                    value = XMLStreamUtils.getTextContent(reader).trim();
+                    break;
+                }
+
+                /** 
+                * Set the geometric aspect of the Vertex
+                * 
+                *  <graphics> 
+                *       <position x="200" y="70"/>
+                * 	    <dimension x="40" y="40"/> 
+                * 	</graphics> 
+                */
+                case Constants.PNML_GRAPHICS:
+                {
+                    while (XMLStreamUtils.nextChild(reader))
                     {
-                        for (final Node graphNode : new IterableNodeList(childNode.getChildNodes()))
+                        if (reader.getLocalName().equals(Constants.PNML_GRAPHICS_POSITION))
                         {
-                            if (graphNode.getNodeType() == Node.ELEMENT_NODE)
-                            {
-                                switch(graphNode.getNodeName())
-                                {
-                                    case Constants.PNML_GRAPHICS_POSITION :
-                                    {
-                                        x = Double.valueOf(graphNode.getAttributes().getNamedItem(Constants.PNML_GRAPHICS_POSITION_X).getNodeValue());
-                                        y = Double.valueOf(graphNode.getAttributes().getNamedItem(Constants.PNML_GRAPHICS_POSITION_Y).getNodeValue());
-                                        break;
-                                    }
-                                }
-                            }
+                            x = Double.valueOf(reader.getAttributeValue(null, Constants.PNML_GRAPHICS_POSITION_X));
+                            y = Double.valueOf(reader.getAttributeValue(null, Constants.PNML_GRAPHICS_POSITION_Y));
                         }
-                        
-                        break;
-                    } 
+
+                        XMLStreamUtils.skipElement(reader);
+                    }
+
+                    break;
+                }
+
+                default:
+                {
+                    XMLStreamUtils.skipElement(reader);
+                    break;
                 }
             }
         }
@@ -117,53 +119,54 @@ public class TransitionVertex extends Vertex
     /**
      * Export PNML Transition.
      * 
-     * @return 
+     * @param writer
+     * @throws XMLStreamException
      */
-    public Element exportPNML(Document doc ) throws ParserConfigurationException 
+    public void exportPNML(XMLStreamWriter writer) throws XMLStreamException
     {
         /** <transition id="t3"> */
-	Element transition = doc.createElement(Constants.PNML_TRANSITION);
-	transition.setAttribute(Constants.PNML_ID, getId());
+        writer.writeStartElement(Constants.PNML_TRANSITION);
+        writer.writeAttribute(Constants.PNML_ID, getId());
 
-        /**    <name> */
-	Element name = doc.createElement(Constants.PNML_NAME);
-        transition.appendChild(name);
-
-        /**         <text>p6</text> */
-	Element text = doc.createElement(Constants.PNML_TEXT);
-	text.setTextContent(getValue().toString());
-        name.appendChild(text);
+        /**    <name>
+         *          <text>t3</text>
+         *     </name>
+         */
+        writer.writeStartElement(Constants.PNML_NAME);
+        XMLStreamUtils.writeTextElement(writer, Constants.PNML_TEXT, getValue().toString());
+        writer.writeEndElement();
        
-	 /**
-	 *              <graphics>
-	 *                  <position x="275" y="140"/>
-	 *                  <dimension x="40" y="40"/>
-	 *              </graphics>
-	 *              <toolspecific tool="WoPeD" version="1.0">
-	 *                  <time>0</time>
-	 *                  <timeUnit>1</timeUnit>
-	 *                  <orientation>1</orientation>
-	 *              </toolspecific>
-	 */
-        Element graphics = doc.createElement(Constants.PNML_GRAPHICS);
-        Element position = doc.createElement(Constants.PNML_GRAPHICS_POSITION);
-        position.setAttribute(Constants.PNML_GRAPHICS_POSITION_X, String.valueOf(getGeometry().getX()));
-        position.setAttribute(Constants.PNML_GRAPHICS_POSITION_Y, String.valueOf(getGeometry().getY()));
-	graphics.appendChild(position);
-        
-        transition.appendChild(graphics);
+        /**
+         *              <graphics>
+         *                  <position x="275" y="140"/>
+         *              </graphics>
+         * 
+         *     Ignored:
+         *              <toolspecific tool="WoPeD" version="1.0">
+         *                  <time>0</time>
+         *                  <timeUnit>1</timeUnit>
+         *                  <orientation>1</orientation>
+         *              </toolspecific>
+         */
+        writer.writeStartElement(Constants.PNML_GRAPHICS);
+        writer.writeEmptyElement(Constants.PNML_GRAPHICS_POSITION);
+        writer.writeAttribute(Constants.PNML_GRAPHICS_POSITION_X, String.valueOf(getGeometry().getX()));
+        writer.writeAttribute(Constants.PNML_GRAPHICS_POSITION_Y, String.valueOf(getGeometry().getY()));
+        writer.writeEndElement();
         
         /**  </transition>  */
-        return transition;
+        writer.writeEndElement();
     }
     
     /**
      * Export DOT Transition.
      * 
-     * @return 
+     * @param out
+     * @param dotId     sanitized id
+     * @throws IOException
      */
-      public String exportDOT() 
-      {
-        return "\n"+ this.getId().replaceAll("-", "") + " [label=\"" + getValue().toString() + "\", shape=\"box\" ];";
+    public void exportDOT(Appendable out, String dotId) throws IOException
+    {
+        out.append("\n").append(dotId).append(" [label=\"").append(getValue().toString()).append("\", shape=\"box\" ];");
     }
 }
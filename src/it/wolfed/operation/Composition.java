@@ -0,0 +1,263 @@
+package it.wolfed.operation;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.util.Constants;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Composition expression.
+ *
+ * A tree of operations with the nets as leaves, for example
+ * SEQ(A, PAR(B, C)):
+ *
+ *  Composition.sequencing(
+ *      Composition.net(a),
+ *      Composition.parallelism(Composition.net(b), Composition.net(c))
+ *  )
+ *
+ * The whole tree is evaluated in one pass by {@link CompositionOperation},
+ * without intermediate graphs.
+ */
+public class Composition
+{
+    /**
+     * Operation (one of the Constants.OPERATION_* values), null for a net.
+     */
+    private final String type;
+
+    /**
+     * Net of a leaf.
+     */
+    private final PetriNetGraph graph;
+
+    /**
+     * Operands of an operation.
+     */
+    private final List<Composition> operands;
+
+    /**
+     * {@link Composition} Constructor.
+     *
+     * @param type
+     * @param graph
+     * @param operands
+     */
+    private Composition(String type, PetriNetGraph graph, List<Composition> operands)
+    {
+        this.type = type;
+        this.graph = graph;
+        this.operands = operands;
+    }
+
+    /**
+     * Operation node, with a check on the operands count.
+     *
+     * @param type
+     * @param min
+     * @param max
+     * @param operands
+     * @return Composition
+     */
+    private static Composition operation(String type, int min, int max, Composition... operands)
+    {
+        if(operands.length < min || operands.length > max)
+        {
+            throw new IllegalArgumentException(type + " requires " + (min == max ? "" : "at least ") + min + " operands.");
+        }
+
+        for (Composition operand : operands)
+        {
+            if(operand == null)
+            {
+                throw new IllegalArgumentException(type + " operand can't be null.");
+            }
+        }
+
+        return new Composition(type, null, Collections.unmodifiableList(new ArrayList<>(Arrays.asList(operands))));
+    }
+
+    /**
+     * A workflow net.
+     *
+     * @param graph
+     * @return Composition
+     */
+    public static Composition net(PetriNetGraph graph)
+    {
+        if(graph == null)
+        {
+            throw new IllegalArgumentException("Net can't be null.");
+        }
+
+        return new Composition(null, graph, Collections.<Composition>emptyList());
+    }
+
+    /**
+     * SEQ(A, B, ...): the final place of each operand is the initial
+     * place of the next one.
+     *
+     * @param operands
+     * @return Composition
+     */
+    public static Composition sequencing(Composition... operands)
+    {
+        return operation(Constants.OPERATION_SEQUENCING, 2, Integer.MAX_VALUE, operands);
+    }
+
+    /**
+     * PAR(A, B, ...): and-split and and-join around the operands.
+     *
+     * @param operands
+     * @return Composition
+     */
+    public static Composition parallelism(Composition... operands)
+    {
+        return operation(Constants.OPERATION_PARALLELISM, 2, Integer.MAX_VALUE, operands);
+    }
+
+    /**
+     * DC(A, B, ...): the operands share the initial and the final place.
+     *
+     * @param operands
+     * @return Composition
+     */
+    public static Composition deferredChoice(Composition... operands)
+    {
+        return operation(Constants.OPERATION_DEFFEREDCHOICE, 2, Integer.MAX_VALUE, operands);
+    }
+
+    /**
+     * EC(A, B, ...): deferred choice of the operands wrapped by a start
+     * and an end transition.
+     *
+     * @param operands
+     * @return Composition
+     */
+    public static Composition explicitChoice(Composition... operands)
+    {
+        return operation(Constants.OPERATION_EXPLICITCHOICE, 2, Integer.MAX_VALUE, operands);
+    }
+
+    /**
+     * MUTEX(A, B, ...): parallelism where one operand per time runs.
+     *
+     * @param operands
+     * @return Composition
+     */
+    public static Composition mutualExclusion(Composition... operands)
+    {
+        return operation(Constants.OPERATION_MUTUALEXCLUSION, 2, Integer.MAX_VALUE, operands);
+    }
+
+    /**
+     * ALT(A, B): parallelism where A and B run by turns, A first.
+     *
+     * @param first
+     * @param second
+     * @return Composition
+     */
+    public static Composition alternation(Composition first, Composition second)
+    {
+        return operation(Constants.OPERATION_ALTERNATION, 2, 2, first, second);
+    }
+
+    /**
+     * A+: A executed one or more times.
+     *
+     * @param operand
+     * @return Composition
+     */
+    public static Composition oneOrMoreIteration(Composition operand)
+    {
+        return operation(Constants.OPERATION_ITERATIONONEORMORE, 1, 1, operand);
+    }
+
+    /**
+     * A*: A executed zero or more times.
+     *
+     * @param operand
+     * @return Composition
+     */
+    public static Composition zeroOrMoreIteration(Composition operand)
+    {
+        return operation(Constants.OPERATION_ITERATIONZEROORMORE, 1, 1, operand);
+    }
+
+    /**
+     * OSPT(A): A wrapped by a start and an end transition, with one case
+     * inside per time.
+     *
+     * @param operand
+     * @return Composition
+     */
+    public static Composition oneServePerTime(Composition operand)
+    {
+        return operation(Constants.OPERATION_ITERATIONONESERVEPERTIME, 1, 1, operand);
+    }
+
+    /**
+     * Returns the operation, null for a net.
+     *
+     * @return String
+     */
+    public String getType()
+    {
+        return type;
+    }
+
+    /**
+     * Returns the net of a leaf, null for an operation.
+     *
+     * @return PetriNetGraph
+     */
+    public PetriNetGraph getGraph()
+    {
+        return graph;
+    }
+
+    /**
+     * Returns the operands (empty for a net).
+     *
+     * @return List<Composition>
+     */
+    public List<Composition> getOperands()
+    {
+        return operands;
+    }
+
+    /**
+     * Returns if it's a leaf.
+     *
+     * @return boolean
+     */
+    public boolean isNet()
+    {
+        return graph != null;
+    }
+
+    /**
+     * Expression as Operation(A, B...), with the nets ids.
+     *
+     * @return String
+     */
+    @Override
+    public String toString()
+    {
+        if(isNet())
+        {
+            return graph.getId();
+        }
+
+        StringBuilder expression = new StringBuilder(type).append("(");
+
+        for (int i = 0; i < operands.size(); i++)
+        {
+            expression.append(i > 0 ? ", " : "").append(operands.get(i));
+        }
+
+        return expression.append(")").toString();
+    }
+}
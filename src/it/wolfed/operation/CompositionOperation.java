@@ -0,0 +1,679 @@
+package it.wolfed.operation;
+
+import com.mxgraph.model.mxCell;
+import it.wolfed.model.ArcEdge;
+import it.wolfed.model.InterfaceVertex;
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PlaceVertex;
+import it.wolfed.model.TransitionVertex;
+import it.wolfed.model.Vertex;
+import it.wolfed.util.Constants;
+import it.wolfed.util.IntList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Composition Operation.
+ *
+ * Evaluates a {@link Composition} in one pass into the operationGraph.
+ *
+ * The nets of the leaves are copied (once each) in plain arrays, the
+ * operations only add places, transitions and arcs around the fragments
+ * of their operands. Places shared by two fragments (sequencing, deferred
+ * choice) are merged with a union-find, so no arc is ever moved. At the end
+ * all the cells are added with a single addCells: the time is linear in the
+ * size of the result, whatever the depth of the expression.
+ *
+ * Ids of the copied cells are prefixed per leaf (n1_, n2_... in evaluation
+ * order). Interfaces with the same value are merged as in
+ * {@link FullMergeOperation}.
+ *
+ * Only the initial place of the result and the resource places (mutual
+ * exclusion, alternation, one serve per time) are marked: the initial
+ * places of the nets lose their token, the other places keep theirs.
+ */
+public class CompositionOperation extends Operation
+{
+    /**
+     * Vertex references: (index << 2) | kind.
+     */
+    private static final int PLACE = 0;
+    private static final int TRANSITION = 1;
+    private static final int INTERFACE = 2;
+
+    /**
+     * Expression to evaluate.
+     */
+    private final Composition composition;
+
+    /**
+     * Places: union-find parent, id, value and tokens.
+     */
+    private final IntList placeParents = new IntList();
+    private final List<String> placeIds = new ArrayList<>();
+    private final List<Object> placeValues = new ArrayList<>();
+    private final IntList placeTokens = new IntList();
+
+    /**
+     * Transitions: id and value.
+     */
+    private final List<String> transitionIds = new ArrayList<>();
+    private final List<Object> transitionValues = new ArrayList<>();
+
+    /**
+     * Interfaces: id, value, index by value, incoming and outgoing arcs count.
+     */
+    private final List<String> interfaceIds = new ArrayList<>();
+    private final List<Object> interfaceValues = new ArrayList<>();
+    private final Map<Object, Integer> interfacesFound = new HashMap<>();
+    private final IntList interfaceIncoming = new IntList();
+    private final IntList interfaceOutgoing = new IntList();
+
+    /**
+     * Arcs: id, value, source and target references.
+     */
+    private final List<String> arcIds = new ArrayList<>();
+    private final List<Object> arcValues = new ArrayList<>();
+    private final IntList arcSources = new IntList();
+    private final IntList arcTargets = new IntList();
+
+    /**
+     * Number of copied nets.
+     */
+    private int leaves;
+
+    /**
+     * Workflow fragment built by a subexpression.
+     */
+    private static class Fragment
+    {
+        /**
+         * Initial and final places.
+         */
+        int initialPlace;
+        int finalPlace;
+
+        /**
+         * Transitions consuming the initial place and producing the final
+         * place (-1 if not a single one).
+         */
+        int startTransition = -1;
+        int endTransition = -1;
+    }
+
+    /**
+     * {@link CompositionOperation} Constructor.
+     *
+     * @param operationGraph
+     * @param composition
+     * @throws Exception
+     */
+    public CompositionOperation(PetriNetGraph operationGraph, Composition composition) throws Exception
+    {
+        super(operationGraph);
+        this.composition = composition;
+        execute();
+    }
+
+    /**
+     * Builds the whole expression, then adds the cells.
+     *
+     * @throws Exception
+     */
+    @Override
+    void process() throws Exception
+    {
+        Fragment result = build(composition);
+        placeTokens.set(find(result.initialPlace), 1);
+
+        insertCells();
+    }
+
+    /**
+     * Builds a subexpression.
+     *
+     * @param expression
+     * @return Fragment
+     * @throws Exception
+     */
+    private Fragment build(Composition expression) throws Exception
+    {
+        checkInterrupted();
+
+        if(expression.isNet())
+        {
+            return copyNet(getIfIsWorkFlow(expression.getGraph()));
+        }
+
+        List<Composition> operands = expression.getOperands();
+
+        switch (expression.getType())
+        {
+            case Constants.OPERATION_SEQUENCING:
+            {
+                Fragment result = build(operands.get(0));
+
+                for (int i = 1; i < operands.size(); i++)
+                {
+                    Fragment next = build(operands.get(i));
+                    union(next.initialPlace, result.finalPlace);
+                    result.finalPlace = next.finalPlace;
+                    result.endTransition = next.endTransition;
+                }
+
+                return result;
+            }
+
+            case Constants.OPERATION_PARALLELISM:
+            {
+                return parallelism(buildAll(operands, false));
+            }
+
+            case Constants.OPERATION_DEFFEREDCHOICE:
+            {
+                return deferredChoice(buildAll(operands, false));
+            }
+
+            case Constants.OPERATION_EXPLICITCHOICE:
+            {
+                return deferredChoice(buildAll(operands, true));
+            }
+
+            case Constants.OPERATION_MUTUALEXCLUSION:
+            {
+                List<Fragment> fragments = buildAll(operands, true);
+                Fragment result = parallelism(fragments);
+                int mutex = addPlace(1);
+
+                for (Fragment fragment : fragments)
+                {
+                    addArc(ref(mutex, PLACE), ref(fragment.startTransition, TRANSITION));
+                    addArc(ref(fragment.endTransition, TRANSITION), ref(mutex, PLACE));
+                }
+
+                return result;
+            }
+
+            case Constants.OPERATION_ALTERNATION:
+            {
+                List<Fragment> fragments = buildAll(operands, true);
+                Fragment result = parallelism(fragments);
+                Fragment first = fragments.get(0);
+                Fragment second = fragments.get(1);
+
+                // first start ... second end, then second start ... first end
+                int tokened = addPlace(1);
+                addArc(ref(tokened, PLACE), ref(first.startTransition, TRANSITION));
+                addArc(ref(second.endTransition, TRANSITION), ref(tokened, PLACE));
+
+                int unTokened = addPlace(0);
+                addArc(ref(unTokened, PLACE), ref(second.startTransition, TRANSITION));
+                addArc(ref(first.endTransition, TRANSITION), ref(unTokened, PLACE));
+
+                return result;
+            }
+
+            case Constants.OPERATION_ITERATIONONEORMORE:
+            {
+                return oneOrMore(operands.get(0));
+            }
+
+            case Constants.OPERATION_ITERATIONZEROORMORE:
+            {
+                Fragment result = oneOrMore(operands.get(0));
+                int zeroTransition = addTransition();
+                addArc(ref(result.initialPlace, PLACE), ref(zeroTransition, TRANSITION));
+                addArc(ref(zeroTransition, TRANSITION), ref(result.finalPlace, PLACE));
+
+                result.startTransition = -1;
+                result.endTransition = -1;
+                return result;
+            }
+
+            case Constants.OPERATION_ITERATIONONESERVEPERTIME:
+            {
+                Fragment result = iteration(build(operands.get(0)));
+                int served = addPlace(1);
+                addArc(ref(served, PLACE), ref(result.startTransition, TRANSITION));
+                addArc(ref(result.endTransition, TRANSITION), ref(served, PLACE));
+
+                return result;
+            }
+
+            default:
+            {
+                throw new Exception("Operation " + expression.getType() + " can't be composed.");
+            }
+        }
+    }
+
+    /**
+     * Builds the operands, optionally wrapped in the iteration pattern.
+     *
+     * @param operands
+     * @param iteration
+     * @return List<Fragment>
+     * @throws Exception
+     */
+    private List<Fragment> buildAll(List<Composition> operands, boolean iteration) throws Exception
+    {
+        List<Fragment> fragments = new ArrayList<>(operands.size());
+
+        for (Composition operand : operands)
+        {
+            Fragment fragment = build(operand);
+            fragments.add(iteration ? iteration(fragment) : fragment);
+        }
+
+        return fragments;
+    }
+
+    /**
+     * Iteration pattern: initial* -> T* -> fragment -> T* -> final*.
+     *
+     * @param fragment
+     * @return Fragment
+     */
+    private Fragment iteration(Fragment fragment)
+    {
+        Fragment result = new Fragment();
+
+        result.initialPlace = addPlace(0);
+        result.startTransition = addTransition();
+        addArc(ref(result.initialPlace, PLACE), ref(result.startTransition, TRANSITION));
+        addArc(ref(result.startTransition, TRANSITION), ref(fragment.initialPlace, PLACE));
+
+        result.finalPlace = addPlace(0);
+        result.endTransition = addTransition();
+        addArc(ref(result.endTransition, TRANSITION), ref(result.finalPlace, PLACE));
+        addArc(ref(fragment.finalPlace, PLACE), ref(result.endTransition, TRANSITION));
+
+        return result;
+    }
+
+    /**
+     * Iteration pattern with a loop back from the final to the initial
+     * place of the operand.
+     *
+     * @param operand
+     * @return Fragment
+     * @throws Exception
+     */
+    private Fragment oneOrMore(Composition operand) throws Exception
+    {
+        Fragment fragment = build(operand);
+        Fragment result = iteration(fragment);
+
+        int loopTransition = addTransition();
+        addArc(ref(fragment.finalPlace, PLACE), ref(loopTransition, TRANSITION));
+        addArc(ref(loopTransition, TRANSITION), ref(fragment.initialPlace, PLACE));
+
+        return result;
+    }
+
+    /**
+     * And-split from a new initial place, and-join to a new final place.
+     *
+     * @param fragments
+     * @return Fragment
+     */
+    private Fragment parallelism(List<Fragment> fragments)
+    {
+        Fragment result = new Fragment();
+
+        result.initialPlace = addPlace(0);
+        result.startTransition = addTransition();
+        addArc(ref(result.initialPlace, PLACE), ref(result.startTransition, TRANSITION));
+
+        result.finalPlace = addPlace(0);
+        result.endTransition = addTransition();
+        addArc(ref(result.endTransition, TRANSITION), ref(result.finalPlace, PLACE));
+
+        for (Fragment fragment : fragments)
+        {
+            addArc(ref(result.startTransition, TRANSITION), ref(fragment.initialPlace, PLACE));
+            addArc(ref(fragment.finalPlace, PLACE), ref(result.endTransition, TRANSITION));
+        }
+
+        return result;
+    }
+
+    /**
+     * Merges the initial and the final places of the fragments into the
+     * ones of the first fragment.
+     *
+     * @param fragments
+     * @return Fragment
+     */
+    private Fragment deferredChoice(List<Fragment> fragments)
+    {
+        Fragment result = fragments.get(0);
+
+        for (int i = 1; i < fragments.size(); i++)
+        {
+            union(result.initialPlace, fragments.get(i).initialPlace);
+            union(result.finalPlace, fragments.get(i).finalPlace);
+        }
+
+        result.startTransition = -1;
+        result.endTransition = -1;
+        return result;
+    }
+
+    /**
+     * Copies a workflow net.
+     *
+     * @param net
+     * @return Fragment
+     * @throws Exception if an arc or a start\end place is not a vertex of the net
+     */
+    private Fragment copyNet(PetriNetGraph net) throws Exception
+    {
+        String prefix = getPrefix(++leaves);
+        Object[] cells = net.getChildCells(net.getDefaultParent());
+        Map<Object, Integer> refs = new HashMap<>(cells.length * 2);
+
+        for (Object cellObj : cells)
+        {
+            mxCell cell = (mxCell) cellObj;
+
+            if(cell instanceof PlaceVertex)
+            {
+                operationGraph.getSetNextPlaceId();
+                refs.put(cell, ref(addPlace(prefix + cell.getId(), cell.getValue(), ((PlaceVertex) cell).getTokens()), PLACE));
+            }
+            else if(cell instanceof TransitionVertex)
+            {
+                operationGraph.getSetNextTransitionId();
+                transitionIds.add(prefix + cell.getId());
+                transitionValues.add(cell.getValue());
+                refs.put(cell, ref(transitionIds.size() - 1, TRANSITION));
+            }
+            else if(cell instanceof InterfaceVertex)
+            {
+                operationGraph.getSetNextInterfaceId();
+                Integer interf = interfacesFound.get(cell.getValue());
+
+                if(interf == null)
+                {
+                    interf = interfaceIds.size();
+                    interfaceIds.add(prefix + cell.getId());
+                    interfaceValues.add(cell.getValue());
+                    interfaceIncoming.add(0);
+                    interfaceOutgoing.add(0);
+                    interfacesFound.put(cell.getValue(), interf);
+                }
+
+                refs.put(cell, ref(interf, INTERFACE));
+            }
+        }
+
+        for (Object cellObj : cells)
+        {
+            mxCell cell = (mxCell) cellObj;
+
+            if(cell.isEdge())
+            {
+                operationGraph.getSetNextArcId();
+                String error = "Dangling arc " + cell.getId() + " in " + net.getId() + "!";
+                addArc(prefix + cell.getId(), cell.getValue(),
+                    getRef(refs, cell.getSource(), error), getRef(refs, cell.getTarget(), error));
+            }
+        }
+
+        Fragment fragment = new Fragment();
+        fragment.initialPlace = getRef(refs, net.getInitialPlaces().get(0),
+            "Initial place of " + net.getId() + " not found!") >> 2;
+        fragment.finalPlace = getRef(refs, net.getFinalPlaces().get(0),
+            "Final place of " + net.getId() + " not found!") >> 2;
+
+        // Only the initial place of the result will be marked
+        placeTokens.set(fragment.initialPlace, 0);
+
+        return fragment;
+    }
+
+    /**
+     * Returns the reference of a copied vertex.
+     *
+     * @param refs
+     * @param cell
+     * @param error     message if the cell was not copied
+     * @return int
+     * @throws Exception
+     */
+    private static int getRef(Map<Object, Integer> refs, Object cell, String error) throws Exception
+    {
+        Integer ref = (cell == null) ? null : refs.get(cell);
+
+        if(ref == null)
+        {
+            throw new Exception(error);
+        }
+
+        return ref;
+    }
+
+    /**
+     * Vertex reference.
+     *
+     * @param index
+     * @param kind
+     * @return int
+     */
+    private static int ref(int index, int kind)
+    {
+        return (index << 2) | kind;
+    }
+
+    /**
+     * Adds a new place.
+     *
+     * @param tokens
+     * @return place index
+     */
+    private int addPlace(int tokens)
+    {
+        String id = operationGraph.getSetNextPlaceId();
+        return addPlace(id, id, tokens);
+    }
+
+    /**
+     * Adds a place.
+     *
+     * @param id
+     * @param value
+     * @param tokens
+     * @return place index
+     */
+    private int addPlace(String id, Object value, int tokens)
+    {
+        int place = placeIds.size();
+
+        placeParents.add(place);
+        placeIds.add(id);
+        placeValues.add(value);
+        placeTokens.add(tokens);
+
+        return place;
+    }
+
+    /**
+     * Adds a new transition.
+     *
+     * @return transition index
+     */
+    private int addTransition()
+    {
+        String id = operationGraph.getSetNextTransitionId();
+        transitionIds.add(id);
+        transitionValues.add(id);
+
+        return transitionIds.size() - 1;
+    }
+
+    /**
+     * Adds a new arc.
+     *
+     * @param source
+     * @param target
+     */
+    private void addArc(int source, int target)
+    {
+        addArc(operationGraph.getSetNextArcId(), "", source, target);
+    }
+
+    /**
+     * Adds an arc.
+     *
+     * @param id
+     * @param value
+     * @param source
+     * @param target
+     */
+    private void addArc(String id, Object value, int source, int target)
+    {
+        arcIds.add(id);
+        arcValues.add(value);
+        arcSources.add(source);
+        arcTargets.add(target);
+
+        if((source & 3) == INTERFACE)
+        {
+            interfaceOutgoing.set(source >> 2, interfaceOutgoing.get(source >> 2) + 1);
+        }
+
+        if((target & 3) == INTERFACE)
+        {
+            interfaceIncoming.set(target >> 2, interfaceIncoming.get(target >> 2) + 1);
+        }
+    }
+
+    /**
+     * Representative of a place.
+     *
+     * @param place
+     * @return int
+     */
+    private int find(int place)
+    {
+        while(placeParents.get(place) != place)
+        {
+            int parent = placeParents.get(placeParents.get(place));
+            placeParents.set(place, parent);
+            place = parent;
+        }
+
+        return place;
+    }
+
+    /**
+     * Merges a place into another one (which keeps its id and tokens).
+     *
+     * @param kept
+     * @param merged
+     */
+    private void union(int kept, int merged)
+    {
+        kept = find(kept);
+        merged = find(merged);
+
+        if(kept != merged)
+        {
+            placeParents.set(merged, kept);
+        }
+    }
+
+    /**
+     * Adds all the cells to the operationGraph.
+     */
+    private void insertCells()
+    {
+        Object parent = operationGraph.getDefaultParent();
+        List<Object> cells = new ArrayList<>(placeIds.size() + transitionIds.size() + arcIds.size());
+
+        Vertex[] places = new Vertex[placeIds.size()];
+
+        for (int p = 0; p < places.length; p++)
+        {
+            if(find(p) == p)
+            {
+                PlaceVertex place = new PlaceVertex(parent, placeIds.get(p), placeValues.get(p), 0, 0);
+                place.setTokens(placeTokens.get(p));
+                places[p] = place;
+                cells.add(place);
+            }
+        }
+
+        Vertex[] transitions = new Vertex[transitionIds.size()];
+
+        for (int t = 0; t < transitions.length; t++)
+        {
+            transitions[t] = new TransitionVertex(parent, transitionIds.get(t), transitionValues.get(t), 0, 0);
+            cells.add(transitions[t]);
+        }
+
+        Vertex[] interfaces = new Vertex[interfaceIds.size()];
+
+        for (int i = 0; i < interfaces.length; i++)
+        {
+            // Mirror a place instead of an interface with incoming and outgoing arcs
+            if(interfaceIncoming.get(i) > 0 && interfaceOutgoing.get(i) > 0)
+            {
+                operationGraph.getSetNextPlaceId();
+                interfaces[i] = new PlaceVertex(parent, interfaceIds.get(i), interfaceValues.get(i), 0, 0);
+            }
+            else
+            {
+                interfaces[i] = new InterfaceVertex(parent, interfaceIds.get(i), interfaceValues.get(i));
+            }
+
+            cells.add(interfaces[i]);
+        }
+
+        for (int a = 0; a < arcIds.size(); a++)
+        {
+            cells.add(new ArcEdge(
+                    parent,
+                    arcIds.get(a),
+                    arcValues.get(a),
+                    getVertex(arcSources.get(a), places, transitions, interfaces),
+                    getVertex(arcTargets.get(a), places, transitions, interfaces)
+            ));
+        }
+
+        operationGraph.addCells(cells.toArray());
+    }
+
+    /**
+     * Resolves a vertex reference.
+     *
+     * @param ref
+     * @param places
+     * @param transitions
+     * @param interfaces
+     * @return Vertex
+     */
+    private Vertex getVertex(int ref, Vertex[] places, Vertex[] transitions, Vertex[] interfaces)
+    {
+        switch (ref & 3)
+        {
+            case PLACE:
+            {
+                return places[find(ref >> 2)];
+            }
+
+            case TRANSITION:
+            {
+                return transitions[ref >> 2];
+            }
+
+            default:
+            {
+                return interfaces[ref >> 2];
+            }
+        }
+    }
+}
@@ -3,14 +3,15 @@ package it.wolfed.operation;
 import it.wolfed.model.PetriNetGraph;
 import it.wolfed.model.PlaceVertex;
 import it.wolfed.model.Vertex;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Sequencing Operation.
  */
 public class DefferedChoiceOperation extends Operation
 {
-    PetriNetGraph firstGraph;
-    PetriNetGraph secondGraph;
+    List<PetriNetGraph> inputGraphs;
     
     /**
      * @param operationGraph
@@ -19,11 +20,23 @@ public class DefferedChoiceOperation extends Operation
      * @throws Exception  
      */
     public DefferedChoiceOperation(PetriNetGraph operationGraph, PetriNetGraph firstGraph, PetriNetGraph secondGraph) throws Exception
+    {
+        this(operationGraph, Arrays.asList(firstGraph, secondGraph));
+    }
+    
+    /**
+     * Deferred choice of any number of graphs, sharing the initial and
+     * the final place of the first one, with a single merge.
+     * 
+     * @param operationGraph
+     * @param inputGraphs
+     * @throws Exception  
+     */
+    public DefferedChoiceOperation(PetriNetGraph operationGraph, List<PetriNetGraph> inputGraphs) throws Exception
     {
         super(operationGraph);
-        this.firstGraph = getIfIsWorkFlow(firstGraph);
-        this.secondGraph = getIfIsWorkFlow(secondGraph);
-        this.operationGraph = (new FullMergeOperation(operationGraph, firstGraph, secondGraph)).getOperationGraph();
+        this.inputGraphs = getIfAreWorkFlows(inputGraphs);
+        this.operationGraph = (new FullMergeOperation(operationGraph, inputGraphs)).getOperationGraph();
         execute();
     }
    
@@ -32,7 +45,7 @@ public class DefferedChoiceOperation extends Operation
      * 
      * (XOR-split + XOR-join)
      * 
-     * Either A or B is executed (choice is implicit)
+     * Either A or B (or C...) is executed (choice is implicit)
      * 
      *     -> A ->   
      *  i |		  | o
@@ -43,16 +56,20 @@ public class DefferedChoiceOperation extends Operation
     @Override
     void process()
     {
-        PlaceVertex initialPlaceAsFirst = (PlaceVertex) getEquivalentVertex(1, firstGraph.getInitialPlaces().get(0));
-        Vertex initialPlaceAsSecond = getEquivalentVertex(2, secondGraph.getInitialPlaces().get(0));
-        Vertex finalPlaceAsFirst = getEquivalentVertex(1, firstGraph.getFinalPlaces().get(0));
-        Vertex finalPlaceAsSecond = getEquivalentVertex(2, secondGraph.getFinalPlaces().get(0));
+        PlaceVertex initialPlaceAsFirst = (PlaceVertex) getEquivalentVertex(1, inputGraphs.get(0).getInitialPlaces().get(0));
+        Vertex finalPlaceAsFirst = getEquivalentVertex(1, inputGraphs.get(0).getFinalPlaces().get(0));
 
-        cloneOutgoingEdges(initialPlaceAsSecond, initialPlaceAsFirst);
-        cloneIncomingEdges(finalPlaceAsSecond, finalPlaceAsFirst);
-        
-        removeVertexAndHisEdges(initialPlaceAsSecond);
-        removeVertexAndHisEdges(finalPlaceAsSecond);
+        for (int i = 1; i < inputGraphs.size(); i++)
+        {
+            Vertex initialPlaceAsInput = getEquivalentVertex(i + 1, inputGraphs.get(i).getInitialPlaces().get(0));
+            Vertex finalPlaceAsInput = getEquivalentVertex(i + 1, inputGraphs.get(i).getFinalPlaces().get(0));
+
+            cloneOutgoingEdges(initialPlaceAsInput, initialPlaceAsFirst);
+            cloneIncomingEdges(finalPlaceAsInput, finalPlaceAsFirst);
+
+            removeVertexAndHisEdges(initialPlaceAsInput);
+            removeVertexAndHisEdges(finalPlaceAsInput);
+        }
         
         // set token
         initialPlaceAsFirst.setTokens(1);
@@ -4,23 +4,24 @@ import it.wolfed.model.PetriNetGraph;
 
 /**
  * ExplicitChoice Operation.
+ * 
+ * Deferred choice of the two iteration patterns.
  */
 public class ExplicitChoiceOperation extends Operation
 {
-    private PetriNetGraph firstGraph;
-    private PetriNetGraph secondGraph;
-
     public ExplicitChoiceOperation(PetriNetGraph operationGraph, PetriNetGraph firstGraph, PetriNetGraph secondGraph) throws Exception
     {
         super(operationGraph);
-        this.firstGraph = (new IterationPatternOperation(new PetriNetGraph("1"), firstGraph)).getOperationGraph();
-        this.secondGraph = (new IterationPatternOperation(new PetriNetGraph("2"), secondGraph)).getOperationGraph();
+        this.operationGraph = (new CompositionOperation(
+                operationGraph,
+                Composition.explicitChoice(Composition.net(firstGraph), Composition.net(secondGraph))
+        )).getOperationGraph();
         execute();
     }
 
     @Override
     void process() throws Exception
     {
-        this.operationGraph = (new DefferedChoiceOperation(new PetriNetGraph("ExplicitChoice"), firstGraph, secondGraph)).getOperationGraph();
+        // Nothing, built by CompositionOperation
     }
 }
@@ -2,7 +2,6 @@
 package it.wolfed.operation;
 
 import com.mxgraph.model.mxCell;
-import it.wolfed.manipulation.GraphManipulation;
 import it.wolfed.model.ArcEdge;
 import it.wolfed.model.InterfaceVertex;
 import it.wolfed.model.PetriNetGraph;
@@ -12,6 +11,7 @@ import it.wolfed.model.Vertex;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -30,108 +30,175 @@ public class FullMergeOperation extends Operation
      * @throws Exception  
      */
     public FullMergeOperation(PetriNetGraph operationGraph, PetriNetGraph... inputGraphs) throws Exception
+    {
+        this(operationGraph, Arrays.asList(inputGraphs));
+    }
+    
+    /**
+     * Clone all the cells from inputGraphs into operationGraph.
+     * 
+     * @param operationGraph
+     * @param inputGraphs
+     * @throws Exception  
+     */
+    public FullMergeOperation(PetriNetGraph operationGraph, List<PetriNetGraph> inputGraphs) throws Exception
     {
         super(operationGraph);
-        this.inputGraphs = Arrays.asList(inputGraphs);
+        this.inputGraphs = inputGraphs;
         execute();
     }
     
     /**
-     * @todo Change getSetNextId() elements with insert{Element}()
+     * Single pass merge.
+     * 
+     * Each input is cloned with a map from its cells to their clones, so
+     * arcs are resolved without lookups by id. Interfaces with the same
+     * value are merged on the fly: the first one found is kept and the arcs
+     * of the others point to it. A merged interface with both incoming and
+     * outgoing arcs becomes a place (mirror) with the same id.
+     * All the clones are added to operationGraph with a single addCells.
      */
     @Override
-    void process()
+    void process() throws Exception
     {
-        mxCell clone = null;
         Object parent = operationGraph.getDefaultParent();
         
-        Map<Object, List<mxCell>> interfacesFound = new HashMap<>();
+        List<mxCell> clones = new ArrayList<>();
+        Map<Object, InterfaceVertex> interfacesFound = new HashMap<>();
+        // Incoming arcs, outgoing arcs and position in clones per interface
+        Map<InterfaceVertex, int[]> interfacesArcs = new LinkedHashMap<>();
+        List<ArcEdge> interfacesEdges = new ArrayList<>();
         
         for (int i = 0; i < inputGraphs.size(); i++)
         {
+            checkInterrupted();
             PetriNetGraph net = inputGraphs.get(i);
-
-            for (Object cellObj : net.getChildCells(net.getDefaultParent()))
+            String prefix = getPrefix(i + 1);
+            Object[] cells = net.getChildCells(net.getDefaultParent());
+            Map<Object, Vertex> vertexClones = new HashMap<>(cells.length * 2);
+            
+            // Vertices
+            for (Object cellObj : cells)
             {
                 mxCell cell = (mxCell) cellObj;
+                Vertex clone;
 
                 if(cell instanceof PlaceVertex)
                 {
                     PlaceVertex place = (PlaceVertex) cell;
-                    clone = new PlaceVertex(parent, getPrefix(i + 1) + cell.getId(), cell.getValue(), 0, 0);
+                    clone = new PlaceVertex(parent, prefix + cell.getId(), cell.getValue(), 0, 0);
                     ((PlaceVertex)clone).setTokens(place.getTokens());
                     operationGraph.getSetNextPlaceId();
                 }
                 else if(cell instanceof TransitionVertex)
                 {
-                    clone = new TransitionVertex(parent, getPrefix(i + 1) + cell.getId(), cell.getValue(), 0, 0);
+                    clone = new TransitionVertex(parent, prefix + cell.getId(), cell.getValue(), 0, 0);
                     operationGraph.getSetNextTransitionId();
                 }
                 else if(cell instanceof InterfaceVertex)
                 {
-                    clone = new InterfaceVertex(parent, getPrefix(i + 1) + cell.getId(), cell.getValue());
                     operationGraph.getSetNextInterfaceId();
+                    clone = interfacesFound.get(cell.getValue());
                     
-                    if(interfacesFound.containsKey(clone.getValue()))
+                    if(clone == null)
                     {
-                        interfacesFound.get(clone.getValue()).add(clone);
+                        InterfaceVertex interf = new InterfaceVertex(parent, prefix + cell.getId(), cell.getValue());
+                        interfacesFound.put(interf.getValue(), interf);
+                        interfacesArcs.put(interf, new int[] {0, 0, clones.size()});
+                        clone = interf;
                     }
                     else
                     {
-                        List<mxCell> list = new ArrayList<>();
-                        list.add(clone);
-                        interfacesFound.put(clone.getValue(), list);
+                        // Merged: keep its position for the arcs to relink
+                        vertexClones.put(cell, clone);
+                        continue;
                     }
                 }
-                // @todo check instanceof Arc when the mouserelease creation of arcs will be type-zed
-                // ArcEdge e mxCell.isEdge()
-                else if(cell.isEdge())
+                else
                 {
-                    // Get
-                    Vertex source = operationGraph.getVertexById(getPrefix(i + 1) + cell.getSource().getId());
-                    Vertex target = operationGraph.getVertexById(getPrefix(i + 1) + cell.getTarget().getId());
-
-                    // Clone
-                    clone = new ArcEdge(parent, getPrefix(i + 1) + cell.getId(), cell.getValue(), source, target);
-                    operationGraph.getSetNextArcId();
+                    continue;
                 }
+                
+                vertexClones.put(cell, clone);
+                clones.add(clone);
+            }
+            
+            // Arcs
+            // @todo check instanceof Arc when the mouserelease creation of arcs will be type-zed
+            // ArcEdge e mxCell.isEdge()
+            for (Object cellObj : cells)
+            {
+                mxCell cell = (mxCell) cellObj;
+                
+                if(cell.isEdge() == false)
+                {
+                    continue;
+                }
+                
+                Vertex source = vertexClones.get(cell.getSource());
+                Vertex target = vertexClones.get(cell.getTarget());
 
-                operationGraph.addCell(clone);
+                ArcEdge clone = new ArcEdge(parent, prefix + cell.getId(), cell.getValue(), source, target);
+                operationGraph.getSetNextArcId();
+                clones.add(clone);
+                
+                if(source instanceof InterfaceVertex || target instanceof InterfaceVertex)
+                {
+                    interfacesEdges.add(clone);
+                    
+                    if(source instanceof InterfaceVertex)
+                    {
+                        interfacesArcs.get((InterfaceVertex) source)[1]++;
+                    }
+                    
+                    if(target instanceof InterfaceVertex)
+                    {
+                        interfacesArcs.get((InterfaceVertex) target)[0]++;
+                    }
+                }
             }
         }
         
-        // Merge Interfaces
-        if(interfacesFound.size() > 0)
+        // Interfaces with incoming and outgoing arcs become places
+        Map<Vertex, PlaceVertex> placeMirrors = new HashMap<>();
+        
+        for (Map.Entry<InterfaceVertex, int[]> entry : interfacesArcs.entrySet())
         {
-            for(List<mxCell> interfList : interfacesFound.values())
+            InterfaceVertex interf = entry.getKey();
+            int[] arcs = entry.getValue();
+            
+            if(arcs[0] > 0 && arcs[1] > 0)
             {
-                Vertex firstInterface = (Vertex) interfList.get(0);
+                PlaceVertex placeMirror = new PlaceVertex(
+                        parent,
+                        interf.getId(),
+                        interf.getValue(),
+                        interf.getGeometry().getX(),
+                        interf.getGeometry().getY()
+                );
 
-                for(int i = 1; i < interfList.size(); i++)
+                operationGraph.getSetNextPlaceId();
+                placeMirrors.put(interf, placeMirror);
+                clones.set(arcs[2], placeMirror);
+            }
+        }
+        
+        if(placeMirrors.isEmpty() == false)
+        {
+            for (ArcEdge edge : interfacesEdges)
+            {
+                if(placeMirrors.containsKey(edge.getSource()))
                 {
-                    Vertex currentInterf =(Vertex) interfList.get(i);
-                    GraphManipulation.cloneEdges(operationGraph, currentInterf, firstInterface);
-                    GraphManipulation.removeVertexAndHisEdges(operationGraph, currentInterf);
+                    edge.setSource(placeMirrors.get(edge.getSource()));
                 }
-
-                if(operationGraph.getIncomingEdges(firstInterface).length > 0 
-                        && operationGraph.getOutgoingEdges(firstInterface).length > 0 )
+                
+                if(placeMirrors.containsKey(edge.getTarget()))
                 {
-                    PlaceVertex placeMirror = new PlaceVertex(
-                            operationGraph.getDefaultParent(),
-                            firstInterface.getId(),
-                            firstInterface.getValue(),
-                            firstInterface.getGeometry().getX(),
-                            firstInterface.getGeometry().getY()
-                    );
-                    
-                    operationGraph.getSetNextPlaceId();
-
-                    GraphManipulation.cloneEdges(operationGraph, firstInterface, placeMirror);
-                    GraphManipulation.removeVertexAndHisEdges(operationGraph, firstInterface);
-                    operationGraph.addCell(placeMirror);
+                    edge.setTarget(placeMirrors.get(edge.getTarget()));
                 }
             }
         }
+        
+        operationGraph.addCells(clones.toArray());
     }
 }
@@ -76,7 +76,7 @@ public class MergeInterfacesOperation extends Operation
                     
                     // Mirror a place instead the interface
                     PlaceVertex placeInterf = operationGraph.insertPlace(interfFirst.getId());
-                    placeInterf.setValue(interfAsFirst.getValue());
+                    operationGraph.getModel().setValue(placeInterf, interfAsFirst.getValue());
                     
                     // Clone Edges to mirror place\interface
                     cloneEdges(interfAsFirst, placeInterf);
@@ -5,6 +5,7 @@ import it.wolfed.manipulation.GraphManipulation;
 import it.wolfed.model.PetriNetGraph;
 import it.wolfed.model.Vertex;
 import it.wolfed.util.Constants;
+import java.util.List;
 
 /**
  * Basic Operation Class.
@@ -29,6 +30,90 @@ abstract public class Operation
         this.operationGraph = operationGraph;
     }
     
+    /**
+     * Creates (and executes) an operation by name.
+     *
+     * Sequencing, Parallelism, DefferedChoice and FullMerge take all the
+     * inputGraphs, the other binary operations the first two, the unary
+     * ones the first.
+     *
+     * @param operationName one of the Constants.OPERATION_* values
+     * @param operationGraph
+     * @param inputGraphs
+     * @return Operation
+     * @throws Exception
+     */
+    public static Operation factory(String operationName, PetriNetGraph operationGraph, List<PetriNetGraph> inputGraphs) throws Exception
+    {
+        switch (operationName)
+        {
+            case Constants.OPERATION_ALTERNATION:
+            {
+                return new AlternationOperation(operationGraph, inputGraphs.get(0), inputGraphs.get(1));
+            }
+
+            case Constants.OPERATION_CLONEGRAPH:
+            {
+                return new CloneGraphOperation(operationGraph, inputGraphs.get(0));
+            }
+
+            case Constants.OPERATION_DEFFEREDCHOICE:
+            {
+                return new DefferedChoiceOperation(operationGraph, inputGraphs);
+            }
+
+            case Constants.OPERATION_EXPLICITCHOICE:
+            {
+                return new ExplicitChoiceOperation(operationGraph, inputGraphs.get(0), inputGraphs.get(1));
+            }
+
+            case Constants.OPERATION_ITERATIONONEORMORE:
+            {
+                return new OneOrMoreIterationOperation(operationGraph, inputGraphs.get(0));
+            }
+
+            case Constants.OPERATION_ITERATIONONESERVEPERTIME:
+            {
+                return new OneServePerTimeOperation(operationGraph, inputGraphs.get(0));
+            }
+
+            case Constants.OPERATION_ITERATIONZEROORMORE:
+            {
+                return new ZeroOrMoreIterationOperation(operationGraph, inputGraphs.get(0));
+            }
+
+            case Constants.OPERATION_MUTUALEXCLUSION:
+            {
+                return new MutualExclusionOperation(operationGraph, inputGraphs.get(0), inputGraphs.get(1));
+            }
+
+            case Constants.OPERATION_FULLMERGE:
+            {
+                return new FullMergeOperation(operationGraph, inputGraphs);
+            }
+
+            case Constants.OPERATION_PARALLELISM:
+            {
+                return new ParallelismOperation(operationGraph, inputGraphs);
+            }
+
+            case Constants.OPERATION_SEQUENCING:
+            {
+                return new SequencingOperation(operationGraph, inputGraphs);
+            }
+
+            case Constants.OPERATION_WRAP:
+            {
+                return new WrapGraphOperation(operationGraph, inputGraphs.get(0));
+            }
+
+            default:
+            {
+                throw new Exception("Unknown operation " + operationName + "!");
+            }
+        }
+    }
+
     /**
      * Execute the specific operation process.
      * @throws Exception 
@@ -47,6 +132,21 @@ abstract public class Operation
         }
     }
     
+    /**
+     * Stops an operation running in a cancelled task (interrupted thread).
+     *
+     * Called by the operations between their steps.
+     *
+     * @throws InterruptedException
+     */
+    public static void checkInterrupted() throws InterruptedException
+    {
+        if(Thread.currentThread().isInterrupted())
+        {
+            throw new InterruptedException("Operation cancelled.");
+        }
+    }
+    
     /**
      * Abstract definition for process in subclass.
      */
@@ -68,7 +168,29 @@ abstract public class Operation
         
         return graph;
     }
-    
+
+    /**
+     * Return the graphs if there are at least two and all are valid workflows.
+     *
+     * @param graphs
+     * @return List<PetriNetGraph>
+     * @throws Exception
+     */
+    protected List<PetriNetGraph> getIfAreWorkFlows(List<PetriNetGraph> graphs) throws Exception
+    {
+        if (graphs.size() < 2)
+        {
+            throw new Exception("At least two graphs required!");
+        }
+
+        for (PetriNetGraph graph : graphs)
+        {
+            getIfIsWorkFlow(graph);
+        }
+
+        return graphs;
+    }
+
     /**
      * Returns current operationGraph.
      * 
@@ -0,0 +1,240 @@
+package it.wolfed.operation;
+
+import it.wolfed.model.PetriNetGraph;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Least recently used cache of operation results.
+ *
+ * Results are keyed by the operation name and the structural hashes of the
+ * inputs (see {@link PetriNetGraph#getStructuralHash()}), so an operation
+ * on unchanged inputs is not executed again: the cached result is copied
+ * into the new operationGraph. Each entry also keeps the canonical texts
+ * of its inputs ({@link PetriNetGraph#getStructuralKey()}): a hit is used
+ * only if they are equal, a hash collision runs the operation.
+ *
+ * The cache keeps its own copy of each result: editing the returned graph
+ * doesn't change it. Its size is bounded by the cells of the results and
+ * of the inputs, the least recently used entries are removed first.
+ */
+public class OperationCache
+{
+    /**
+     * Max number of cells over the cached results and their inputs.
+     */
+    private final int maxCells;
+
+    /**
+     * Entries in access order (eldest first), cells count.
+     */
+    private final LinkedHashMap<String, Entry> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long cells;
+
+    /**
+     * Counters.
+     */
+    private long hits;
+    private long misses;
+
+    /**
+     * {@link OperationCache} Constructor.
+     *
+     * @param maxCells  max cells of the cached results and their inputs
+     */
+    public OperationCache(int maxCells)
+    {
+        this.maxCells = maxCells;
+    }
+
+    /**
+     * Executes an operation (see {@link Operation#factory}), or copies its
+     * cached result into operationGraph.
+     *
+     * Only an empty operationGraph uses the cache: the result of an
+     * operation depends on the cells already there.
+     *
+     * @param operationName
+     * @param operationGraph
+     * @param inputGraphs
+     * @return the result graph
+     * @throws Exception
+     */
+    public PetriNetGraph execute(String operationName, PetriNetGraph operationGraph, List<PetriNetGraph> inputGraphs) throws Exception
+    {
+        if(maxCells <= 0 || operationGraph.getChildCells(operationGraph.getDefaultParent()).length > 0)
+        {
+            return Operation.factory(operationName, operationGraph, inputGraphs).getOperationGraph();
+        }
+
+        String key = getKey(operationName, inputGraphs);
+        String[] inputs = new String[inputGraphs.size()];
+
+        for (int i = 0; i < inputs.length; i++)
+        {
+            inputs[i] = inputGraphs.get(i).getStructuralKey();
+        }
+
+        Entry cached;
+
+        synchronized (this)
+        {
+            cached = results.get(key);
+
+            // Same hashes but different inputs: a collision, not a hit
+            if(cached != null && Arrays.equals(cached.inputs, inputs) == false)
+            {
+                cached = null;
+            }
+
+            if(cached != null)
+            {
+                hits++;
+            }
+            else
+            {
+                misses++;
+            }
+        }
+
+        if(cached != null)
+        {
+            operationGraph.copyFrom(cached.result);
+            return operationGraph;
+        }
+
+        PetriNetGraph result = Operation.factory(operationName, operationGraph, inputGraphs).getOperationGraph();
+
+        Entry entry = new Entry();
+        entry.inputs = inputs;
+        entry.result = new PetriNetGraph(result.getId());
+        entry.result.setType(result.getType());
+        entry.result.copyFrom(result);
+        entry.cells = getCellsCount(entry.result);
+
+        for (PetriNetGraph input : inputGraphs)
+        {
+            entry.cells += getCellsCount(input);
+        }
+
+        synchronized (this)
+        {
+            put(key, entry);
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds an entry, removing the eldest ones over the cells limit.
+     *
+     * @param key
+     * @param entry
+     */
+    private void put(String key, Entry entry)
+    {
+        Entry replaced = results.put(key, entry);
+
+        if(replaced != null)
+        {
+            cells -= replaced.cells;
+        }
+
+        cells += entry.cells;
+
+        // Eldest first: the new entry is the last one, removed too if over the limit by itself
+        Iterator<Map.Entry<String, Entry>> eldest = results.entrySet().iterator();
+
+        while(cells > maxCells && eldest.hasNext())
+        {
+            cells -= eldest.next().getValue().cells;
+            eldest.remove();
+        }
+    }
+
+    private static int getCellsCount(PetriNetGraph graph)
+    {
+        return graph.getChildCells(graph.getDefaultParent()).length;
+    }
+
+    /**
+     * Key of an operation: name and inputs structural hashes.
+     *
+     * @param operationName
+     * @param inputGraphs
+     * @return String
+     */
+    private static String getKey(String operationName, List<PetriNetGraph> inputGraphs)
+    {
+        StringBuilder key = new StringBuilder(operationName);
+
+        for (PetriNetGraph input : inputGraphs)
+        {
+            key.append(':').append(Long.toHexString(input.getStructuralHash()));
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Returns the number of operations served from the cache.
+     *
+     * @return long
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the number of operations executed.
+     *
+     * @return long
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Returns the number of cached results.
+     *
+     * @return int
+     */
+    public synchronized int size()
+    {
+        return results.size();
+    }
+
+    /**
+     * Returns the cells of the cached results and their inputs.
+     *
+     * @return long
+     */
+    public synchronized long getCellsCount()
+    {
+        return cells;
+    }
+
+    /**
+     * Removes all the cached results (the counters are kept).
+     */
+    public synchronized void clear()
+    {
+        results.clear();
+        cells = 0;
+    }
+
+    /**
+     * Cached result with the canonical texts of its inputs.
+     */
+    private static class Entry
+    {
+        String[] inputs;
+        PetriNetGraph result;
+        int cells;
+    }
+}
@@ -4,14 +4,15 @@ import it.wolfed.model.PetriNetGraph;
 import it.wolfed.model.PlaceVertex;
 import it.wolfed.model.TransitionVertex;
 import it.wolfed.model.Vertex;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Sequencing Operation.
  */
 public class ParallelismOperation extends Operation
 {
-    PetriNetGraph firstGraph;
-    PetriNetGraph secondGraph;
+    List<PetriNetGraph> inputGraphs;
     
     /**
      * @param operationGraph
@@ -20,11 +21,23 @@ public class ParallelismOperation extends Operation
      * @throws Exception  
      */
     public ParallelismOperation(PetriNetGraph operationGraph, PetriNetGraph firstGraph, PetriNetGraph secondGraph) throws Exception
+    {
+        this(operationGraph, Arrays.asList(firstGraph, secondGraph));
+    }
+    
+    /**
+     * Parallelism of any number of graphs: one and-split and one and-join
+     * over all of them, with a single merge.
+     * 
+     * @param operationGraph
+     * @param inputGraphs
+     * @throws Exception  
+     */
+    public ParallelismOperation(PetriNetGraph operationGraph, List<PetriNetGraph> inputGraphs) throws Exception
     {
         super(operationGraph);
-        this.firstGraph = getIfIsWorkFlow(firstGraph);
-        this.secondGraph = getIfIsWorkFlow(secondGraph);
-        this.operationGraph = (new FullMergeOperation(operationGraph, firstGraph, secondGraph)).getOperationGraph();
+        this.inputGraphs = getIfAreWorkFlows(inputGraphs);
+        this.operationGraph = (new FullMergeOperation(operationGraph, inputGraphs)).getOperationGraph();
         execute();
     }
    
@@ -73,17 +86,17 @@ public class ParallelismOperation extends Operation
         PlaceVertex pi = getOperationGraph().insertPlace(null);
         TransitionVertex andSplit = getOperationGraph().insertTransition(null);
 
-        PlaceVertex initialPlaceAsFirst =  (PlaceVertex) getEquivalentVertex(1, firstGraph.getInitialPlaces().get(0));
-        PlaceVertex initialPlaceAsSecond = (PlaceVertex)getEquivalentVertex(2, secondGraph.getInitialPlaces().get(0));
-
         getOperationGraph().insertArc(null, pi, andSplit);
-        getOperationGraph().insertArc(null, andSplit, initialPlaceAsFirst);
-        getOperationGraph().insertArc(null, andSplit, initialPlaceAsSecond);
+        
+        for (int i = 0; i < inputGraphs.size(); i++)
+        {
+            PlaceVertex initialPlaceAsInput = (PlaceVertex) getEquivalentVertex(i + 1, inputGraphs.get(i).getInitialPlaces().get(0));
+            getOperationGraph().insertArc(null, andSplit, initialPlaceAsInput);
+            initialPlaceAsInput.setTokens(0);
+        }
         
         // Sets tokens
         pi.setTokens(1);
-        initialPlaceAsFirst.setTokens(0);
-        initialPlaceAsSecond.setTokens(0);
     }
     
     /**
@@ -100,11 +113,12 @@ public class ParallelismOperation extends Operation
         PlaceVertex po = getOperationGraph().insertPlace(null);
         TransitionVertex andJoin = getOperationGraph().insertTransition(null);
 
-        Vertex finalPlaceAsFirst = getEquivalentVertex(1, firstGraph.getFinalPlaces().get(0));
-        Vertex finalPlaceAsSecond = getEquivalentVertex(2, secondGraph.getFinalPlaces().get(0));
-
         getOperationGraph().insertArc(null, andJoin, po);
-        getOperationGraph().insertArc(null, finalPlaceAsFirst, andJoin);
-        getOperationGraph().insertArc(null, finalPlaceAsSecond, andJoin);
+        
+        for (int i = 0; i < inputGraphs.size(); i++)
+        {
+            Vertex finalPlaceAsInput = getEquivalentVertex(i + 1, inputGraphs.get(i).getFinalPlaces().get(0));
+            getOperationGraph().insertArc(null, finalPlaceAsInput, andJoin);
+        }
     }
 }
\ No newline at end of file
@@ -2,15 +2,17 @@ package it.wolfed.operation;
 
 import it.wolfed.manipulation.GraphManipulation;
 import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PlaceVertex;
 import it.wolfed.model.Vertex;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Sequencing Operation.
  */
 public class SequencingOperation extends Operation
 {
-    PetriNetGraph firstGraph;
-    PetriNetGraph secondGraph;
+    List<PetriNetGraph> inputGraphs;
     
     /**
      * @param operationGraph
@@ -19,11 +21,22 @@ public class SequencingOperation extends Operation
      * @throws Exception  
      */
     public SequencingOperation(PetriNetGraph operationGraph, PetriNetGraph firstGraph, PetriNetGraph secondGraph) throws Exception
+    {
+        this(operationGraph, Arrays.asList(firstGraph, secondGraph));
+    }
+    
+    /**
+     * Sequencing of any number of graphs, in order, with a single merge.
+     * 
+     * @param operationGraph
+     * @param inputGraphs
+     * @throws Exception  
+     */
+    public SequencingOperation(PetriNetGraph operationGraph, List<PetriNetGraph> inputGraphs) throws Exception
     {
         super(operationGraph);
-        this.firstGraph = getIfIsWorkFlow(firstGraph);
-        this.secondGraph = getIfIsWorkFlow(secondGraph);
-        this.operationGraph = (new FullMergeOperation(operationGraph, firstGraph, secondGraph)).getOperationGraph();
+        this.inputGraphs = getIfAreWorkFlows(inputGraphs);
+        this.operationGraph = (new FullMergeOperation(operationGraph, inputGraphs)).getOperationGraph();
         execute();
     }
    
@@ -46,17 +59,25 @@ public class SequencingOperation extends Operation
      * 
      * N1_P1 ◎ → N1_T1 ❒ -> P* ◯ → N2_T2 ❒ → N2_P2 ◯
      * P* = (N1_P2 + N2_P1)
+     * 
+     * And so on for the next graphs (P** = N2_P2 + N3_P1...).
      */
     @Override
     void process()
     {
-        Vertex finalPlaceAsFirst = getEquivalentVertex(1, firstGraph.getFinalPlaces().get(0));
-        Vertex initialPlaceAsSecond = getEquivalentVertex(2, secondGraph.getInitialPlaces().get(0));
+        for (int i = 1; i < inputGraphs.size(); i++)
+        {
+            Vertex finalPlaceAsCurrent = getEquivalentVertex(i, inputGraphs.get(i - 1).getFinalPlaces().get(0));
+            PlaceVertex initialPlaceAsNext = (PlaceVertex) getEquivalentVertex(i + 1, inputGraphs.get(i).getInitialPlaces().get(0));
 
-        GraphManipulation.cloneIncomingEdges(operationGraph, finalPlaceAsFirst, initialPlaceAsSecond);
-        GraphManipulation.removeVertexAndHisEdges(operationGraph, finalPlaceAsFirst);
+            GraphManipulation.cloneIncomingEdges(operationGraph, finalPlaceAsCurrent, initialPlaceAsNext);
+            GraphManipulation.removeVertexAndHisEdges(operationGraph, finalPlaceAsCurrent);
+            
+            // P* is not initial anymore
+            initialPlaceAsNext.setTokens(0);
+        }
         
         // set token to initial place
         operationGraph.getInitialPlaces().get(0).setTokens(1);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,579 @@
+package it.wolfed.operation;
+
+import it.wolfed.model.ArcEdge;
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PlaceVertex;
+import it.wolfed.model.TransitionVertex;
+import it.wolfed.model.Vertex;
+import it.wolfed.util.Constants;
+import it.wolfed.util.IntList;
+import it.wolfed.util.XMLStreamUtils;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Seeded generator of random workflow nets, for load tests.
+ *
+ * A net of the requested size (places and transitions) is built top-down
+ * with the same patterns of the operations: sequencing, parallelism,
+ * deferred choice, one or more and zero or more iteration. Each pattern
+ * is built between two given places, down to single transitions, so the
+ * result is always a sound workflow net (one token in the initial place).
+ *
+ * As in {@link CompositionOperation}, the net is kept in plain int arrays:
+ * the time is linear in the size, a million nodes are generated in a few
+ * seconds. The net is then written as pnml (streamed, without a graph) or
+ * added to a new {@link PetriNetGraph} with a single addCells (the graph
+ * model is far slower than the pnml export on the biggest nets).
+ *
+ * {@link WorkFlowGenerator#addDefect(String)} breaks the net on purpose.
+ *
+ * The same seed and size give the same net.
+ */
+public class WorkFlowGenerator
+{
+    /**
+     * Vertex references: (index << 1) | kind.
+     */
+    private static final int PLACE = 0;
+    private static final int TRANSITION = 1;
+
+    /**
+     * Max operands of sequencing, parallelism and deferred choice.
+     */
+    private static final int MAX_OPERANDS = 4;
+
+    /**
+     * Patterns.
+     */
+    private static final int SEQUENCING = 0;
+    private static final int DEFERRED_CHOICE = 1;
+    private static final int PARALLELISM = 2;
+    private static final int ONE_OR_MORE = 3;
+    private static final int ZERO_OR_MORE = 4;
+
+    /**
+     * Relative frequency and min size of each pattern.
+     */
+    private static final int[] PATTERN_WEIGHTS = {4, 2, 2, 1, 1};
+    private static final int[] PATTERN_MIN_SIZES = {3, 2, 8, 6, 7};
+
+    private final Random random;
+
+    /**
+     * Net: places count, transitions count, arcs (source and target references).
+     */
+    private int places;
+    private int transitions;
+    private final IntList arcSources = new IntList();
+    private final IntList arcTargets = new IntList();
+
+    /**
+     * Initial and final places.
+     */
+    private int initialPlace;
+    private int finalPlace;
+
+    /**
+     * {@link WorkFlowGenerator} Constructor.
+     *
+     * @param seed
+     */
+    public WorkFlowGenerator(long seed)
+    {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generates a new sound workflow net (the previous one is dropped).
+     *
+     * @param nodes     places and transitions, at least 3
+     * @return this
+     */
+    public WorkFlowGenerator generate(int nodes)
+    {
+        if(nodes < 3)
+        {
+            throw new IllegalArgumentException("A workflow net requires at least 3 nodes.");
+        }
+
+        places = 0;
+        transitions = 0;
+        arcSources.clear();
+        arcTargets.clear();
+
+        initialPlace = addPlace();
+        finalPlace = addPlace();
+
+        // Pending fragments: initial place, final place, size
+        IntList pending = new IntList();
+        pending.add(initialPlace);
+        pending.add(finalPlace);
+        pending.add(nodes - 2);
+
+        int[] sizes = new int[MAX_OPERANDS];
+
+        while(pending.isEmpty() == false)
+        {
+            int size = pending.removeLast();
+            int fragmentFinal = pending.removeLast();
+            int fragmentInitial = pending.removeLast();
+
+            if(size <= 1)
+            {
+                // Single task
+                int task = addTransition();
+                addArc(ref(fragmentInitial, PLACE), ref(task, TRANSITION));
+                addArc(ref(task, TRANSITION), ref(fragmentFinal, PLACE));
+                continue;
+            }
+
+            int pattern = getPattern(size);
+
+            switch (pattern)
+            {
+                case SEQUENCING:
+                {
+                    int operands = getOperandsCount((size + 1) / 2);
+                    split(size - (operands - 1), operands, sizes);
+
+                    int from = fragmentInitial;
+
+                    for (int i = 0; i < operands; i++)
+                    {
+                        int to = (i == operands - 1) ? fragmentFinal : addPlace();
+                        push(pending, from, to, sizes[i]);
+                        from = to;
+                    }
+
+                    break;
+                }
+
+                case DEFERRED_CHOICE:
+                {
+                    int operands = getOperandsCount(size);
+                    split(size, operands, sizes);
+
+                    for (int i = 0; i < operands; i++)
+                    {
+                        push(pending, fragmentInitial, fragmentFinal, sizes[i]);
+                    }
+
+                    break;
+                }
+
+                case PARALLELISM:
+                {
+                    int operands = getOperandsCount((size - 2) / 3);
+                    split(size - 2 - 2 * operands, operands, sizes);
+
+                    int andSplit = addTransition();
+                    int andJoin = addTransition();
+                    addArc(ref(fragmentInitial, PLACE), ref(andSplit, TRANSITION));
+                    addArc(ref(andJoin, TRANSITION), ref(fragmentFinal, PLACE));
+
+                    for (int i = 0; i < operands; i++)
+                    {
+                        int from = addPlace();
+                        int to = addPlace();
+                        addArc(ref(andSplit, TRANSITION), ref(from, PLACE));
+                        addArc(ref(to, PLACE), ref(andJoin, TRANSITION));
+                        push(pending, from, to, sizes[i]);
+                    }
+
+                    break;
+                }
+
+                default:
+                {
+                    // Iteration: initial -> T* -> from ... to -> T* -> final, to -> loop -> from
+                    int from = addPlace();
+                    int to = addPlace();
+                    int start = addTransition();
+                    int end = addTransition();
+                    int loop = addTransition();
+
+                    addArc(ref(fragmentInitial, PLACE), ref(start, TRANSITION));
+                    addArc(ref(start, TRANSITION), ref(from, PLACE));
+                    addArc(ref(to, PLACE), ref(end, TRANSITION));
+                    addArc(ref(end, TRANSITION), ref(fragmentFinal, PLACE));
+                    addArc(ref(to, PLACE), ref(loop, TRANSITION));
+                    addArc(ref(loop, TRANSITION), ref(from, PLACE));
+
+                    int overhead = 5;
+
+                    if(pattern == ZERO_OR_MORE)
+                    {
+                        int skip = addTransition();
+                        addArc(ref(fragmentInitial, PLACE), ref(skip, TRANSITION));
+                        addArc(ref(skip, TRANSITION), ref(fragmentFinal, PLACE));
+                        overhead++;
+                    }
+
+                    push(pending, from, to, size - overhead);
+                }
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Breaks the generated net.
+     *
+     * Constants.GENERATOR_IMPROPER_COMPLETION: a random transition also
+     * marks the final place.
+     * Constants.GENERATOR_DEAD_TRANSITION: a random transition also needs a
+     * new place that only the transition itself marks.
+     * Constants.GENERATOR_NOT_WORKFLOW: a random transition also marks a new
+     * place without output arcs (a second final place).
+     *
+     * The first two leave a workflow net, not sound.
+     *
+     * @param defect
+     * @return this
+     */
+    public WorkFlowGenerator addDefect(String defect)
+    {
+        if(transitions == 0)
+        {
+            throw new IllegalStateException("No net generated.");
+        }
+
+        int transition = random.nextInt(transitions);
+
+        switch (defect)
+        {
+            case Constants.GENERATOR_IMPROPER_COMPLETION:
+            {
+                addArc(ref(transition, TRANSITION), ref(finalPlace, PLACE));
+                break;
+            }
+
+            case Constants.GENERATOR_DEAD_TRANSITION:
+            {
+                int blocking = addPlace();
+                addArc(ref(transition, TRANSITION), ref(blocking, PLACE));
+                addArc(ref(blocking, PLACE), ref(transition, TRANSITION));
+                break;
+            }
+
+            case Constants.GENERATOR_NOT_WORKFLOW:
+            {
+                addArc(ref(transition, TRANSITION), ref(addPlace(), PLACE));
+                break;
+            }
+
+            default:
+            {
+                throw new IllegalArgumentException("Unknown defect " + defect + "!");
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Picks a pattern that fits in size, by weight.
+     *
+     * @param size
+     * @return pattern
+     */
+    private int getPattern(int size)
+    {
+        int total = 0;
+
+        for (int pattern = 0; pattern < PATTERN_WEIGHTS.length; pattern++)
+        {
+            if(PATTERN_MIN_SIZES[pattern] <= size)
+            {
+                total += PATTERN_WEIGHTS[pattern];
+            }
+        }
+
+        int pick = random.nextInt(total);
+
+        for (int pattern = 0; pattern < PATTERN_WEIGHTS.length; pattern++)
+        {
+            if(PATTERN_MIN_SIZES[pattern] <= size)
+            {
+                pick -= PATTERN_WEIGHTS[pattern];
+
+                if(pick < 0)
+                {
+                    return pattern;
+                }
+            }
+        }
+
+        return SEQUENCING;
+    }
+
+    /**
+     * Random operands count: from 2 to min(max, MAX_OPERANDS).
+     *
+     * @param max
+     * @return int
+     */
+    private int getOperandsCount(int max)
+    {
+        return 2 + random.nextInt(Math.min(max, MAX_OPERANDS) - 1);
+    }
+
+    /**
+     * Splits a size in random parts, each at least 1.
+     *
+     * @param size
+     * @param parts
+     * @param sizes     destination
+     */
+    private void split(int size, int parts, int[] sizes)
+    {
+        double[] weights = new double[parts];
+        double total = 0;
+
+        for (int i = 0; i < parts; i++)
+        {
+            weights[i] = random.nextDouble();
+            total += weights[i];
+        }
+
+        int remaining = size - parts;
+        int assigned = 0;
+
+        for (int i = 0; i < parts; i++)
+        {
+            sizes[i] = 1 + (int) (remaining * weights[i] / total);
+            assigned += sizes[i];
+        }
+
+        // Rounding leftover
+        sizes[random.nextInt(parts)] += size - assigned;
+    }
+
+    private static void push(IntList pending, int initial, int fin, int size)
+    {
+        pending.add(initial);
+        pending.add(fin);
+        pending.add(size);
+    }
+
+    private static int ref(int index, int kind)
+    {
+        return (index << 1) | kind;
+    }
+
+    private int addPlace()
+    {
+        return places++;
+    }
+
+    private int addTransition()
+    {
+        return transitions++;
+    }
+
+    private void addArc(int source, int target)
+    {
+        arcSources.add(source);
+        arcTargets.add(target);
+    }
+
+    /**
+     * Returns the number of places.
+     *
+     * @return int
+     */
+    public int getPlacesCount()
+    {
+        return places;
+    }
+
+    /**
+     * Returns the number of transitions.
+     *
+     * @return int
+     */
+    public int getTransitionsCount()
+    {
+        return transitions;
+    }
+
+    /**
+     * Returns the number of arcs.
+     *
+     * @return int
+     */
+    public int getArcsCount()
+    {
+        return arcSources.size();
+    }
+
+    /**
+     * Adds the generated net to a new graph.
+     *
+     * @param id
+     * @return PetriNetGraph
+     */
+    public PetriNetGraph toGraph(String id)
+    {
+        PetriNetGraph graph = new PetriNetGraph(id);
+        Object parent = graph.getDefaultParent();
+        Object[] cells = new Object[places + transitions + arcSources.size()];
+        Vertex[] vertices = new Vertex[2 * Math.max(places, transitions)];
+        int count = 0;
+
+        for (int p = 0; p < places; p++)
+        {
+            String placeId = graph.getSetNextPlaceId();
+            PlaceVertex place = new PlaceVertex(parent, placeId, placeId, 0, 0);
+            place.setTokens((p == initialPlace) ? 1 : 0);
+
+            vertices[ref(p, PLACE)] = place;
+            cells[count++] = place;
+        }
+
+        for (int t = 0; t < transitions; t++)
+        {
+            String transitionId = graph.getSetNextTransitionId();
+            vertices[ref(t, TRANSITION)] = new TransitionVertex(parent, transitionId, transitionId, 0, 0);
+            cells[count++] = vertices[ref(t, TRANSITION)];
+        }
+
+        for (int a = 0; a < arcSources.size(); a++)
+        {
+            cells[count++] = new ArcEdge(
+                    parent,
+                    graph.getSetNextArcId(),
+                    "",
+                    vertices[arcSources.get(a)],
+                    vertices[arcTargets.get(a)]
+            );
+        }
+
+        graph.addCells(cells);
+
+        return graph;
+    }
+
+    /**
+     * Writes the generated net to a pnml file.
+     *
+     * @param file
+     * @param id    net id
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    public void exportPNML(File file, String id) throws IOException, XMLStreamException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            Writer output = new BufferedWriter(Channels.newWriter(channel, "UTF-8"), 1 << 16))
+        {
+            exportPNML(output, id);
+        }
+    }
+
+    /**
+     * Writes the generated net as a pnml document, same format of
+     * {@link PetriNetGraph#exportPNML(Writer)}, without building a graph.
+     *
+     * @param output
+     * @param id    net id
+     * @throws XMLStreamException
+     */
+    public void exportPNML(Writer output, String id) throws XMLStreamException
+    {
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output);
+
+        try
+        {
+            output.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+        }
+        catch (IOException ex)
+        {
+            throw new XMLStreamException(ex);
+        }
+
+        writer.writeStartElement(Constants.PNML_TAG);
+        writer.writeStartElement(Constants.PNML_NET);
+        writer.writeAttribute(Constants.PNML_ID, id);
+        writer.writeAttribute(Constants.PNML_TYPE, "");
+
+        for (int p = 0; p < places; p++)
+        {
+            writeVertex(writer, Constants.PNML_PLACE, "p" + (p + 1), (p == initialPlace) ? 1 : 0);
+        }
+
+        for (int t = 0; t < transitions; t++)
+        {
+            writeVertex(writer, Constants.PNML_TRANSITION, "t" + (t + 1), 0);
+        }
+
+        for (int a = 0; a < arcSources.size(); a++)
+        {
+            writer.writeEmptyElement(Constants.PNML_ARC);
+            writer.writeAttribute(Constants.PNML_ID, "a" + (a + 1));
+            writer.writeAttribute(Constants.PNML_SOURCE, getId(arcSources.get(a)));
+            writer.writeAttribute(Constants.PNML_TARGET, getId(arcTargets.get(a)));
+        }
+
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.flush();
+    }
+
+    /**
+     * Writes a place or a transition (as {@link PlaceVertex#exportPNML}).
+     *
+     * @param writer
+     * @param element
+     * @param vertexId
+     * @param tokens
+     * @throws XMLStreamException
+     */
+    private static void writeVertex(XMLStreamWriter writer, String element, String vertexId, int tokens) throws XMLStreamException
+    {
+        writer.writeStartElement(element);
+        writer.writeAttribute(Constants.PNML_ID, vertexId);
+
+        writer.writeStartElement(Constants.PNML_NAME);
+        XMLStreamUtils.writeTextElement(writer, Constants.PNML_TEXT, vertexId);
+        writer.writeEndElement();
+
+        writer.writeStartElement(Constants.PNML_GRAPHICS);
+        writer.writeEmptyElement(Constants.PNML_GRAPHICS_POSITION);
+        writer.writeAttribute(Constants.PNML_GRAPHICS_POSITION_X, "0.0");
+        writer.writeAttribute(Constants.PNML_GRAPHICS_POSITION_Y, "0.0");
+        writer.writeEndElement();
+
+        if(tokens > 0)
+        {
+            writer.writeStartElement(Constants.PNML_INITIALMARKING);
+            XMLStreamUtils.writeTextElement(writer, Constants.PNML_TEXT, String.valueOf(tokens));
+            writer.writeEndElement();
+        }
+
+        writer.writeEndElement();
+    }
+
+    /**
+     * Pnml id of a vertex reference.
+     *
+     * @param ref
+     * @return String
+     */
+    private static String getId(int ref)
+    {
+        return (((ref & 1) == PLACE) ? "p" : "t") + ((ref >> 1) + 1);
+    }
+}
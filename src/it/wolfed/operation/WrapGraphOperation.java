@@ -3,6 +3,8 @@ package it.wolfed.operation;
 import it.wolfed.model.PetriNetGraph;
 import it.wolfed.model.PlaceVertex;
 import it.wolfed.model.TransitionVertex;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Wrap Petri Net Graph Operation.
@@ -43,6 +45,9 @@ public class WrapGraphOperation extends Operation
      */
     private void andSplitPattern()
     {
+        // old initial places, before the new place i becomes initial
+        List<PlaceVertex> initialPlaces = new ArrayList<>(operationGraph.getInitialPlaces());
+        
         // new initial Place i
         PlaceVertex initialPlaceI = operationGraph.insertPlace(null);
         initialPlaceI.setTokens(1);
@@ -53,7 +58,7 @@ public class WrapGraphOperation extends Operation
         operationGraph.insertArc(null, initialPlaceI, andSplitTransition);
         
         // for each old initial place i_old, create an Edge (and-split, i_old)
-        for (PlaceVertex initialPlace  : operationGraph.getInitialPlaces())
+        for (PlaceVertex initialPlace  : initialPlaces)
         {
             initialPlace.setTokens(0);
             operationGraph.insertArc(null, andSplitTransition, initialPlace);
@@ -64,6 +69,9 @@ public class WrapGraphOperation extends Operation
      */
     private void andJoinPattern()
     {
+        // old final places, before the new place o becomes final
+        List<PlaceVertex> finalPlaces = new ArrayList<>(this.operationGraph.getFinalPlaces());
+        
         // new final place o
         PlaceVertex finalPlaceO = this.operationGraph.insertPlace(null);
 
@@ -73,7 +81,7 @@ public class WrapGraphOperation extends Operation
         this.operationGraph.insertArc(null, andJoinTransition, finalPlaceO);
         
         // for each old final palce o_old, create an Edge (o_old, and-join) 
-        for (PlaceVertex finalPlace  : this.operationGraph.getFinalPlaces())
+        for (PlaceVertex finalPlace  : finalPlaces)
         {
             this.operationGraph.insertArc(null, finalPlace, andJoinTransition);
         }
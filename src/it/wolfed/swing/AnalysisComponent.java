@@ -3,52 +3,283 @@ package it.wolfed.swing;
 import com.mxgraph.util.mxEvent;
 import com.mxgraph.util.mxEventObject;
 import com.mxgraph.util.mxEventSource;
+import it.wolfed.analysis.Invariants;
+import it.wolfed.analysis.SoundnessChecker;
 import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PetriNetKernel;
+import it.wolfed.util.Constants;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 
+/**
+ * Workflow, soundness and invariants analysis of a graph.
+ *
+ * The changes are coalesced: the analysis starts after
+ * {@link Constants#ANALYSIS_DELAY} ms without changes. It runs in
+ * background on a {@link PetriNetKernel} snapshot (names included), a newer
+ * change cancels the running one.
+ */
 public final class AnalysisComponent extends JPanel
 {
     private PetriNetGraph graph;
-    
+
+    /**
+     * Analysis results.
+     */
+    private final JLabel resultLabel = new JLabel();
+
+    /**
+     * Restarted on each change, starts the analysis.
+     */
+    private final Timer delayTimer;
+
+    /**
+     * Running analysis (the last started).
+     */
+    private SwingWorker<String, Void> task;
+
     public AnalysisComponent(PetriNetGraph graph)
     {
         this.graph = graph;
+        add(resultLabel);
+
+        delayTimer = new Timer(Constants.ANALYSIS_DELAY, new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                process();
+            }
+        });
+        delayTimer.setRepeats(false);
+
         process();
-        
+
         // Auto update analysis panel on change
         graph.getModel().addListener(mxEvent.CHANGE, new mxEventSource.mxIEventListener()
         {
             @Override
             public void invoke(Object sender, mxEventObject evt)
             {
-                process();
-                doLayout();
+                delayTimer.restart();
             }
         });
     }
-    
+
+    /**
+     * Starts the analysis of the current graph, cancelling the running one.
+     *
+     * Must be called on the EDT.
+     */
     public void process()
     {
-        // Refresh
-        removeAll();
-               
+        delayTimer.stop();
+
+        if(task != null)
+        {
+            task.cancel(true);
+        }
+
+        final PetriNetKernel kernel = new PetriNetKernel(graph);
+
+        task = new SwingWorker<String, Void>()
+        {
+            @Override
+            protected String doInBackground() throws Exception
+            {
+                return analyze(kernel);
+            }
+
+            @Override
+            protected void done()
+            {
+                // Stale result
+                if(isCancelled() || task != this)
+                {
+                    return;
+                }
+
+                try
+                {
+                    resultLabel.setText(get());
+                }
+                catch (InterruptedException | ExecutionException ex)
+                {
+                    resultLabel.setText("<html><span color=\"red\">" + ex.getMessage() + "</span></html>");
+                }
+
+                revalidate();
+            }
+        };
+
+        task.execute();
+    }
+
+    /**
+     * Analysis of a net.
+     *
+     * @param kernel
+     * @return html
+     */
+    private static String analyze(PetriNetKernel kernel)
+    {
         // Is WorkFlow
-        add(new JLabel(
-            "<html>"
+        return "<html>"
             + "<strong>Is WorkFlow: </strong>"
-            + checkProperty("Single Initial Place", graph.isSingleInitialPlace()) + " | "
-            + checkProperty("Single Final Place", graph.isSingleFinalPlace()) + " | "
-            + checkProperty("Flow Strongly Connected", graph.isWorkflowStronglyConnected())
-            +"</html>"
+            + checkProperty("Single Initial Place", kernel.isSingleInitialPlace()) + " | "
+            + checkProperty("Single Final Place", kernel.isSingleFinalPlace()) + " | "
+            + checkProperty("Flow Strongly Connected", kernel.isWorkflowStronglyConnected())
+            + processSoundness(kernel)
+            + processInvariants(kernel, true)
+            + processInvariants(kernel, false)
+            + "</html>";
+    }
+
+    /**
+     * Soundness of the net (only for workflow nets).
+     *
+     * @param kernel
+     * @return html
+     */
+    private static String processSoundness(PetriNetKernel kernel)
+    {
+        if(kernel.isWorkflowStronglyConnected() == false)
+        {
+            return "";
+        }
+
+        SoundnessChecker checker = new SoundnessChecker(kernel, Constants.SOUNDNESS_MAX_STATES);
+        checker.setReduction(true);
+        checker.check();
+
+        if(checker.getResult().equals(Constants.SOUNDNESS_UNKNOWN))
+        {
+            return "<br><strong>Soundness: </strong>"
+                + "<span color=\"gray\">? " + checker.getResult()
+                + " (" + checker.getStatesCount() + " states)</span>";
+        }
+
+        StringBuilder text = new StringBuilder(checker.getResult());
 
-        ));
+        if(checker.getWitness() != null)
+        {
+            text.append(" after [");
+
+            for (String transition : checker.getWitnessNames())
+            {
+                text.append(" ").append(transition);
+            }
+
+            text.append(" ]");
+        }
+
+        if(checker.getResult().equals(Constants.SOUNDNESS_DEAD_TRANSITION))
+        {
+            text.append(":");
+
+            for (String transition : checker.getDeadTransitionNames())
+            {
+                text.append(" ").append(transition);
+            }
+        }
+
+        return "<br><strong>Soundness: </strong>" + checkProperty(text.toString(), checker.isSound());
     }
-    
-    private String checkProperty(String text, Boolean question)
+
+    private static String checkProperty(String text, Boolean question)
     {
-        return (question == true) 
+        return (question == true)
             ? "<span color=\"green\">&oplus; " + text + "</span> "
             : "<span color=\"red\">&otimes; " + text + "</span> ";
     }
+
+    /**
+     * P- or T-invariants of the net (of the short-circuited net if it has
+     * a single initial and final place: t* closes the workflow cycles).
+     *
+     * @param kernel
+     * @param places    P-invariants (true) or T-invariants (false)
+     * @return html
+     */
+    private static String processInvariants(PetriNetKernel kernel, boolean places)
+    {
+        if(kernel.isSingleInitialPlace() && kernel.isSingleFinalPlace())
+        {
+            kernel = kernel.shortCircuit();
+        }
+
+        Invariants invariants = new Invariants(kernel, places, Constants.INVARIANTS_MAX_ROWS);
+        String title = "<br><strong>" + (places ? "P" : "T") + "-invariants: </strong>";
+
+        if(invariants.compute() == false)
+        {
+            return title + "<span color=\"gray\">? Rows limit reached ("
+                + Constants.INVARIANTS_MAX_ROWS + ")</span>";
+        }
+
+        List<Invariants.Invariant> found = invariants.getInvariants();
+        StringBuilder text = new StringBuilder();
+
+        if(invariants.isCovered())
+        {
+            text.append("Covered");
+        }
+        else
+        {
+            text.append("Not covered:");
+
+            for (int index : invariants.getUncovered())
+            {
+                text.append(" ").append(getName(kernel, places, index));
+            }
+        }
+
+        text.append(" (").append(found.size()).append(" minimal)");
+        StringBuilder list = new StringBuilder();
+
+        for (int i = 0; i < found.size() && i < Constants.INVARIANTS_SHOWN; i++)
+        {
+            Invariants.Invariant invariant = found.get(i);
+            list.append(" [");
+
+            for (int j = 0; j < invariant.getSupport().length; j++)
+            {
+                BigInteger weight = invariant.getWeights()[j];
+
+                list.append((j == 0) ? " " : " + ")
+                    .append(weight.equals(BigInteger.ONE) ? "" : weight + " ")
+                    .append(getName(kernel, places, invariant.getSupport()[j]));
+            }
+
+            list.append(" ]");
+        }
+
+        if(found.size() > Constants.INVARIANTS_SHOWN)
+        {
+            list.append(" ...");
+        }
+
+        return title + checkProperty(text.toString(), invariants.isCovered()) + list;
+    }
+
+    /**
+     * Returns the name of a place or a transition (t* for the short-circuit)
+     * from the snapshot: the cells are never read off the EDT.
+     *
+     * @param kernel
+     * @param place
+     * @param index
+     * @return String
+     */
+    private static String getName(PetriNetKernel kernel, boolean place, int index)
+    {
+        return place ? kernel.getPlaceName(index) : kernel.getTransitionName(index);
+    }
 }
@@ -31,6 +31,17 @@ public class MenuBarController extends JMenuBar
         Constants.OPERATION_WRAP
     };
     
+    /**
+     * Available simulations (in menu).
+     */
+    private final String[] simulations =
+    {
+        Constants.SIMULATION_TOKENGAME,
+        Constants.SIMULATION_REACHABILITY,
+        Constants.SIMULATION_COVERABILITY,
+        Constants.SIMULATION_SYMBOLIC
+    };
+    
     /**
      * Available layouts (in menu).
      */
@@ -137,6 +148,28 @@ public class MenuBarController extends JMenuBar
             }
         }
             
+        // Simulation
+        {
+            JMenu simulationMenu = new JMenu("Simulation");
+            simulationMenu.setMnemonic('s');
+            add(simulationMenu);
+            
+            for(String simulation : simulations)
+            {
+                JMenuItem simulationItem = new JMenuItem(simulation);
+                simulationItem.addActionListener(new ActionListener() 
+                {  
+                    @Override
+                    public void actionPerformed(ActionEvent e)
+                    {
+                        editor.executeSimulation(e.getActionCommand());
+                    }
+                });
+                
+                simulationMenu.add(simulationItem);
+            }
+        }
+            
         // Layout
         {
             JMenu layoutMenu = new JMenu("Layouts");
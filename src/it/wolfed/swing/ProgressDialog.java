@@ -0,0 +1,82 @@
+package it.wolfed.swing;
+
+import java.awt.BorderLayout;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingWorker;
+
+/**
+ * Progress of a background task, with a cancel button.
+ *
+ * The dialog is not modal: the editor stays usable while the task runs.
+ * Cancel (or closing the dialog) interrupts the task and discards its
+ * result. The compositions and the analyses stop at their next check; the
+ * jgraphx layouts ignore the interrupts and end in background.
+ */
+public class ProgressDialog extends JDialog
+{
+    private final JLabel message = new JLabel(" ");
+    private final JProgressBar progressBar = new JProgressBar();
+
+    /**
+     * @param owner
+     * @param title
+     * @param task
+     */
+    public ProgressDialog(Frame owner, String title, final SwingWorker<?, ?> task)
+    {
+        super(owner, title, false);
+
+        progressBar.setIndeterminate(true);
+
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.setToolTipText("Discards the result (a running layout ends in background)");
+        cancelButton.addActionListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                task.cancel(true);
+            }
+        });
+
+        setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter()
+        {
+            @Override
+            public void windowClosing(WindowEvent e)
+            {
+                task.cancel(true);
+            }
+        });
+
+        JPanel panel = new JPanel(new BorderLayout(6, 6));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        panel.add(message, BorderLayout.PAGE_START);
+        panel.add(progressBar, BorderLayout.CENTER);
+        panel.add(cancelButton, BorderLayout.PAGE_END);
+
+        setContentPane(panel);
+        setSize(300, 130);
+        setLocationRelativeTo(owner);
+    }
+
+    /**
+     * Shows the current step of the task.
+     *
+     * @param text
+     */
+    public void setMessage(String text)
+    {
+        message.setText(text);
+    }
+}
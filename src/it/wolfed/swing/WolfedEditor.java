@@ -3,45 +3,45 @@ package it.wolfed.swing;
 import com.mxgraph.layout.hierarchical.mxHierarchicalLayout;
 import com.mxgraph.layout.mxCompactTreeLayout;
 import com.mxgraph.layout.mxOrganicLayout;
+import com.mxgraph.model.mxCell;
+import com.mxgraph.model.mxGraphModel;
 import com.mxgraph.view.mxGraph;
+import it.wolfed.analysis.CoverabilityGraph;
+import it.wolfed.analysis.ReachabilityGraph;
+import it.wolfed.analysis.SymbolicReachability;
+import it.wolfed.analysis.TokenGame;
 import it.wolfed.model.PetriNetGraph;
-import it.wolfed.operation.AlternationOperation;
-import it.wolfed.operation.CloneGraphOperation;
-import it.wolfed.operation.DefferedChoiceOperation;
-import it.wolfed.operation.ExplicitChoiceOperation;
-import it.wolfed.operation.FullMergeOperation;
+import it.wolfed.model.PetriNetKernel;
 import it.wolfed.operation.Operation;
-import it.wolfed.operation.MutualExclusionOperation;
-import it.wolfed.operation.OneOrMoreIterationOperation;
-import it.wolfed.operation.OneServePerTimeOperation;
-import it.wolfed.operation.ParallelismOperation;
-import it.wolfed.operation.SequencingOperation;
-import it.wolfed.operation.WrapGraphOperation;
-import it.wolfed.operation.ZeroOrMoreIterationOperation;
+import it.wolfed.operation.OperationCache;
 import it.wolfed.util.Constants;
-import it.wolfed.util.IterableNodeList;
 import java.awt.Component;
 import java.awt.Toolkit;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.JTabbedPane;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 import javax.swing.filechooser.FileNameExtensionFilter;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.xml.sax.SAXException;
+import javax.xml.stream.XMLStreamException;
 
 /**
  * Wolfed. WOrkflow Light Fast EDitor.
@@ -77,6 +77,35 @@ public class WolfedEditor extends JFrame
      * AnalysisComponent.
      */
     private JTabbedPane tabs = new JTabbedPane();
+    
+    /**
+     * Results of the last operations.
+     */
+    private final OperationCache operationCache = new OperationCache(Constants.OPERATION_CACHE_CELLS);
+    
+    /**
+     * Runs the background tasks one at a time.
+     * 
+     * A cancelled task can't always stop at once (the jgraphx layouts
+     * ignore the interrupts): the next task waits for it to end.
+     */
+    private final ThreadPoolExecutor taskExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "wolfed-task");
+            thread.setDaemon(true);
+            
+            return thread;
+        }
+    });
+    
+    /**
+     * The task shown in the progress dialog, null if none.
+     */
+    private SwingWorker<?, Void> currentTask;
  
     /**
      * Constructor.
@@ -183,23 +212,17 @@ public class WolfedEditor extends JFrame
      */
     private void importFile(File filePnml)
     {
-        try
-        {
-            DocumentBuilder builder = DocumentBuilderFactory
-                    .newInstance()
-                    .newDocumentBuilder();
+        // Sets the graph id as the filename without ext
+        String defaultId = filePnml.getName().substring(0, filePnml.getName().lastIndexOf('.'));
 
-            Document doc = builder.parse(filePnml);
-            doc.getDocumentElement().normalize();
-
-            for (final Node netNode : new IterableNodeList(doc.getElementsByTagName(Constants.PNML_NET)))
+        try (InputStream input = new BufferedInputStream(new FileInputStream(filePnml)))
+        {
+            for (PetriNetGraph graph : PetriNetGraph.factory(input, defaultId))
             {
-                // Sets the graph id as the filename without ext
-                String defaultId = filePnml.getName().substring(0, filePnml.getName().lastIndexOf('.'));
-                insertGraph(filePnml.getName(), PetriNetGraph.factory(netNode, defaultId));
+                insertGraph(filePnml.getName(), graph);
             }
         }
-        catch (ParserConfigurationException | SAXException | IOException ex)
+        catch (XMLStreamException | IOException ex)
         {
             showErrorMessage(ex);
         }
@@ -247,29 +270,27 @@ public class WolfedEditor extends JFrame
                 }
 
                 File exportedFile = fileChooser.getSelectedFile();
-                String exportedGraph = "";
 
                 switch (exportType)
                 {
                     case Constants.EDITOR_EXPORT_PNML:
                     {
-                        exportedGraph = getSelectedGraph().exportPNML();
+                        getSelectedGraph().exportPNML(exportedFile);
                         break;
                     }
 
                     case Constants.EDITOR_EXPORT_GV:
                     {
-                        exportedGraph = getSelectedGraph().exportDOT();
+                        try (BufferedWriter dotWriter = new BufferedWriter(new FileWriter(exportedFile.getCanonicalPath()), 1 << 16))
+                        {
+                            getSelectedGraph().exportDOT(dotWriter);
+                        }
                         break;
                     }
                 }
-
-                BufferedWriter pnmlWriter = new BufferedWriter(new FileWriter(exportedFile.getCanonicalPath()));
-                pnmlWriter.write(exportedGraph);
-                pnmlWriter.flush();
             }
         }
-        catch (TransformerException | ParserConfigurationException | IOException ex)
+        catch (XMLStreamException | IOException ex)
         {
             showErrorMessage(ex);
         }
@@ -279,146 +300,410 @@ public class WolfedEditor extends JFrame
      * Execute an operation (composition) to a graph.
      *
      * The graph can be a valid workflownet or a simple petrinet. Specific
-     * checks will be made in Operation().
+     * checks will be made in Operation(). Results of operations on
+     * unchanged graphs are copied from the {@link OperationCache}.
      *
-     * @todo refactor this
      * @param operationName
      */
     public void executeOperation(String operationName)
     {
-        Operation operation = null;
         PetriNetGraph operationGraph = new PetriNetGraph("new_" + (indexOpenedGraphs + 1));
+        List<PetriNetGraph> inputGraphs = new ArrayList<>();
+        inputGraphs.add(getSelectedGraph());
 
         try
         {
             switch (operationName)
             {
+                // Binary operations: select the second graph
                 case Constants.OPERATION_ALTERNATION:
+                case Constants.OPERATION_DEFFEREDCHOICE:
+                case Constants.OPERATION_EXPLICITCHOICE:
+                case Constants.OPERATION_MUTUALEXCLUSION:
+                case Constants.OPERATION_FULLMERGE:
+                case Constants.OPERATION_PARALLELISM:
+                case Constants.OPERATION_SEQUENCING:
                 {
                     OperationDialog selectionBox = new OperationDialog(getOpenedGraphs(), 1);
-                    if(selectionBox.getSelectedGraphs().size() > 0){
-                        operation = new AlternationOperation(operationGraph, getSelectedGraph(), selectionBox.getSelectedGraphs().get(0));
+                    
+                    if(selectionBox.getSelectedGraphs().isEmpty())
+                    {
+                        return;
                     }
-                    break;
-                }
                     
-                case Constants.OPERATION_CLONEGRAPH:
-                {
-                    operation = new CloneGraphOperation(operationGraph, getSelectedGraph());
+                    inputGraphs.add(selectionBox.getSelectedGraphs().get(0));
                     break;
                 }
+            }
+        }
+        catch (Exception ex)
+        {
+            showErrorMessage(ex);
+            return;
+        }
+        
+        // The task works on snapshots: the opened graphs can still be edited
+        final List<PetriNetGraph> snapshots = new ArrayList<>(inputGraphs.size());
+        
+        for (PetriNetGraph inputGraph : inputGraphs)
+        {
+            snapshots.add(getSnapshot(inputGraph));
+        }
+        
+        final String operation = operationName;
+        final PetriNetGraph resultGraph = operationGraph;
+        
+        executeTask(operationName, new SwingWorker<PetriNetGraph, Void>()
+        {
+            @Override
+            protected PetriNetGraph doInBackground() throws Exception
+            {
+                firePropertyChange(Constants.TASK_MESSAGE, null, "Composing " + operation + "...");
+                PetriNetGraph result = operationCache.execute(operation, resultGraph, snapshots);
+                
+                Operation.checkInterrupted();
+                firePropertyChange(Constants.TASK_MESSAGE, null, "Layout...");
+                applyLayout(result, Constants.LAYOUT_VERTICALTREE);
+                
+                return result;
+            }
 
+            @Override
+            protected void done()
+            {
+                PetriNetGraph result = getTaskResult(this);
+                
+                if(result != null)
+                {
+                    insertGraph(result.getId(), result);
+                }
+            }
+        });
+    }
 
-                case Constants.OPERATION_DEFFEREDCHOICE:
+    /**
+     * Execute a simulation on the selected graph.
+     *
+     * The simulation runs on a snapshot: the tokens of the places
+     * (initial marking) are never changed.
+     *
+     * @param simulationName
+     */
+    public void executeSimulation(String simulationName)
+    {
+        try
+        {
+            switch (simulationName)
+            {
+                case Constants.SIMULATION_TOKENGAME:
                 {
-                    OperationDialog selectionBox = new OperationDialog(getOpenedGraphs(), 1);
-                    if(selectionBox.getSelectedGraphs().size() > 0){
-                        operation = new DefferedChoiceOperation(operationGraph, getSelectedGraph(), selectionBox.getSelectedGraphs().get(0));
+                    String input = JOptionPane.showInputDialog(
+                            this,
+                            "Max transitions to fire:",
+                            String.valueOf(Constants.SIMULATION_TOKENGAME_STEPS)
+                    );
+                    
+                    if(input == null)
+                    {
+                        return;
+                    }
+                    
+                    TokenGame game = new TokenGame(getSelectedGraph());
+                    
+                    long start = System.nanoTime();
+                    long fired = game.run(Long.parseLong(input.trim()));
+                    long elapsed = Math.max(1, System.nanoTime() - start);
+                    
+                    StringBuilder message = new StringBuilder();
+                    message.append("Fired: ").append(fired).append(" transitions in ")
+                            .append(elapsed / 1000000).append(" ms (")
+                            .append(fired * 1000000000L / elapsed).append(" steps/s)\n");
+                    message.append("Deadlock: ").append(game.isDeadlock() ? "yes" : "no").append("\n");
+                    message.append("Marking:");
+                    
+                    for (int p = 0; p < game.getKernel().getPlacesCount(); p++)
+                    {
+                        if(game.getTokens(p) != 0)
+                        {
+                            message.append(" ").append(game.getKernel().getPlaceName(p))
+                                    .append("=").append(game.getTokens(p));
+                        }
                     }
+                    
+                    JOptionPane.showMessageDialog(this,
+                        message.toString(),
+                        simulationName,
+                        JOptionPane.INFORMATION_MESSAGE
+                    );
                     break;
                 }
-
-                case Constants.OPERATION_EXPLICITCHOICE:
+                    
+                case Constants.SIMULATION_REACHABILITY:
                 {
-                    OperationDialog selectionBox = new OperationDialog(getOpenedGraphs(), 1);
-                    if(selectionBox.getSelectedGraphs().size() > 0)
+                    String input = JOptionPane.showInputDialog(
+                            this,
+                            "Max states to explore:",
+                            String.valueOf(Constants.SIMULATION_REACHABILITY_STATES)
+                    );
+                    
+                    if(input == null)
+                    {
+                        return;
+                    }
+                    
+                    ReachabilityGraph reachability = new ReachabilityGraph(getSelectedGraph(), Integer.parseInt(input.trim()));
+                    
+                    long start = System.nanoTime();
+                    reachability.explore();
+                    long elapsed = System.nanoTime() - start;
+                    
+                    int[] deadlocks = reachability.getDeadlocks();
+                    
+                    StringBuilder message = new StringBuilder();
+                    message.append("States: ").append(reachability.getStatesCount())
+                            .append(reachability.isComplete() ? "" : " (limit reached)").append("\n");
+                    message.append("Edges: ").append(reachability.getEdgesCount()).append("\n");
+                    message.append("Time: ").append(elapsed / 1000000).append(" ms, ")
+                            .append(reachability.getStates().getMemoryUsage() / 1024).append(" KB\n");
+                    message.append("Deadlocks: ").append(deadlocks.length);
+                    
+                    if(deadlocks.length > 0)
                     {
-                        operation = new ExplicitChoiceOperation(operationGraph, getSelectedGraph(), selectionBox.getSelectedGraphs().get(0));
+                        message.append("\nFiring sequence to the first:");
+                        
+                        for (int t : reachability.getPath(deadlocks[0]))
+                        {
+                            message.append(" ").append(reachability.getKernel().getTransitionName(t));
+                        }
                     }
+                    
+                    JOptionPane.showMessageDialog(this,
+                        message.toString(),
+                        simulationName,
+                        JOptionPane.INFORMATION_MESSAGE
+                    );
                     break;
                 }
-
-                case Constants.OPERATION_ITERATIONONEORMORE:
+                    
+                case Constants.SIMULATION_COVERABILITY:
                 {
-                    operation = new OneOrMoreIterationOperation(operationGraph, getSelectedGraph());
+                    String input = JOptionPane.showInputDialog(
+                            this,
+                            "Max nodes to store:",
+                            String.valueOf(Constants.SIMULATION_COVERABILITY_NODES)
+                    );
+                    
+                    if(input == null)
+                    {
+                        return;
+                    }
+                    
+                    CoverabilityGraph coverability = new CoverabilityGraph(getSelectedGraph(), Integer.parseInt(input.trim()));
+                    
+                    long start = System.nanoTime();
+                    coverability.explore();
+                    long elapsed = System.nanoTime() - start;
+                    
+                    StringBuilder message = new StringBuilder();
+                    message.append("Nodes: ").append(coverability.getNodesCount())
+                            .append(coverability.isComplete() ? "" : " (limit reached)").append("\n");
+                    message.append("Time: ").append(elapsed / 1000000).append(" ms, ")
+                            .append(coverability.getMemoryUsage() / 1024).append(" KB\n");
+                    // A partial tree proves only the omega places unbounded
+                    String bounded = coverability.isBounded() ? "yes" : "no";
+                    
+                    if(coverability.isComplete() == false && coverability.isBounded())
+                    {
+                        bounded = "unknown";
+                    }
+                    
+                    message.append("Bounded: ").append(bounded).append("\n");
+                    message.append("Bounds:");
+                    
+                    for (int p = 0; p < coverability.getKernel().getPlacesCount(); p++)
+                    {
+                        String bound = coverability.isComplete() ? String.valueOf(coverability.getBound(p)) : "unknown";
+                        
+                        message.append(" ").append(coverability.getKernel().getPlaceName(p)).append("=")
+                                .append(coverability.isBounded(p) ? bound : "\u03c9");
+                    }
+                    
+                    JOptionPane.showMessageDialog(this,
+                        message.toString(),
+                        simulationName,
+                        JOptionPane.INFORMATION_MESSAGE
+                    );
                     break;
                 }
-
-                case Constants.OPERATION_ITERATIONONESERVEPERTIME:
+                    
+                case Constants.SIMULATION_SYMBOLIC:
                 {
-                    operation = new OneServePerTimeOperation(operationGraph, getSelectedGraph());
+                    String input = JOptionPane.showInputDialog(
+                            this,
+                            "Max nodes to store:",
+                            String.valueOf(Constants.SIMULATION_SYMBOLIC_NODES)
+                    );
+                    
+                    if(input == null)
+                    {
+                        return;
+                    }
+                    
+                    executeSymbolic(simulationName, Integer.parseInt(input.trim()));
                     break;
                 }
+            }
+        }
+        catch (NumberFormatException | IllegalStateException ex)
+        {
+            showErrorMessage(ex);
+        }
+    }
 
-                case Constants.OPERATION_ITERATIONZEROORMORE:
+    /**
+     * Executes the symbolic reachability of the selected graph in
+     * background (cancel stops the exploration).
+     *
+     * @param simulationName
+     * @param maxNodes
+     */
+    private void executeSymbolic(final String simulationName, final int maxNodes)
+    {
+        // Kernel (and names) captured on the EDT: the task never reads the cells
+        final SymbolicReachability symbolic = new SymbolicReachability(new PetriNetKernel(getSelectedGraph()),
+                maxNodes, Constants.SIMULATION_SYMBOLIC_TOKENS);
+
+        executeTask(simulationName, new SwingWorker<SymbolicReachability, Void>()
+        {
+            private long elapsed;
+
+            @Override
+            protected SymbolicReachability doInBackground() throws Exception
+            {
+                firePropertyChange(Constants.TASK_MESSAGE, null, "Saturation...");
+
+                long start = System.nanoTime();
+                symbolic.explore();
+                elapsed = System.nanoTime() - start;
+
+                return symbolic;
+            }
+
+            @Override
+            protected void done()
+            {
+                if(getTaskResult(this) == null)
                 {
-                    operation = new ZeroOrMoreIterationOperation(operationGraph, getSelectedGraph());
-                    break;
+                    return;
                 }
 
-                case Constants.OPERATION_MUTUALEXCLUSION:
+                StringBuilder message = new StringBuilder();
+
+                if(symbolic.isComplete() == false)
                 {
-                    OperationDialog selectionBox = new OperationDialog(getOpenedGraphs(), 1);
-                    if(selectionBox.getSelectedGraphs().size() > 0)
-                    {
-                        operation = new MutualExclusionOperation(operationGraph, getSelectedGraph(), selectionBox.getSelectedGraphs().get(0));
-                    }
-                    break;
+                    message.append("States: ? (limit reached: ").append(maxNodes).append(" nodes or ")
+                            .append(Constants.SIMULATION_SYMBOLIC_TOKENS).append(" tokens in a place)\n");
+                }
+                else
+                {
+                    message.append("States: ").append(symbolic.getStatesCount()).append("\n");
+                    message.append("Nodes: ").append(symbolic.getNodesCount()).append("\n");
                 }
 
-                case Constants.OPERATION_FULLMERGE:
+                message.append("Time: ").append(elapsed / 1000000).append(" ms, ")
+                        .append(symbolic.getForest().getMemoryUsage() / 1024).append(" KB\n");
+
+                if(symbolic.isComplete())
                 {
-                    OperationDialog selectionBox = new OperationDialog(getOpenedGraphs(), 1);
-                    if(selectionBox.getSelectedGraphs().size() > 0)
+                    int[] bounds = symbolic.getBounds();
+                    message.append("Bounds:");
+
+                    for (int p = 0; p < bounds.length; p++)
                     {
-                        operation = new FullMergeOperation(operationGraph, getSelectedGraph(), selectionBox.getSelectedGraphs().get(0));
+                        message.append(" ").append(symbolic.getKernel().getPlaceName(p)).append("=")
+                                .append(bounds[p]);
                     }
-                    break;
                 }
 
-                case Constants.OPERATION_PARALLELISM:
+                JOptionPane.showMessageDialog(WolfedEditor.this,
+                    message.toString(),
+                    simulationName,
+                    JOptionPane.INFORMATION_MESSAGE
+                );
+            }
+        });
+    }
+
+    /**
+     * Execute a layout on a graph (null for the selected one).
+     *
+     * The layout runs in background on a copy of the graph, then the new
+     * geometries are applied in a single update.
+     * Cancel discards the new geometries only: the layout itself can't be
+     * interrupted and ends in background.
+     *
+     * @param graph
+     * @param layoutName
+     */
+    public void executeLayout(PetriNetGraph graph, final String layoutName)
+    {
+        final PetriNetGraph target = (graph == null) ? getSelectedGraph() : graph;
+        final PetriNetGraph snapshot = getSnapshot(target);
+
+        executeTask(layoutName, new SwingWorker<PetriNetGraph, Void>()
+        {
+            @Override
+            protected PetriNetGraph doInBackground() throws Exception
+            {
+                firePropertyChange(Constants.TASK_MESSAGE, null, layoutName + " layout...");
+                applyLayout(snapshot, layoutName);
+
+                return snapshot;
+            }
+
+            @Override
+            protected void done()
+            {
+                PetriNetGraph result = getTaskResult(this);
+
+                if(result == null)
                 {
-                    OperationDialog selectionBox = new OperationDialog(getOpenedGraphs(), 1);
-                    if(selectionBox.getSelectedGraphs().size() > 0)
-                    {
-                        operation = new ParallelismOperation(operationGraph, getSelectedGraph(), selectionBox.getSelectedGraphs().get(0));
-                    }
-                    break;
+                    return;
                 }
 
-                case Constants.OPERATION_SEQUENCING:
+                target.getModel().beginUpdate();
+
+                try
                 {
-                    OperationDialog selectionBox = new OperationDialog(getOpenedGraphs(), 1);
-                    if(selectionBox.getSelectedGraphs().size() > 0)
+                    // Vertices and arcs (control points) by id, skips the removed ones
+                    mxGraphModel model = (mxGraphModel) target.getModel();
+
+                    for (Object cellObj : result.getChildCells(result.getDefaultParent()))
                     {
-                        operation = new SequencingOperation(operationGraph, getSelectedGraph(), selectionBox.getSelectedGraphs().get(0));
+                        Object cell = model.getCell(((mxCell) cellObj).getId());
+
+                        if(cell != null)
+                        {
+                            model.setGeometry(cell, ((mxCell) cellObj).getGeometry());
+                        }
                     }
-                    break;
                 }
-                // new operation 
-                case Constants.OPERATION_WRAP:
+                finally
                 {
-                    operation = new WrapGraphOperation(operationGraph, getSelectedGraph());
-                    break;
+                    target.getModel().endUpdate();
                 }
             }
-            
-            if(operation != null)
-            {
-                operationGraph = operation.getOperationGraph();
-                insertGraph(operationGraph.getId(), operationGraph);
-                executeLayout(operationGraph, Constants.LAYOUT_VERTICALTREE);
-            }
-        }
-        catch (Exception ex)
-        {
-            showErrorMessage(ex);
-        }
+        });
     }
 
     /**
-     * Styling a graph with a specific layout.
+     * Applies a layout to a graph (not shown or not yet).
      *
      * @param graph
      * @param layoutName
      */
-    public void executeLayout(mxGraph graph, String layoutName)
+    private static void applyLayout(mxGraph graph, String layoutName)
     {
-        if (graph == null)
-        {
-            graph = getSelectedGraph();
-        }
-
         Object parent = graph.getDefaultParent();
 
         switch (layoutName)
@@ -448,7 +733,117 @@ public class WolfedEditor extends JFrame
             }
         }
     }
-    
+
+    /**
+     * Returns a copy of a graph, safe to read from a background task.
+     *
+     * @param graph
+     * @return PetriNetGraph
+     */
+    private static PetriNetGraph getSnapshot(PetriNetGraph graph)
+    {
+        PetriNetGraph snapshot = new PetriNetGraph(graph.getId());
+        snapshot.setType(graph.getType());
+        snapshot.copyFrom(graph);
+
+        return snapshot;
+    }
+
+    /**
+     * Runs a task in background, with a progress dialog.
+     *
+     * The task fires its steps as Constants.TASK_MESSAGE property changes.
+     * One task at a time: a new one is refused while the dialog of the
+     * current one is open, and waits in the executor for a cancelled one
+     * still running.
+     *
+     * @param title
+     * @param task
+     */
+    private void executeTask(String title, final SwingWorker<?, Void> task)
+    {
+        if(currentTask != null && currentTask.isDone() == false)
+        {
+            JOptionPane.showMessageDialog(this,
+                "Another task is running: wait for it or cancel it.",
+                title,
+                JOptionPane.WARNING_MESSAGE
+            );
+            
+            return;
+        }
+        
+        currentTask = task;
+        
+        final ProgressDialog progress = new ProgressDialog(this, title, task);
+        
+        if(taskExecutor.getActiveCount() > 0)
+        {
+            progress.setMessage("Waiting for the cancelled task to end...");
+        }
+
+        task.addPropertyChangeListener(new PropertyChangeListener()
+        {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt)
+            {
+                if("state".equals(evt.getPropertyName()) && evt.getNewValue() == SwingWorker.StateValue.DONE)
+                {
+                    progress.dispose();
+                }
+            }
+        });
+
+        task.addPropertyChangeListener(new PropertyChangeListener()
+        {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt)
+            {
+                if(Constants.TASK_MESSAGE.equals(evt.getPropertyName()))
+                {
+                    progress.setMessage(String.valueOf(evt.getNewValue()));
+                }
+            }
+        });
+
+        progress.setVisible(true);
+        taskExecutor.execute(task);
+    }
+
+    /**
+     * Returns the result of a finished task, null if cancelled or failed
+     * (the error is shown).
+     *
+     * @param <T>
+     * @param task
+     * @return T
+     */
+    private <T> T getTaskResult(SwingWorker<T, Void> task)
+    {
+        if(task.isCancelled())
+        {
+            return null;
+        }
+
+        try
+        {
+            return task.get();
+        }
+        catch (InterruptedException ex)
+        {
+            return null;
+        }
+        catch (ExecutionException ex)
+        {
+            if(ex.getCause() instanceof InterruptedException == false)
+            {
+                showErrorMessage(ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex);
+            }
+
+            return null;
+        }
+    }
+
     /**
      * Show About Message
      */
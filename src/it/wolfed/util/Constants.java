@@ -45,12 +45,51 @@ public class Constants
     public static final String OPERATION_MUTUALEXCLUSION            = "MutualExclusion";
     public static final String OPERATION_PARALLELISM                = "Parallelism";
     public static final String OPERATION_WRAP                       = "Wrap";
+    public static final int OPERATION_CACHE_CELLS                   = 100000;
+    
+    // Simulations
+    public static final String SIMULATION_TOKENGAME                 = "TokenGame";
+    public static final long SIMULATION_TOKENGAME_STEPS             = 1000000;
+    public static final String SIMULATION_REACHABILITY              = "Reachability";
+    public static final int SIMULATION_REACHABILITY_STATES          = 1000000;
+    public static final String SIMULATION_COVERABILITY              = "Coverability";
+    public static final int SIMULATION_COVERABILITY_NODES           = 1000000;
+    public static final String SIMULATION_SYMBOLIC                  = "Symbolic";
+    public static final int SIMULATION_SYMBOLIC_NODES               = 1000000;
+    public static final int SIMULATION_SYMBOLIC_TOKENS              = 255;
+    
+    // Soundness
+    public static final String SOUNDNESS_SOUND                      = "Sound";
+    public static final String SOUNDNESS_DEADLOCK                   = "Deadlock";
+    public static final String SOUNDNESS_IMPROPER_COMPLETION        = "Improper completion";
+    public static final String SOUNDNESS_UNBOUNDED                  = "Unbounded";
+    public static final String SOUNDNESS_NO_OPTION_TO_COMPLETE      = "No option to complete";
+    public static final String SOUNDNESS_DEAD_TRANSITION            = "Dead transition";
+    public static final String SOUNDNESS_UNKNOWN                    = "State limit reached";
+    public static final int SOUNDNESS_MAX_STATES                    = 100000;
+
+    // Invariants
+    public static final int INVARIANTS_MAX_ROWS                     = 10000;
+    public static final int INVARIANTS_SHOWN                        = 5;
     
     // Layouts
     public static final String LAYOUT_VERTICALTREE                  = "VerticalTree";
     public static final String LAYOUT_HORIZONTALTREE                = "HorizontalTree";
     public static final String LAYOUT_HIERARCHICAL                  = "Hierarchical";
     public static final String LAYOUT_ORGANIC                       = "Organic";
+    
+    // Background tasks
+    public static final String TASK_MESSAGE                         = "taskMessage";
+    public static final int ANALYSIS_DELAY                          = 300;
+
+    // Batch analyzer
+    public static final String BATCH_FORMAT_JSON                    = "json";
+    public static final String BATCH_FORMAT_CSV                     = "csv";
+
+    // Generator (broken variants)
+    public static final String GENERATOR_IMPROPER_COMPLETION        = "ImproperCompletion";
+    public static final String GENERATOR_DEAD_TRANSITION            = "DeadTransition";
+    public static final String GENERATOR_NOT_WORKFLOW               = "NotWorkFlow";
 
     // Pnml
     public static final String PNML_TAG                             = "pnml";
@@ -0,0 +1,139 @@
+package it.wolfed.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints.
+ *
+ * Used by the analyses to store millions of numbers without boxing.
+ */
+public class IntList
+{
+    /**
+     * Elements storage.
+     */
+    private int[] elements;
+
+    /**
+     * Number of elements.
+     */
+    private int size;
+
+    /**
+     * {@link IntList} Constructor.
+     */
+    public IntList()
+    {
+        this(16);
+    }
+
+    /**
+     * {@link IntList} Constructor.
+     *
+     * @param capacity initial capacity
+     */
+    public IntList(int capacity)
+    {
+        elements = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Appends an element.
+     *
+     * @param element
+     */
+    public void add(int element)
+    {
+        if(size == elements.length)
+        {
+            elements = Arrays.copyOf(elements, (int) Math.min(Integer.MAX_VALUE - 8, (long) size * 2));
+        }
+
+        elements[size++] = element;
+    }
+
+    /**
+     * Returns the element at an index.
+     *
+     * @param index
+     * @return int
+     */
+    public int get(int index)
+    {
+        if(index >= size)
+        {
+            throw new IndexOutOfBoundsException(index + " >= " + size);
+        }
+
+        return elements[index];
+    }
+
+    /**
+     * Replaces the element at an index.
+     *
+     * @param index
+     * @param element
+     */
+    public void set(int index, int element)
+    {
+        if(index >= size)
+        {
+            throw new IndexOutOfBoundsException(index + " >= " + size);
+        }
+
+        elements[index] = element;
+    }
+
+    /**
+     * Removes and returns the last element.
+     *
+     * @return int
+     */
+    public int removeLast()
+    {
+        if(size == 0)
+        {
+            throw new IndexOutOfBoundsException("Empty list.");
+        }
+
+        return elements[--size];
+    }
+
+    /**
+     * Returns the number of elements.
+     *
+     * @return int
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns if the list is empty.
+     *
+     * @return boolean
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Removes all the elements (keeps the capacity).
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * Returns a copy of the elements.
+     *
+     * @return int[]
+     */
+    public int[] toArray()
+    {
+        return Arrays.copyOf(elements, size);
+    }
+}
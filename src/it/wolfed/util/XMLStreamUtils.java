@@ -0,0 +1,133 @@
+package it.wolfed.util;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Handy shortcuts for the pnml streaming import and export.
+ *
+ * All the reading methods expect the reader on a START_ELEMENT and leave
+ * it on the matching END_ELEMENT.
+ */
+public class XMLStreamUtils
+{
+    /**
+     * Returns all the text inside an element (as DOM getTextContent()).
+     *
+     * @param reader
+     * @return String
+     * @throws XMLStreamException
+     */
+    public static String getTextContent(XMLStreamReader reader) throws XMLStreamException
+    {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+
+        while(depth > 0)
+        {
+            switch (reader.next())
+            {
+                case XMLStreamConstants.START_ELEMENT:
+                {
+                    depth++;
+                    break;
+                }
+
+                case XMLStreamConstants.END_ELEMENT:
+                {
+                    depth--;
+                    break;
+                }
+
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                {
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                }
+            }
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Skips an element and all its children.
+     *
+     * @param reader
+     * @throws XMLStreamException
+     */
+    public static void skipElement(XMLStreamReader reader) throws XMLStreamException
+    {
+        int depth = 1;
+
+        while(depth > 0)
+        {
+            switch (reader.next())
+            {
+                case XMLStreamConstants.START_ELEMENT:
+                {
+                    depth++;
+                    break;
+                }
+
+                case XMLStreamConstants.END_ELEMENT:
+                {
+                    depth--;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves to the next child element.
+     *
+     * @param reader
+     * @return false on the END_ELEMENT of the parent
+     * @throws XMLStreamException
+     */
+    public static boolean nextChild(XMLStreamReader reader) throws XMLStreamException
+    {
+        while(true)
+        {
+            switch (reader.next())
+            {
+                case XMLStreamConstants.START_ELEMENT:
+                {
+                    return true;
+                }
+
+                case XMLStreamConstants.END_ELEMENT:
+                {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes an element with only text (empty text as empty element).
+     *
+     * @param writer
+     * @param name
+     * @param text
+     * @throws XMLStreamException
+     */
+    public static void writeTextElement(XMLStreamWriter writer, String name, String text) throws XMLStreamException
+    {
+        if(text.isEmpty())
+        {
+            writer.writeEmptyElement(name);
+        }
+        else
+        {
+            writer.writeStartElement(name);
+            writer.writeCharacters(text);
+            writer.writeEndElement();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PetriNetKernel;
+import it.wolfed.model.PlaceVertex;
+import it.wolfed.model.TransitionVertex;
+import it.wolfed.operation.WorkFlowGenerator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Coverability tree on bounded and unbounded nets.
+ */
+public class CoverabilityGraphTest
+{
+    @Test
+    public void testUnboundedLoop()
+    {
+        // p <-> t, t -> q: q grows at each firing
+        PetriNetGraph graph = new PetriNetGraph("loop");
+        PlaceVertex p = Nets.place(graph, 1);
+        PlaceVertex q = Nets.place(graph, 0);
+        TransitionVertex t = Nets.transition(graph);
+        Nets.arc(graph, p, t, 1);
+        Nets.arc(graph, t, p, 1);
+        Nets.arc(graph, t, q, 1);
+
+        CoverabilityGraph coverability = new CoverabilityGraph(graph, 1000);
+        PetriNetKernel kernel = coverability.getKernel();
+
+        assertTrue(coverability.explore());
+        assertTrue(coverability.isComplete());
+        assertFalse(coverability.isBounded());
+        assertEquals(1, coverability.getBound(kernel.indexOf(p)));
+        assertEquals(CoverabilityGraph.OMEGA, coverability.getBound(kernel.indexOf(q)));
+        assertEquals(2, coverability.getNodesCount());
+    }
+
+    @Test
+    public void testUnboundedChain()
+    {
+        // Loop pumping q, q pumping r two at a time, r consumed by a sink
+        PetriNetGraph graph = new PetriNetGraph("chain");
+        PlaceVertex p = Nets.place(graph, 1);
+        PlaceVertex q = Nets.place(graph, 0);
+        PlaceVertex r = Nets.place(graph, 0);
+        PlaceVertex s = Nets.place(graph, 0);
+        TransitionVertex t1 = Nets.transition(graph);
+        TransitionVertex t2 = Nets.transition(graph);
+        TransitionVertex t3 = Nets.transition(graph);
+        Nets.arc(graph, p, t1, 1);
+        Nets.arc(graph, t1, p, 1);
+        Nets.arc(graph, t1, q, 1);
+        Nets.arc(graph, q, t2, 1);
+        Nets.arc(graph, t2, r, 2);
+        Nets.arc(graph, r, t3, 3);
+        Nets.arc(graph, t3, s, 1);
+
+        CoverabilityGraph coverability = new CoverabilityGraph(graph, 1000);
+        PetriNetKernel kernel = coverability.getKernel();
+
+        assertTrue(coverability.explore());
+        assertEquals(1, coverability.getBound(kernel.indexOf(p)));
+        assertFalse(coverability.isBounded(kernel.indexOf(q)));
+        assertFalse(coverability.isBounded(kernel.indexOf(r)));
+        assertFalse(coverability.isBounded(kernel.indexOf(s)));
+    }
+
+    @Test
+    public void testUnboundedRestart()
+    {
+        // Generated (sound) nets restarted by o -> t -> 2 i: each run adds a token
+        for (int seed = 0; seed < 20; seed++)
+        {
+            PetriNetGraph graph = new WorkFlowGenerator(seed).generate(5 + seed).toGraph("g");
+            PlaceVertex initial = graph.getInitialPlaces().get(0);
+            TransitionVertex restart = Nets.transition(graph);
+            Nets.arc(graph, graph.getFinalPlaces().get(0), restart, 1);
+            Nets.arc(graph, restart, initial, 2);
+
+            CoverabilityGraph coverability = new CoverabilityGraph(graph, 100000);
+
+            assertTrue(coverability.explore());
+            assertFalse(coverability.isBounded());
+            assertFalse(coverability.isBounded(coverability.getKernel().indexOf(initial)));
+        }
+    }
+
+    @Test
+    public void testBoundsOfBoundedNets()
+    {
+        // Generated nets are sound, so bounded: same bounds as the reachable markings
+        for (int seed = 0; seed < 40; seed++)
+        {
+            PetriNetKernel kernel = new PetriNetKernel(new WorkFlowGenerator(seed).generate(5 + seed).toGraph("g"));
+            ReachabilityGraph reachability = new ReachabilityGraph(kernel, 100000);
+            CoverabilityGraph coverability = new CoverabilityGraph(kernel, 100000);
+
+            assertTrue(reachability.explore());
+            assertTrue(coverability.explore());
+            assertTrue(coverability.isBounded());
+            assertTrue(coverability.getNodesCount() <= reachability.getStatesCount());
+
+            int[] bounds = new int[kernel.getPlacesCount()];
+
+            for (int[] marking : Nets.getMarkings(reachability))
+            {
+                for (int p = 0; p < bounds.length; p++)
+                {
+                    bounds[p] = Math.max(bounds[p], marking[p]);
+                }
+            }
+
+            for (int p = 0; p < bounds.length; p++)
+            {
+                assertEquals("seed " + seed, bounds[p], coverability.getBound(p));
+            }
+        }
+    }
+
+    @Test
+    public void testNodesLimit()
+    {
+        CoverabilityGraph coverability = new CoverabilityGraph(
+                new PetriNetKernel(new WorkFlowGenerator(3).generate(60).toGraph("g")), 2);
+
+        assertFalse(coverability.explore());
+        assertFalse(coverability.isComplete());
+        assertEquals(2, coverability.getNodesCount());
+    }
+}
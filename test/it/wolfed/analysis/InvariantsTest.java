@@ -0,0 +1,221 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PetriNetKernel;
+import it.wolfed.model.PlaceVertex;
+import it.wolfed.model.TransitionVertex;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Minimal invariants of small nets with known results.
+ */
+public class InvariantsTest
+{
+    private static final int MAX_ROWS = 10000;
+
+    /**
+     * Returns the invariants as "index*weight ..." strings.
+     */
+    private static Set<String> compute(PetriNetKernel kernel, boolean places)
+    {
+        Invariants invariants = new Invariants(kernel, places, MAX_ROWS);
+        assertTrue(invariants.compute());
+
+        Set<String> result = new TreeSet<>();
+
+        for (Invariants.Invariant invariant : invariants.getInvariants())
+        {
+            StringBuilder text = new StringBuilder();
+
+            for (int i = 0; i < invariant.getSupport().length; i++)
+            {
+                text.append(invariant.getSupport()[i]).append('*').append(invariant.getWeights()[i]).append(' ');
+            }
+
+            result.add(text.toString().trim());
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns an invariant of weight 1 on some places or transitions.
+     */
+    private static String unit(int... indexes)
+    {
+        StringBuilder text = new StringBuilder();
+        int[] sorted = indexes.clone();
+        Arrays.sort(sorted);
+
+        for (int index : sorted)
+        {
+            text.append(index).append("*1 ");
+        }
+
+        return text.toString().trim();
+    }
+
+    private static Set<String> set(String... invariants)
+    {
+        return new TreeSet<>(Arrays.asList(invariants));
+    }
+
+    @Test
+    public void testMutualExclusion()
+    {
+        // Two cycles a0 -t1-> a1 -t2-> a0, b0 -t3-> b1 -t4-> b0, t1 and t3 take s, t2 and t4 give it back
+        PetriNetGraph graph = new PetriNetGraph("mutex");
+        PlaceVertex a0 = Nets.place(graph, 1);
+        PlaceVertex a1 = Nets.place(graph, 0);
+        PlaceVertex b0 = Nets.place(graph, 1);
+        PlaceVertex b1 = Nets.place(graph, 0);
+        PlaceVertex s = Nets.place(graph, 1);
+        TransitionVertex t1 = Nets.transition(graph);
+        TransitionVertex t2 = Nets.transition(graph);
+        TransitionVertex t3 = Nets.transition(graph);
+        TransitionVertex t4 = Nets.transition(graph);
+        Nets.arc(graph, a0, t1, 1);
+        Nets.arc(graph, t1, a1, 1);
+        Nets.arc(graph, a1, t2, 1);
+        Nets.arc(graph, t2, a0, 1);
+        Nets.arc(graph, b0, t3, 1);
+        Nets.arc(graph, t3, b1, 1);
+        Nets.arc(graph, b1, t4, 1);
+        Nets.arc(graph, t4, b0, 1);
+        Nets.arc(graph, s, t1, 1);
+        Nets.arc(graph, s, t3, 1);
+        Nets.arc(graph, t2, s, 1);
+        Nets.arc(graph, t4, s, 1);
+
+        PetriNetKernel k = new PetriNetKernel(graph);
+
+        assertEquals(set(unit(k.indexOf(a0), k.indexOf(a1)), unit(k.indexOf(b0), k.indexOf(b1)),
+                unit(k.indexOf(a1), k.indexOf(b1), k.indexOf(s))), compute(k, true));
+        assertEquals(set(unit(k.indexOf(t1), k.indexOf(t2)), unit(k.indexOf(t3), k.indexOf(t4))),
+                compute(k, false));
+
+        Invariants invariants = new Invariants(k, true, MAX_ROWS);
+        invariants.compute();
+        assertTrue(invariants.isCovered());
+        assertEquals(0, invariants.getUncovered().length);
+    }
+
+    @Test
+    public void testSelfLoops()
+    {
+        // i -> t1 -> p -> t3 -> o, p <-> t2 and r <-2-> t2 (self loops), short-circuited
+        PetriNetGraph graph = new PetriNetGraph("loops");
+        PlaceVertex i = Nets.place(graph, 1);
+        PlaceVertex p = Nets.place(graph, 0);
+        PlaceVertex o = Nets.place(graph, 0);
+        PlaceVertex r = Nets.place(graph, 2);
+        TransitionVertex t1 = Nets.transition(graph);
+        TransitionVertex t2 = Nets.transition(graph);
+        TransitionVertex t3 = Nets.transition(graph);
+        Nets.arc(graph, i, t1, 1);
+        Nets.arc(graph, t1, p, 1);
+        Nets.arc(graph, p, t2, 1);
+        Nets.arc(graph, t2, p, 1);
+        Nets.arc(graph, r, t2, 2);
+        Nets.arc(graph, t2, r, 2);
+        Nets.arc(graph, p, t3, 1);
+        Nets.arc(graph, t3, o, 1);
+
+        PetriNetKernel k = new PetriNetKernel(graph).shortCircuit();
+
+        // The self loops cancel: r and t2 are invariants alone
+        assertEquals(set(unit(k.indexOf(r)), unit(k.indexOf(i), k.indexOf(p), k.indexOf(o))), compute(k, true));
+        assertEquals(set(unit(k.indexOf(t2)), unit(k.indexOf(t1), k.indexOf(t3), k.getShortCircuitTransition())),
+                compute(k, false));
+    }
+
+    @Test
+    public void testUnbalancedSelfLoop()
+    {
+        // p -2-> t -> p and t -> q: t moves one token from p to q
+        PetriNetGraph graph = new PetriNetGraph("unbalanced");
+        PlaceVertex p = Nets.place(graph, 2);
+        PlaceVertex q = Nets.place(graph, 0);
+        TransitionVertex t = Nets.transition(graph);
+        Nets.arc(graph, p, t, 2);
+        Nets.arc(graph, t, p, 1);
+        Nets.arc(graph, t, q, 1);
+
+        PetriNetKernel k = new PetriNetKernel(graph);
+
+        assertEquals(set(unit(k.indexOf(p), k.indexOf(q))), compute(k, true));
+        assertTrue(compute(k, false).isEmpty());
+    }
+
+    @Test
+    public void testUncovered()
+    {
+        // i -> t -> o: no invariant covers anything until short-circuited
+        PetriNetGraph graph = Nets.sequence("s", 1);
+        PetriNetKernel kernel = new PetriNetKernel(graph);
+
+        Invariants invariants = new Invariants(kernel, false, MAX_ROWS);
+        assertTrue(invariants.compute());
+        assertTrue(invariants.getInvariants().isEmpty());
+        assertFalse(invariants.isCovered());
+        assertEquals(1, invariants.getUncovered().length);
+
+        invariants = new Invariants(kernel.shortCircuit(), false, MAX_ROWS);
+        assertTrue(invariants.compute());
+        assertTrue(invariants.isCovered());
+    }
+
+    @Test
+    public void testBigWeights()
+    {
+        // p0 -1000-> t0 -> p1 -1000-> t1 -> ... -> p8: y(p_i) = 1000^i, up to 10^24
+        PetriNetGraph graph = new PetriNetGraph("chain");
+        PlaceVertex[] chain = new PlaceVertex[9];
+        chain[0] = Nets.place(graph, 0);
+
+        for (int n = 1; n < chain.length; n++)
+        {
+            TransitionVertex t = Nets.transition(graph);
+            chain[n] = Nets.place(graph, 0);
+            Nets.arc(graph, chain[n - 1], t, 1000);
+            Nets.arc(graph, t, chain[n], 1);
+        }
+
+        PetriNetKernel kernel = new PetriNetKernel(graph);
+        Invariants invariants = new Invariants(kernel, true, MAX_ROWS);
+
+        assertTrue(invariants.compute());
+        assertEquals(1, invariants.getInvariants().size());
+
+        Invariants.Invariant invariant = invariants.getInvariants().get(0);
+        BigInteger[] weights = new BigInteger[chain.length];
+        assertEquals(chain.length, invariant.getSupport().length);
+
+        for (int i = 0; i < invariant.getSupport().length; i++)
+        {
+            weights[invariant.getSupport()[i]] = invariant.getWeights()[i];
+        }
+
+        for (int n = 0; n < chain.length; n++)
+        {
+            assertEquals(BigInteger.valueOf(1000).pow(n), weights[kernel.indexOf(chain[n])]);
+        }
+
+        assertTrue(weights[kernel.indexOf(chain[8])].bitLength() > 63);
+        assertTrue(compute(kernel, false).isEmpty());
+    }
+
+    @Test
+    public void testRowsLimit() throws Exception
+    {
+        Invariants invariants = new Invariants(Nets.parallel(12, 1), true, 5);
+
+        assertFalse(invariants.compute());
+        assertFalse(invariants.isComplete());
+    }
+}
@@ -0,0 +1,85 @@
+package it.wolfed.analysis;
+
+import java.math.BigInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Decision diagrams: unique nodes, union, count, membership.
+ */
+public class MddForestTest
+{
+    /**
+     * Returns the set of one tuple (values[k - 1] for level k).
+     */
+    private static int tuple(MddForest forest, int... values)
+    {
+        int node = MddForest.ONE;
+
+        for (int level = 1; level <= values.length; level++)
+        {
+            int[] children = new int[values[level - 1] + 1];
+            children[values[level - 1]] = node;
+            node = forest.getNode(level, children);
+        }
+
+        return node;
+    }
+
+    @Test
+    public void testUniqueNodes()
+    {
+        MddForest forest = new MddForest(100);
+
+        assertEquals(tuple(forest, 1, 2, 0), tuple(forest, 1, 2, 0));
+        assertNotEquals(tuple(forest, 1, 2, 0), tuple(forest, 1, 2, 1));
+        assertEquals(MddForest.EMPTY, forest.getNode(1, new int[] {MddForest.EMPTY, MddForest.EMPTY}));
+    }
+
+    @Test
+    public void testUnion()
+    {
+        MddForest forest = new MddForest(1000);
+        int set = MddForest.EMPTY;
+
+        // All the tuples of 4 values in 0..2 with an even sum
+        for (int i = 0; i < 81; i++)
+        {
+            int[] values = {i % 3, i / 3 % 3, i / 9 % 3, i / 27};
+
+            if((values[0] + values[1] + values[2] + values[3]) % 2 == 0)
+            {
+                set = forest.union(set, tuple(forest, values));
+            }
+        }
+
+        assertEquals(BigInteger.valueOf(41), forest.count(set));
+        assertTrue(forest.contains(set, new int[] {2, 0, 1, 1}));
+        assertFalse(forest.contains(set, new int[] {2, 0, 1, 0}));
+        assertFalse(forest.contains(set, new int[] {3, 1, 0, 0}));
+        assertEquals(set, forest.union(set, set));
+        assertEquals(set, forest.union(set, MddForest.EMPTY));
+        assertEquals(set, forest.union(set, tuple(forest, 0, 0, 0, 0)));
+    }
+
+    @Test
+    public void testDeepUnion()
+    {
+        // As many levels as a long net: no recursion on the levels
+        MddForest forest = new MddForest(1000000);
+        int[] values = new int[50000];
+        int first = tuple(forest, values);
+        values[0] = 1;
+        values[values.length - 1] = 1;
+        int set = forest.union(first, tuple(forest, values));
+
+        assertEquals(BigInteger.valueOf(2), forest.count(set));
+        assertTrue(forest.contains(set, values));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNodesLimit()
+    {
+        tuple(new MddForest(10), new int[20]);
+    }
+}
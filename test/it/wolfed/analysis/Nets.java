@@ -0,0 +1,144 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PlaceVertex;
+import it.wolfed.model.TransitionVertex;
+import it.wolfed.model.Vertex;
+import it.wolfed.operation.Operation;
+import it.wolfed.util.Constants;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Small nets built by hand for the analysis tests.
+ */
+class Nets
+{
+    private Nets()
+    {
+    }
+
+    /**
+     * Adds a place with some tokens.
+     *
+     * @param graph
+     * @param tokens
+     * @return PlaceVertex
+     */
+    static PlaceVertex place(PetriNetGraph graph, int tokens)
+    {
+        PlaceVertex place = graph.insertPlace(null);
+        place.setTokens(tokens);
+
+        return place;
+    }
+
+    /**
+     * Adds a transition.
+     *
+     * @param graph
+     * @return TransitionVertex
+     */
+    static TransitionVertex transition(PetriNetGraph graph)
+    {
+        return graph.insertTransition(null);
+    }
+
+    /**
+     * Adds an arc of some weight (parallel arcs).
+     *
+     * @param graph
+     * @param source
+     * @param target
+     * @param weight
+     */
+    static void arc(PetriNetGraph graph, Vertex source, Vertex target, int weight)
+    {
+        graph.getModel().beginUpdate();
+
+        try
+        {
+            for (int i = 0; i < weight; i++)
+            {
+                graph.insertArc(null, source, target);
+            }
+        }
+        finally
+        {
+            graph.getModel().endUpdate();
+        }
+    }
+
+    /**
+     * Returns a sequence i -> t -> p -> t -> ... -> o, i marked.
+     *
+     * @param id
+     * @param length    transitions
+     * @return PetriNetGraph
+     */
+    static PetriNetGraph sequence(String id, int length)
+    {
+        PetriNetGraph graph = new PetriNetGraph(id);
+        graph.getModel().beginUpdate();
+
+        try
+        {
+            Vertex previous = place(graph, 1);
+
+            for (int i = 0; i < length; i++)
+            {
+                Vertex transition = transition(graph);
+                Vertex next = place(graph, 0);
+
+                arc(graph, previous, transition, 1);
+                arc(graph, transition, next, 1);
+                previous = next;
+            }
+        }
+        finally
+        {
+            graph.getModel().endUpdate();
+        }
+
+        return graph;
+    }
+
+    /**
+     * Returns the n-ary parallelism of some sequences.
+     *
+     * @param branches
+     * @param length    transitions per sequence
+     * @return PetriNetGraph
+     * @throws Exception
+     */
+    static PetriNetGraph parallel(int branches, int length) throws Exception
+    {
+        List<PetriNetGraph> inputs = new ArrayList<>();
+
+        for (int b = 0; b < branches; b++)
+        {
+            inputs.add(sequence("b" + b, length));
+        }
+
+        return Operation.factory(Constants.OPERATION_PARALLELISM, new PetriNetGraph("parallel"), inputs)
+                .getOperationGraph();
+    }
+
+    /**
+     * Returns the reachable markings of a complete state space.
+     *
+     * @param graph
+     * @return markings
+     */
+    static List<int[]> getMarkings(ReachabilityGraph graph)
+    {
+        List<int[]> markings = new ArrayList<>();
+
+        for (int state = 0; state < graph.getStatesCount(); state++)
+        {
+            markings.add(graph.getMarking(state));
+        }
+
+        return markings;
+    }
+}
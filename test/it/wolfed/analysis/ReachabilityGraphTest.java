@@ -0,0 +1,50 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetKernel;
+import it.wolfed.util.Constants;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * States limit of the explicit state space.
+ */
+public class ReachabilityGraphTest
+{
+    @Test
+    public void testExactlyMaxStates()
+    {
+        // i -> t -> p -> t -> p -> t -> o: 4 states
+        ReachabilityGraph graph = new ReachabilityGraph(new PetriNetKernel(Nets.sequence("s", 3)), 4);
+
+        assertTrue(graph.explore());
+        assertTrue(graph.isComplete());
+        assertFalse(graph.isLimitReached());
+        assertEquals(4, graph.getStatesCount());
+    }
+
+    @Test
+    public void testOneStateOverLimit()
+    {
+        ReachabilityGraph graph = new ReachabilityGraph(new PetriNetKernel(Nets.sequence("s", 3)), 3);
+
+        assertFalse(graph.explore());
+        assertFalse(graph.isComplete());
+        assertTrue(graph.isLimitReached());
+        assertEquals(3, graph.getStatesCount());
+    }
+
+    @Test
+    public void testSoundnessOnTheLimit()
+    {
+        // The short-circuited chain has the same 4 states
+        SoundnessChecker checker = new SoundnessChecker(Nets.sequence("s", 3), 4);
+        checker.check();
+
+        assertTrue(checker.isSound());
+
+        checker = new SoundnessChecker(Nets.sequence("s", 3), 3);
+        checker.check();
+
+        assertEquals(Constants.SOUNDNESS_UNKNOWN, checker.getResult());
+    }
+}
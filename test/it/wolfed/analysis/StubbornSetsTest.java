@@ -0,0 +1,163 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PetriNetKernel;
+import it.wolfed.operation.WorkFlowGenerator;
+import it.wolfed.util.Constants;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Reduced (stubborn sets) against full state spaces.
+ */
+public class StubbornSetsTest
+{
+    private static final int MAX_STATES = 200000;
+
+    private static final String[] DEFECTS =
+    {
+        null,
+        Constants.GENERATOR_IMPROPER_COMPLETION,
+        Constants.GENERATOR_DEAD_TRANSITION
+    };
+
+    @Test
+    public void testParallelBranchesAreLinear() throws Exception
+    {
+        for (int length = 1; length <= 3; length++)
+        {
+            ReachabilityGraph reduced = new ReachabilityGraph(Nets.parallel(40, length), MAX_STATES);
+            reduced.setReduction(true);
+
+            assertTrue(reduced.explore());
+            assertEquals(3 + 40 * length, reduced.getStatesCount());
+        }
+    }
+
+    @Test
+    public void testParallelBranchesFullCount() throws Exception
+    {
+        // Split, 2^k branch markings, join
+        ReachabilityGraph full = new ReachabilityGraph(Nets.parallel(8, 1), MAX_STATES);
+
+        assertTrue(full.explore());
+        assertEquals(2 + (1 << 8), full.getStatesCount());
+    }
+
+    @Test
+    public void testSameVerdicts() throws Exception
+    {
+        for (int seed = 0; seed < 60; seed++)
+        {
+            for (String defect : DEFECTS)
+            {
+                WorkFlowGenerator generator = new WorkFlowGenerator(seed).generate(8 + seed % 20);
+
+                if(defect != null)
+                {
+                    generator.addDefect(defect);
+                }
+
+                PetriNetGraph graph = generator.toGraph("g" + seed);
+                SoundnessChecker full = new SoundnessChecker(graph, MAX_STATES);
+                SoundnessChecker reduced = new SoundnessChecker(graph, MAX_STATES);
+                reduced.setReduction(true);
+
+                boolean sound = full.check();
+
+                if(full.isLimitReached())
+                {
+                    continue;
+                }
+
+                String net = "seed " + seed + " defect " + defect;
+                assertEquals(net, sound, reduced.check());
+                assertEquals(net, full.isSound(), reduced.isSound());
+
+                // Unsound: each stops on the first counterexample it meets
+                if(sound)
+                {
+                    assertEquals(net, Constants.SOUNDNESS_SOUND, reduced.getResult());
+                    assertTrue(net, reduced.getStatesCount() <= full.getStatesCount());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDeadlocksPreserved() throws Exception
+    {
+        for (int seed = 0; seed < 60; seed++)
+        {
+            WorkFlowGenerator generator = new WorkFlowGenerator(seed).generate(8 + seed % 20);
+            PetriNetKernel kernel = new PetriNetKernel(generator.toGraph("g" + seed));
+
+            ReachabilityGraph full = new ReachabilityGraph(kernel, MAX_STATES);
+            ReachabilityGraph reduced = new ReachabilityGraph(kernel, MAX_STATES);
+            reduced.setReduction(true);
+
+            if(full.explore() == false)
+            {
+                continue;
+            }
+
+            assertTrue(reduced.explore());
+            assertEquals("seed " + seed, getDeadlocks(full), getDeadlocks(reduced));
+        }
+    }
+
+    @Test
+    public void testReducedSetsAreEnabled()
+    {
+        PetriNetKernel kernel = new PetriNetKernel(new WorkFlowGenerator(7).generate(30).toGraph("g"));
+        StubbornSets stubborn = new StubbornSets(kernel);
+
+        ReachabilityGraph full = new ReachabilityGraph(kernel, MAX_STATES);
+        assertTrue(full.explore());
+
+        for (int[] marking : Nets.getMarkings(full))
+        {
+            int[] enabled = new int[kernel.getTransitionsCount()];
+            int count = 0;
+
+            for (int t = 0; t < kernel.getTransitionsCount(); t++)
+            {
+                if(kernel.isEnabled(t, marking))
+                {
+                    enabled[count++] = t;
+                }
+            }
+
+            if(count == 0)
+            {
+                continue;
+            }
+
+            int reduced = stubborn.reduce(marking, enabled, count, new boolean[kernel.getTransitionsCount()]);
+
+            // A non empty subset of the enabled transitions
+            assertTrue(reduced > 0);
+            assertTrue(reduced <= count);
+
+            for (int i = 0; i < reduced; i++)
+            {
+                assertTrue(kernel.isEnabled(enabled[i], marking));
+            }
+        }
+    }
+
+    private static Set<String> getDeadlocks(ReachabilityGraph graph)
+    {
+        Set<String> deadlocks = new HashSet<>();
+
+        for (int state : graph.getDeadlocks())
+        {
+            deadlocks.add(Arrays.toString(graph.getMarking(state)));
+        }
+
+        return deadlocks;
+    }
+}
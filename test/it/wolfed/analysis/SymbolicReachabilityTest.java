@@ -0,0 +1,133 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.PetriNetKernel;
+import it.wolfed.model.PlaceVertex;
+import it.wolfed.model.TransitionVertex;
+import it.wolfed.operation.WorkFlowGenerator;
+import java.math.BigInteger;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Symbolic against explicit reachable markings.
+ */
+public class SymbolicReachabilityTest
+{
+    private static final int MAX_NODES = 1000000;
+    private static final int MAX_TOKENS = 8;
+
+    /**
+     * Checks counts, markings and bounds against the explicit state space.
+     */
+    private static void assertSameMarkings(String net, PetriNetKernel kernel)
+    {
+        ReachabilityGraph explicit = new ReachabilityGraph(kernel, 200000);
+        SymbolicReachability symbolic = new SymbolicReachability(kernel, MAX_NODES, MAX_TOKENS);
+
+        assertTrue(net, explicit.explore());
+        assertTrue(net, symbolic.explore());
+        assertEquals(net, BigInteger.valueOf(explicit.getStatesCount()), symbolic.getStatesCount());
+
+        List<int[]> markings = Nets.getMarkings(explicit);
+        int[] bounds = new int[kernel.getPlacesCount()];
+
+        for (int[] marking : markings)
+        {
+            assertTrue(net, symbolic.contains(marking));
+
+            for (int p = 0; p < bounds.length; p++)
+            {
+                bounds[p] = Math.max(bounds[p], marking[p]);
+            }
+        }
+
+        assertArrayEquals(net, bounds, symbolic.getBounds());
+
+        // A marking not reachable: one more token in the initial marking
+        int[] unreachable = kernel.getInitialMarking();
+        unreachable[0]++;
+        assertFalse(net, symbolic.contains(unreachable));
+    }
+
+    @Test
+    public void testGeneratedNets()
+    {
+        for (int seed = 0; seed < 40; seed++)
+        {
+            PetriNetKernel kernel = new PetriNetKernel(new WorkFlowGenerator(seed).generate(5 + seed).toGraph("g"));
+
+            assertSameMarkings("seed " + seed, kernel);
+            assertSameMarkings("seed " + seed + " short-circuited", kernel.shortCircuit());
+        }
+    }
+
+    @Test
+    public void testParallelBranches() throws Exception
+    {
+        PetriNetKernel kernel = new PetriNetKernel(Nets.parallel(6, 2));
+
+        assertSameMarkings("parallel", kernel);
+    }
+
+    @Test
+    public void testWeightedArcs()
+    {
+        // p (4 tokens) -2-> t1 -> q, q -> t2 -2-> p: p + 2q = 4
+        PetriNetGraph graph = new PetriNetGraph("weighted");
+        PlaceVertex p = Nets.place(graph, 4);
+        PlaceVertex q = Nets.place(graph, 0);
+        TransitionVertex t1 = Nets.transition(graph);
+        TransitionVertex t2 = Nets.transition(graph);
+        Nets.arc(graph, p, t1, 2);
+        Nets.arc(graph, t1, q, 1);
+        Nets.arc(graph, q, t2, 1);
+        Nets.arc(graph, t2, p, 2);
+
+        PetriNetKernel kernel = new PetriNetKernel(graph);
+        SymbolicReachability symbolic = new SymbolicReachability(kernel, MAX_NODES, MAX_TOKENS);
+
+        assertTrue(symbolic.explore());
+        assertEquals(BigInteger.valueOf(3), symbolic.getStatesCount());
+        assertSameMarkings("weighted", kernel);
+    }
+
+    @Test
+    public void testLongSequence()
+    {
+        // 20001 levels, far deeper than the Java stack allows for recursion
+        SymbolicReachability symbolic = new SymbolicReachability(Nets.sequence("s", 20000), MAX_NODES, MAX_TOKENS);
+
+        assertTrue(symbolic.explore());
+        assertEquals(BigInteger.valueOf(20001), symbolic.getStatesCount());
+    }
+
+    @Test
+    public void testNodesLimit()
+    {
+        SymbolicReachability symbolic = new SymbolicReachability(
+                new PetriNetKernel(new WorkFlowGenerator(3).generate(60).toGraph("g")), 20, MAX_TOKENS);
+
+        assertFalse(symbolic.explore());
+        assertFalse(symbolic.isComplete());
+    }
+
+    @Test
+    public void testTokensLimit()
+    {
+        // p <-> t, t -> q: q unbounded
+        PetriNetGraph graph = new PetriNetGraph("loop");
+        PlaceVertex p = Nets.place(graph, 1);
+        PlaceVertex q = Nets.place(graph, 0);
+        TransitionVertex t = Nets.transition(graph);
+        Nets.arc(graph, p, t, 1);
+        Nets.arc(graph, t, p, 1);
+        Nets.arc(graph, t, q, 1);
+
+        SymbolicReachability symbolic = new SymbolicReachability(graph, MAX_NODES, MAX_TOKENS);
+
+        assertFalse(symbolic.explore());
+        assertFalse(symbolic.isComplete());
+    }
+}
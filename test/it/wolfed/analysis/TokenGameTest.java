@@ -0,0 +1,30 @@
+package it.wolfed.analysis;
+
+import it.wolfed.model.PetriNetKernel;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Firing of disabled transitions.
+ */
+public class TokenGameTest
+{
+    @Test
+    public void testDisabledShortCircuit()
+    {
+        // i -> t -> o short-circuited: t* is disabled in the initial marking
+        PetriNetKernel kernel = new PetriNetKernel(Nets.sequence("s", 1)).shortCircuit();
+        TokenGame game = new TokenGame(kernel, new Random(0));
+
+        try
+        {
+            game.fire(kernel.getShortCircuitTransition());
+            fail();
+        }
+        catch (IllegalStateException ex)
+        {
+            assertEquals("Transition t* is not enabled.", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package it.wolfed.model;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Names captured by the kernel snapshot.
+ */
+public class PetriNetKernelTest
+{
+    @Test
+    public void testNames()
+    {
+        // i -> t -> o
+        PetriNetGraph graph = new PetriNetGraph("names");
+        PlaceVertex i = graph.insertPlace(null);
+        PlaceVertex o = graph.insertPlace(null);
+        TransitionVertex t = graph.insertTransition(null);
+        i.setTokens(1);
+        graph.getModel().setValue(i, "start");
+        graph.getModel().setValue(t, "work");
+        graph.insertArc(null, i, t);
+        graph.insertArc(null, t, o);
+
+        PetriNetKernel kernel = new PetriNetKernel(graph);
+
+        // Later changes of the graph don't reach the snapshot
+        graph.getModel().setValue(i, "renamed");
+        graph.getModel().setValue(t, "renamed");
+
+        assertEquals("start", kernel.getPlaceName(kernel.indexOf(i)));
+        assertEquals("work", kernel.getTransitionName(kernel.indexOf(t)));
+
+        PetriNetKernel shortCircuited = kernel.shortCircuit();
+
+        assertEquals("start", shortCircuited.getPlaceName(shortCircuited.indexOf(i)));
+        assertEquals("work", shortCircuited.getTransitionName(shortCircuited.indexOf(t)));
+        assertEquals("t*", shortCircuited.getTransitionName(shortCircuited.getShortCircuitTransition()));
+    }
+}
@@ -0,0 +1,32 @@
+package it.wolfed.operation;
+
+import it.wolfed.model.PetriNetGraph;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Compositions of invalid inputs.
+ */
+public class CompositionOperationTest
+{
+    @Test
+    public void testDanglingArc() throws Exception
+    {
+        PetriNetGraph first = new WorkFlowGenerator(1).generate(5).toGraph("a");
+        PetriNetGraph second = new WorkFlowGenerator(2).generate(5).toGraph("b");
+
+        // An arc without target: still a workflow for isWorkFlow()
+        first.insertEdge(first.getDefaultParent(), "dangling", "", first.getInitialPlaces().get(0), null);
+
+        try
+        {
+            new CompositionOperation(new PetriNetGraph("result"),
+                Composition.alternation(Composition.net(first), Composition.net(second)));
+            fail();
+        }
+        catch (Exception ex)
+        {
+            assertEquals("Dangling arc dangling in a!", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package it.wolfed.operation;
+
+import it.wolfed.model.PetriNetGraph;
+import it.wolfed.model.Vertex;
+import it.wolfed.util.Constants;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Operation results served from the cache.
+ */
+public class OperationCacheTest
+{
+    private static List<PetriNetGraph> inputs(long seed)
+    {
+        return Arrays.asList(
+                new WorkFlowGenerator(seed).generate(10).toGraph("a"),
+                new WorkFlowGenerator(seed + 1).generate(10).toGraph("b"));
+    }
+
+    private static PetriNetGraph execute(OperationCache cache, List<PetriNetGraph> inputs) throws Exception
+    {
+        return cache.execute(Constants.OPERATION_SEQUENCING, new PetriNetGraph("result"), inputs);
+    }
+
+    @Test
+    public void testHit() throws Exception
+    {
+        OperationCache cache = new OperationCache(Constants.OPERATION_CACHE_CELLS);
+
+        PetriNetGraph first = execute(cache, inputs(1));
+        PetriNetGraph second = execute(cache, inputs(1));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(first.getStructuralKey(), second.getStructuralKey());
+    }
+
+    @Test
+    public void testChangedInput() throws Exception
+    {
+        OperationCache cache = new OperationCache(Constants.OPERATION_CACHE_CELLS);
+        List<PetriNetGraph> inputs = inputs(1);
+
+        execute(cache, inputs);
+        inputs.get(0).getInitialPlaces().get(0).setTokens(2);
+        execute(cache, inputs);
+
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testCellsLimit() throws Exception
+    {
+        OperationCache unbounded = new OperationCache(Constants.OPERATION_CACHE_CELLS);
+        execute(unbounded, inputs(1));
+        long cells = unbounded.getCellsCount();
+
+        // Room for two entries of about the same size
+        OperationCache cache = new OperationCache((int) (cells * 5 / 2));
+
+        for (long seed = 1; seed <= 4; seed++)
+        {
+            execute(cache, inputs(seed));
+            assertTrue(cache.getCellsCount() <= cells * 5 / 2);
+        }
+
+        assertTrue(cache.size() < 4);
+
+        // The most recent is kept, the first was removed
+        execute(cache, inputs(4));
+        execute(cache, inputs(1));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testEntryOverLimit() throws Exception
+    {
+        OperationCache cache = new OperationCache(10);
+
+        execute(cache, inputs(1));
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getCellsCount());
+    }
+
+    @Test
+    public void testStructuralKey()
+    {
+        PetriNetGraph graph = new WorkFlowGenerator(5).generate(10).toGraph("g");
+        PetriNetGraph copy = new PetriNetGraph("copy");
+        copy.copyFrom(graph);
+
+        assertEquals(graph.getStructuralKey(), copy.getStructuralKey());
+
+        Vertex place = copy.getInitialPlaces().get(0);
+        copy.getModel().setValue(place, "renamed");
+
+        assertNotEquals(graph.getStructuralKey(), copy.getStructuralKey());
+    }
+}